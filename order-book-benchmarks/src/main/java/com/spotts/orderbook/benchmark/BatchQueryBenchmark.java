@@ -0,0 +1,99 @@
+package com.spotts.orderbook.benchmark;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.NbboQuery;
+import com.spotts.orderbook.model.NbboResult;
+import com.spotts.orderbook.service.OrderBookService;
+import com.spotts.orderbook.util.OrderBookUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a batch of NBBO queries answered with nbboBatch against the same
+ * queries asked one at a time, in random order and in time order. The batch
+ * groups the queries by symbol and sweeps each symbol's quotes once when its
+ * queries come in time order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchQueryBenchmark {
+    @Param({"100000"})
+    long rows;
+
+    @Param({"500"})
+    int symbols;
+
+    @Param({"12"})
+    int marketCenters;
+
+    @Param({"20000"})
+    int queryCount;
+
+    @Param({"false", "true"})
+    boolean timeOrdered;
+
+    private OrderBookService service;
+    private List<NbboQuery> queries;
+
+    @Setup
+    public void setUp() throws IOException, ParseException {
+        SyntheticQuotes quotes = new SyntheticQuotes(rows, symbols, marketCenters);
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotes.file().toString());
+        context.setResultLimit(5);
+        service = new OrderBookService(context);
+        service.buildOrderBook();
+
+        // random symbols and points in time within the session, sorted by time or not
+        SplittableRandom random = new SplittableRandom(42);
+        long[] times = new long[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            times[i] = random.nextLong(quotes.firstTime(), quotes.lastTime() + 1) / 1_000_000L * 1_000_000L;
+        }
+        if (timeOrdered) {
+            Arrays.sort(times);
+        }
+        queries = new ArrayList<>(queryCount);
+        for (long time : times) {
+            queries.add(new NbboQuery(quotes.symbol(random.nextInt(symbols)), OrderBookUtil.formatEpochNanos(time)));
+        }
+    }
+
+    @Benchmark
+    public void batch(Blackhole blackhole) throws ParseException {
+        Iterator<NbboResult> results = service.nbboBatch(queries);
+        while (results.hasNext()) {
+            blackhole.consume(results.next());
+        }
+    }
+
+    @Benchmark
+    public void singleQueries(Blackhole blackhole) throws ParseException {
+        for (NbboQuery query : queries) {
+            blackhole.consume(service.nbbo(query.getSymbol(), query.getTs()));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.spotts.orderbook.benchmark;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.OrderBook;
+import com.spotts.orderbook.service.OrderBookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building the order book from a quotes file: parsing, indexing and,
+ * in the timeline query mode, precomputing the timelines. Each invocation builds
+ * a new book, so the time of one operation is the startup time of the service,
+ * either parsing the csv file or reading the quotes back from a snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BuildOrderBookBenchmark {
+    @Param({"100000", "1000000"})
+    long rows;
+
+    @Param({"500"})
+    int symbols;
+
+    @Param({"12"})
+    int marketCenters;
+
+    @Param({"INDEX", "TIMELINE"})
+    OrderBookContext.QueryMode queryMode;
+
+    @Param({"false", "true"})
+    boolean snapshot;
+
+    private OrderBookContext context;
+
+    @Setup
+    public void setUp() throws IOException, ParseException {
+        context = new OrderBookContext();
+        String filePath = new SyntheticQuotes(rows, symbols, marketCenters).file().toString();
+        context.setFilePath(filePath);
+        context.setResultLimit(5);
+        context.setQueryMode(queryMode);
+        if (snapshot) {
+            // the first build writes the snapshot every measured build reads
+            context.setSnapshotPath(filePath + ".snapshot");
+            new OrderBookService(context).buildOrderBook();
+        }
+    }
+
+    @Benchmark
+    public OrderBook buildOrderBook() throws IOException, ParseException {
+        OrderBookService service = new OrderBookService(context);
+        service.buildOrderBook();
+        return service.orderBook;
+    }
+}
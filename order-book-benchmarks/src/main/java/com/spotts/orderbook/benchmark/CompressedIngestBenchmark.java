@@ -0,0 +1,69 @@
+package com.spotts.orderbook.benchmark;
+
+import com.spotts.orderbook.ingest.CompressedQuoteLoader;
+import com.spotts.orderbook.ingest.ParallelQuoteLoader;
+import com.spotts.orderbook.model.QuoteStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing the same quotes from the csv file, which is mapped and split
+ * across the parsing threads, against a gzip or zstd copy of it, which one thread
+ * decompresses while the others parse. Only the quotes are loaded; the book isn't
+ * indexed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompressedIngestBenchmark {
+    @Param({"1000000"})
+    long rows;
+
+    @Param({"500"})
+    int symbols;
+
+    @Param({"12"})
+    int marketCenters;
+
+    @Param({"csv", "gz", "zst"})
+    String format;
+
+    @Param({"0"})
+    int threads;
+
+    private Path file;
+    private int parsingThreads;
+
+    @Setup
+    public void setUp() throws IOException {
+        SyntheticQuotes quotes = new SyntheticQuotes(rows, symbols, marketCenters);
+        file = format.equals("csv") ? quotes.file() : quotes.compressedFile("." + format);
+        parsingThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        System.out.printf("%n%s is %d MB%n", file.getFileName(), Files.size(file) >> 20);
+    }
+
+    @Benchmark
+    public QuoteStore load() throws IOException, ParseException {
+        return format.equals("csv")
+                ? new ParallelQuoteLoader(parsingThreads).load(file)
+                : new CompressedQuoteLoader(parsingThreads).load(file);
+    }
+}
@@ -0,0 +1,124 @@
+package com.spotts.orderbook.benchmark;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.NbboResult;
+import com.spotts.orderbook.service.OrderBookService;
+import com.spotts.orderbook.util.OrderBookUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the throughput of NBBO queries grows with the number of request
+ * threads sharing one book. The queries only read the book, so with a core for
+ * each thread the throughput should scale close to linearly, and it should never
+ * fall when there are more threads than cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentQueryBenchmark {
+    private static final int QUERY_COUNT = 4096;
+
+    @Param({"100000"})
+    long rows;
+
+    @Param({"500"})
+    int symbols;
+
+    @Param({"12"})
+    int marketCenters;
+
+    private OrderBookService service;
+    private String[] querySymbols;
+    private String[] queryTimes;
+    private int[] queryDepths;
+
+    @Setup
+    public void setUp() throws IOException, ParseException {
+        SyntheticQuotes quotes = new SyntheticQuotes(rows, symbols, marketCenters);
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotes.file().toString());
+        context.setResultLimit(5);
+        service = new OrderBookService(context);
+        service.buildOrderBook();
+
+        // random symbols, points in time within the session and depths
+        SplittableRandom random = new SplittableRandom(42);
+        querySymbols = new String[QUERY_COUNT];
+        queryTimes = new String[QUERY_COUNT];
+        queryDepths = new int[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            querySymbols[i] = quotes.symbol(random.nextInt(symbols));
+            queryTimes[i] = OrderBookUtil.formatEpochNanos(
+                    random.nextLong(quotes.firstTime(), quotes.lastTime() + 1) / 1_000_000L * 1_000_000L);
+            queryDepths[i] = 1 + random.nextInt(10);
+        }
+    }
+
+    /**
+     * Hands out the queries in turn, separately for each benchmark thread, each
+     * thread starting at a different query.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        @Setup
+        public void setUp(ThreadParams threads) {
+            next = threads.getThreadIndex() * QUERY_COUNT / threads.getThreadCount();
+        }
+
+        int next() {
+            next = (next + 1) & (QUERY_COUNT - 1);
+            return next;
+        }
+    }
+
+    private NbboResult nbbo(Cursor cursor) throws ParseException {
+        int i = cursor.next();
+        return service.nbbo(querySymbols[i], queryTimes[i], queryDepths[i]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public NbboResult nbbo1Thread(Cursor cursor) throws ParseException {
+        return nbbo(cursor);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public NbboResult nbbo2Threads(Cursor cursor) throws ParseException {
+        return nbbo(cursor);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public NbboResult nbbo4Threads(Cursor cursor) throws ParseException {
+        return nbbo(cursor);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public NbboResult nbboAllCores(Cursor cursor) throws ParseException {
+        return nbbo(cursor);
+    }
+}
@@ -0,0 +1,375 @@
+package com.spotts.orderbook.benchmark;
+
+import com.spotts.orderbook.OrderBookApplication;
+import com.spotts.orderbook.service.OrderBookService;
+import com.spotts.orderbook.util.OrderBookUtil;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load tests the order book over HTTP. The application is started on a free
+ * local port with a generated quotes file, or a running one is targeted with
+ * --url, and a mix of point in time requests is sent at a fixed rate, e.g.
+ * "java -cp target/benchmarks.jar com.spotts.orderbook.benchmark.LoadTest
+ * --rate=2000 --duration=60 --mix=nbbo=80,depth=10,series=5,batch=5".
+ *
+ * The requests are sent on a schedule that doesn't depend on the responses:
+ * request i is due at i / rate seconds after the start, and a pool of threads
+ * sends each one at its due time, or as soon as a thread is free when they are
+ * all busy. A request's latency is measured from its due time rather than from
+ * when it was sent, so a stall of the server counts against every request that
+ * should have been sent during it. This corrects for coordinated omission, and
+ * the latency from when each request was actually sent is reported next to it.
+ *
+ * The latencies are reported as percentiles for each kind of request, written as
+ * an HdrHistogram interval log (.hlog, one histogram per second and kind) and as
+ * percentile distributions of the whole run (.hgrm), which HdrHistogram's
+ * plotter and log analyzer can compare across runs.
+ *
+ * The options, with their defaults:
+ * --rows=1000000 --symbols=500 --marketCenters=12 size the generated quotes file, see {@link SyntheticQuotes};
+ * --url= targets a running application with those quotes instead of starting one;
+ * --rate=1000 is the requests per second, --threads=64 the most requests in flight;
+ * --warmup=10 and --duration=30 are the seconds to send requests for before and while measuring;
+ * --mix=nbbo=80,depth=10,series=5,batch=5 weighs the kinds of request;
+ * --output=load-test is the path the .hlog and .hgrm files are written to, without the extension.
+ * Any other option is passed on to the application, e.g. --book.resultCacheSize=0.
+ */
+public class LoadTest {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+    private static final int REQUEST_COUNT = 4096;
+    private static final int BATCH_SIZE = 10;
+    private static final long SERIES_NANOS = 100_000_000L;
+
+    static {
+        DEFAULTS.put("rows", "1000000");
+        DEFAULTS.put("symbols", "500");
+        DEFAULTS.put("marketCenters", "12");
+        DEFAULTS.put("url", "");
+        DEFAULTS.put("rate", "1000");
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("duration", "30");
+        DEFAULTS.put("threads", "64");
+        DEFAULTS.put("mix", "nbbo=80,depth=10,series=5,batch=5");
+        DEFAULTS.put("output", "load-test");
+    }
+
+    /**
+     * The kinds of request in the mix.
+     */
+    enum RequestType {
+        NBBO, DEPTH, SERIES, BATCH;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final RequestType[] types = new RequestType[REQUEST_COUNT];
+    private final HttpRequest[] requests = new HttpRequest[REQUEST_COUNT];
+    private final Map<RequestType, Recorder> latencies = new EnumMap<>(RequestType.class);
+    private final Map<RequestType, Recorder> sendLatencies = new EnumMap<>(RequestType.class);
+    private final Map<RequestType, LongAdder> errors = new EnumMap<>(RequestType.class);
+    private final Map<RequestType, Histogram> totals = new EnumMap<>(RequestType.class);
+    private final Map<RequestType, Histogram> sendTotals = new EnumMap<>(RequestType.class);
+
+    /**
+     * @param baseUrl the url of the application, e.g. http://localhost:8080
+     * @param quotes the quotes the application was started with
+     * @param symbols the number of symbols of the quotes
+     * @param mix the weight of each kind of request
+     */
+    LoadTest(String baseUrl, SyntheticQuotes quotes, int symbols, Map<RequestType, Integer> mix) {
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        for (RequestType type : RequestType.values()) {
+            latencies.put(type, new Recorder(3));
+            sendLatencies.put(type, new Recorder(3));
+            errors.put(type, new LongAdder());
+        }
+
+        // a fixed set of random requests, so every run sends the same ones
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            int pick = random.nextInt(totalWeight);
+            RequestType type = null;
+            for (Map.Entry<RequestType, Integer> entry : mix.entrySet()) {
+                pick -= entry.getValue();
+                if (pick < 0) {
+                    type = entry.getKey();
+                    break;
+                }
+            }
+            types[i] = type;
+            requests[i] = request(type, quotes, symbols, random);
+        }
+    }
+
+    private HttpRequest request(RequestType type, SyntheticQuotes quotes, int symbols, SplittableRandom random) {
+        String symbol = quotes.symbol(random.nextInt(symbols));
+        long time = randomTime(quotes, random);
+        String ts = OrderBookUtil.formatEpochNanos(time);
+        switch (type) {
+            case NBBO:
+                return get("/nbbo?symbol=" + symbol + "&ts=" + ts);
+            case DEPTH:
+                return get("/depth?symbol=" + symbol + "&ts=" + ts);
+            case SERIES:
+                return get("/nbbo/series?symbol=" + symbol + "&from=" + ts
+                        + "&to=" + OrderBookUtil.formatEpochNanos(time + SERIES_NANOS));
+            default:
+                StringBuilder body = new StringBuilder("{\"queries\": [");
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    body.append(i == 0 ? "" : ",").append("{\"symbol\": \"")
+                            .append(quotes.symbol(random.nextInt(symbols))).append("\", \"ts\": \"")
+                            .append(OrderBookUtil.formatEpochNanos(randomTime(quotes, random))).append("\"}");
+                }
+                body.append("]}");
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/nbbo/batch"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                        .build();
+        }
+    }
+
+    private static long randomTime(SyntheticQuotes quotes, SplittableRandom random) {
+        // whole milliseconds, as a client would ask for them
+        return random.nextLong(quotes.firstTime(), quotes.lastTime() + 1) / 1_000_000L * 1_000_000L;
+    }
+
+    private HttpRequest get(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + pathAndQuery)).GET().build();
+    }
+
+    /**
+     * Sends requests at a fixed rate for a while.
+     * @param seconds how long to send requests for
+     * @param rate the requests per second
+     * @param threads the most requests in flight
+     * @param log where each second's latencies are written, or null to not record them
+     * @return how long the requests took to complete in nanoseconds
+     * @throws InterruptedException thrown when the thread is interrupted while waiting
+     */
+    long run(int seconds, int rate, int threads, HistogramLogWriter log) throws InterruptedException {
+        long count = (long) seconds * rate;
+        if (log != null) {
+            // start the first interval now rather than when the recorders were created
+            for (RequestType type : RequestType.values()) {
+                latencies.get(type).reset();
+                sendLatencies.get(type).reset();
+            }
+        }
+        AtomicLong next = new AtomicLong();
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.submit(() -> {
+                for (long i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                    long due = start + i * 1_000_000_000L / rate;
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    send((int) (i % REQUEST_COUNT), due, log != null);
+                }
+                return null;
+            });
+        }
+        pool.shutdown();
+        // write each second's latencies until the last request completed
+        while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+            writeInterval(log);
+        }
+        long elapsed = System.nanoTime() - start;
+        writeInterval(log);
+        return elapsed;
+    }
+
+    private void send(int i, long due, boolean record) {
+        RequestType type = types[i];
+        long sent = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(requests[i], HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200 && record) {
+                errors.get(type).increment();
+            }
+        } catch (IOException e) {
+            if (record) {
+                errors.get(type).increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long done = System.nanoTime();
+        if (record) {
+            latencies.get(type).recordValue(done - due);
+            sendLatencies.get(type).recordValue(done - sent);
+        }
+    }
+
+    private void writeInterval(HistogramLogWriter log) {
+        if (log == null) {
+            return;
+        }
+        for (RequestType type : RequestType.values()) {
+            Histogram interval = latencies.get(type).getIntervalHistogram();
+            interval.setTag(type.tag());
+            if (interval.getTotalCount() > 0) {
+                log.outputIntervalHistogram(interval);
+            }
+            totals.computeIfAbsent(type, t -> new Histogram(3)).add(interval);
+            sendTotals.computeIfAbsent(type, t -> new Histogram(3))
+                    .add(sendLatencies.get(type).getIntervalHistogram());
+        }
+    }
+
+    /**
+     * Prints the latency percentiles and throughput of each kind of request and of
+     * all of them, and writes the percentile distributions of all the requests.
+     */
+    private void report(long elapsedNanos, String output) throws IOException {
+        Histogram all = new Histogram(3);
+        Histogram sendAll = new Histogram(3);
+        System.out.printf("%n%-8s %10s %8s %10s %10s %10s %10s %10s %14s%n", "request", "count", "errors",
+                "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "sent p99 ms");
+        for (RequestType type : RequestType.values()) {
+            Histogram latency = totals.get(type);
+            if (latency.getTotalCount() == 0) {
+                continue;
+            }
+            all.add(latency);
+            sendAll.add(sendTotals.get(type));
+            printRow(type.tag(), latency, sendTotals.get(type), errors.get(type).sum(), elapsedNanos);
+        }
+        long errorCount = errors.values().stream().mapToLong(LongAdder::sum).sum();
+        printRow("all", all, sendAll, errorCount, elapsedNanos);
+
+        try (PrintStream out = new PrintStream(new File(output + ".hgrm"))) {
+            all.outputPercentileDistribution(out, 1_000_000.0);
+        }
+        try (PrintStream out = new PrintStream(new File(output + "-sent.hgrm"))) {
+            sendAll.outputPercentileDistribution(out, 1_000_000.0);
+        }
+        System.out.printf("%nWrote %s.hlog, %s.hgrm and %s-sent.hgrm, in milliseconds%n", output, output, output);
+    }
+
+    private static void printRow(String name, Histogram latency, Histogram sendLatency, long errors,
+                                 long elapsedNanos) {
+        System.out.printf("%-8s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f %14.3f%n", name,
+                latency.getTotalCount(), errors, latency.getTotalCount() * 1e9 / elapsedNanos,
+                latency.getValueAtPercentile(50) / 1e6, latency.getValueAtPercentile(99) / 1e6,
+                latency.getValueAtPercentile(99.9) / 1e6, latency.getMaxValue() / 1e6,
+                sendLatency.getValueAtPercentile(99) / 1e6);
+    }
+
+    private static Map<RequestType, Integer> parseMix(String mix) {
+        Map<RequestType, Integer> weights = new EnumMap<>(RequestType.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected kind=weight in the mix but got \"" + part + "\"");
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("The weight of " + pair[0] + " must not be negative");
+            }
+            weights.put(RequestType.valueOf(pair[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("The mix has no requests: " + mix);
+        }
+        return weights;
+    }
+
+    public static void main(String[] args) throws IOException, ParseException, InterruptedException {
+        // the options of the load test, everything else goes to the application
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+            if (name != null && DEFAULTS.containsKey(name)) {
+                options.put(name, arg.substring(equals + 1));
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+        int symbols = Integer.parseInt(options.get("symbols"));
+        SyntheticQuotes quotes = new SyntheticQuotes(Long.parseLong(options.get("rows")), symbols,
+                Integer.parseInt(options.get("marketCenters")));
+
+        ConfigurableApplicationContext application = null;
+        String url = options.get("url");
+        if (url.isEmpty()) {
+            // start the application on a free port, with the snapshot kept next to the quotes file
+            Path file = quotes.file();
+            applicationArgs.add(0, "--server.port=0");
+            applicationArgs.add(1, "--book.filePath=" + file);
+            applicationArgs.add(2, "--book.snapshotPath=" + Paths.get(file + ".snapshot"));
+            application = new SpringApplicationBuilder(OrderBookApplication.class)
+                    .run(applicationArgs.toArray(new String[0]));
+            if (!application.getBean(OrderBookService.class).isReady()) {
+                application.close();
+                throw new IllegalStateException("The order book could not be built");
+            }
+            url = "http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort();
+        }
+
+        try {
+            LoadTest loadTest = new LoadTest(url, quotes, symbols, parseMix(options.get("mix")));
+            int rate = Integer.parseInt(options.get("rate"));
+            int threads = Integer.parseInt(options.get("threads"));
+            System.out.printf("Sending %s requests/s to %s with %d threads%n", rate, url, threads);
+            loadTest.run(Integer.parseInt(options.get("warmup")), rate, threads, null);
+
+            String output = options.get("output");
+            try (PrintStream logFile = new PrintStream(new File(output + ".hlog"))) {
+                HistogramLogWriter log = new HistogramLogWriter(logFile);
+                log.outputComment("LoadTest " + String.join(" ", args));
+                log.outputLogFormatVersion();
+                log.outputStartTime(System.currentTimeMillis());
+                log.outputLegend();
+                long elapsed = loadTest.run(Integer.parseInt(options.get("duration")), rate, threads, log);
+                loadTest.report(elapsed, output);
+            }
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.spotts.orderbook.benchmark;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.NbboResult;
+import com.spotts.orderbook.model.Quote;
+import com.spotts.orderbook.service.OrderBookService;
+import com.spotts.orderbook.util.OrderBookUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the point in time queries against a book built once per trial. Each
+ * invocation runs the next of a fixed set of random queries, so every run asks
+ * the same questions. Throughput and the latency distribution are both reported.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    private static final int QUERY_COUNT = 4096;
+
+    @Param({"100000", "1000000"})
+    long rows;
+
+    @Param({"500"})
+    int symbols;
+
+    @Param({"12"})
+    int marketCenters;
+
+    @Param({"INDEX"})
+    OrderBookContext.QueryMode queryMode;
+
+    private OrderBookService service;
+    private String[] querySymbols;
+    private String[] queryTimes;
+
+    @Setup
+    public void setUp() throws IOException, ParseException {
+        SyntheticQuotes quotes = new SyntheticQuotes(rows, symbols, marketCenters);
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotes.file().toString());
+        context.setResultLimit(5);
+        context.setQueryMode(queryMode);
+        service = new OrderBookService(context);
+        service.buildOrderBook();
+
+        // random symbols and points in time within the session
+        SplittableRandom random = new SplittableRandom(42);
+        querySymbols = new String[QUERY_COUNT];
+        queryTimes = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            querySymbols[i] = quotes.symbol(random.nextInt(symbols));
+            queryTimes[i] = OrderBookUtil.formatEpochNanos(
+                    random.nextLong(quotes.firstTime(), quotes.lastTime() + 1) / 1_000_000L * 1_000_000L);
+        }
+    }
+
+    /**
+     * Hands out the queries in turn, separately for each benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            next = (next + 1) & (QUERY_COUNT - 1);
+            return next;
+        }
+    }
+
+    @Benchmark
+    public List<Quote> getLiveQuotes(Cursor cursor) throws ParseException {
+        int i = cursor.next();
+        return service.getLiveQuotes(querySymbols[i], queryTimes[i]);
+    }
+
+    @Benchmark
+    public List<Quote> captureNbbQuotes(Cursor cursor) throws ParseException {
+        int i = cursor.next();
+        return service.captureNbbQuotes(querySymbols[i], queryTimes[i]);
+    }
+
+    @Benchmark
+    public List<Quote> captureNboQuotes(Cursor cursor) throws ParseException {
+        int i = cursor.next();
+        return service.captureNboQuotes(querySymbols[i], queryTimes[i]);
+    }
+
+    @Benchmark
+    public String pointInTimeResults(Cursor cursor) throws ParseException {
+        int i = cursor.next();
+        return service.pointInTimeResults(querySymbols[i], queryTimes[i]);
+    }
+
+    @Benchmark
+    public NbboResult nbbo(Cursor cursor) throws ParseException {
+        int i = cursor.next();
+        return service.nbbo(querySymbols[i], queryTimes[i]);
+    }
+}
@@ -0,0 +1,140 @@
+package com.spotts.orderbook.benchmark;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.ReplayEvent;
+import com.spotts.orderbook.service.OrderBookService;
+import com.spotts.orderbook.service.ReplayEngine;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a replay of the whole book as fast as possible, fanned out to a number
+ * of subscribers that read every event as soon as it is sent. Each invocation is
+ * one replay. The events published, delivered and dropped are reported per second
+ * next to the replays per second, and the delivery latency percentiles, from publishing an
+ * event to sending it to a subscriber, are printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ReplayBenchmark {
+    @Param({"100000"})
+    long rows;
+
+    @Param({"500"})
+    int symbols;
+
+    @Param({"12"})
+    int marketCenters;
+
+    @Param({"1", "10", "100", "1000"})
+    int subscribers;
+
+    @Param({"1024"})
+    int queueCapacity;
+
+    private OrderBookService service;
+    private ExecutorService delivery;
+    private Timer latency;
+
+    @Setup
+    public void setUp() throws IOException, ParseException {
+        SyntheticQuotes quotes = new SyntheticQuotes(rows, symbols, marketCenters);
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotes.file().toString());
+        service = new OrderBookService(context);
+        service.buildOrderBook();
+        delivery = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        latency = Timer.builder("delivery")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        delivery.shutdownNow();
+        HistogramSnapshot snapshot = latency.takeSnapshot();
+        StringBuilder report = new StringBuilder("\nDelivery latency over ")
+                .append(snapshot.count()).append(" events:");
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            report.append(String.format(" p%s=%.1f us", percentile.percentile() * 100,
+                    percentile.value(TimeUnit.MICROSECONDS)));
+        }
+        report.append(String.format(" max=%.1f us", snapshot.max(TimeUnit.MICROSECONDS)));
+        System.out.println(report);
+    }
+
+    /**
+     * The events of the replays, reported by JMH as rates.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Events {
+        public long published;
+        public long delivered;
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            published = 0;
+            delivered = 0;
+            dropped = 0;
+        }
+    }
+
+    @Benchmark
+    public long replay(Events events) throws InterruptedException {
+        ReplayEngine engine = new ReplayEngine(service.orderBook.getQuoteStore(),
+                service.orderBook.getSymbolIndex(), 1, 0, delivery, new ReplayEngine.Listener() {
+            @Override
+            public void eventDelivered(long latencyNanos) {
+                latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+        CountDownLatch closed = new CountDownLatch(subscribers);
+        for (int i = 0; i < subscribers; i++) {
+            engine.subscribe(new ReplayEngine.Sink() {
+                @Override
+                public void send(ReplayEvent event) {
+                }
+
+                @Override
+                public void close(boolean disconnected) {
+                    closed.countDown();
+                }
+            }, null, queueCapacity, ReplayEngine.SlowConsumerPolicy.DROP_OLDEST);
+        }
+        engine.run();
+        closed.await();
+        events.published += engine.getPublishedCount();
+        events.delivered += engine.getDeliveredCount();
+        events.dropped += engine.getDroppedCount();
+        return engine.getPublishedCount();
+    }
+}
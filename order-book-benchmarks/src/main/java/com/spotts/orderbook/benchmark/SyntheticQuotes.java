@@ -0,0 +1,190 @@
+package com.spotts.orderbook.benchmark;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.util.OrderBookUtil;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates quotes files for the benchmarks. The same parameters always give the
+ * same file, so results can be compared across runs and machines.
+ *
+ * The quotes are spread evenly over a 6.5 hour session in start time order,
+ * each symbol's prices follow a random walk around its own starting price, and
+ * quotes last long enough that each symbol has about 10 live quotes at any time,
+ * however many rows there are.
+ */
+public class SyntheticQuotes {
+    private static final long SEED = 20210218L;
+    private static final long SESSION_START = epochNanos("2021-02-18T09:30:00.000Z");
+    private static final long SESSION_MILLIS = 23_400_000L;
+    private static final int LIVE_QUOTES_PER_SYMBOL = 10;
+
+    private final long rows;
+    private final int symbols;
+    private final int marketCenters;
+
+    /**
+     * @param rows the number of quotes
+     * @param symbols the number of symbols, the quotes are spread evenly across them
+     * @param marketCenters the number of market centers, at most 26
+     */
+    public SyntheticQuotes(long rows, int symbols, int marketCenters) {
+        if (marketCenters < 1 || marketCenters > 26) {
+            throw new IllegalArgumentException("Expected 1 to 26 market centers but got " + marketCenters);
+        }
+        this.rows = rows;
+        this.symbols = symbols;
+        this.marketCenters = marketCenters;
+    }
+
+    /**
+     * Gets the quotes file for the parameters, writing it the first time it is asked
+     * for. Files are kept in the directory of the "bench.dataDir" system property,
+     * the temp directory by default, since the large ones take minutes to write.
+     * @return the path of the quotes file
+     * @throws IOException thrown when the file can't be written
+     */
+    public Path file() throws IOException {
+        Path dataDir = Paths.get(System.getProperty("bench.dataDir", System.getProperty("java.io.tmpdir")));
+        Path file = dataDir.resolve("quotes-" + rows + "-" + symbols + "-" + marketCenters + ".csv");
+        if (!Files.exists(file)) {
+            // write to a temp file first so an interrupted run never leaves half a file behind
+            Files.createDirectories(dataDir);
+            Path partial = Files.createTempFile(dataDir, "quotes", ".partial");
+            write(partial);
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    /**
+     * Gets a compressed copy of the quotes file for the parameters, writing it the
+     * first time it is asked for, next to the quotes file.
+     * @param suffix ".gz" for a gzip copy or ".zst" for a zstd copy
+     * @return the path of the compressed file
+     * @throws IOException thrown when the file can't be written
+     */
+    public Path compressedFile(String suffix) throws IOException {
+        Path source = file();
+        Path file = source.resolveSibling(source.getFileName() + suffix);
+        if (!Files.exists(file)) {
+            Path partial = Files.createTempFile(source.getParent(), "quotes", ".partial");
+            try (OutputStream out = suffix.equals(".zst")
+                    ? new ZstdOutputStream(Files.newOutputStream(partial))
+                    : new GZIPOutputStream(Files.newOutputStream(partial), 1 << 16)) {
+                Files.copy(source, out);
+            }
+            Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        }
+        return file;
+    }
+
+    /**
+     * Writes the quotes to a file.
+     * @param file the file to write
+     * @throws IOException thrown when the file can't be written
+     */
+    public void write(Path file) throws IOException {
+        SplittableRandom random = new SplittableRandom(SEED);
+        // each symbol starts between $10 and $500, prices are in cents
+        long[] prices = new long[symbols];
+        for (int i = 0; i < symbols; i++) {
+            prices[i] = 1_000 + random.nextInt(49_000);
+        }
+
+        // a symbol gets a quote every symbols / rows of the session on average
+        long maxDurationMillis = Math.max(1,
+                2 * LIVE_QUOTES_PER_SYMBOL * SESSION_MILLIS * symbols / Math.max(1, rows));
+
+        StringBuilder line = new StringBuilder(128);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+            writer.write(String.join(",", OrderBookContext.HEADERS));
+            writer.newLine();
+            for (long row = 0; row < rows; row++) {
+                int symbol = random.nextInt(symbols);
+                prices[symbol] = Math.max(100, prices[symbol] + random.nextInt(-2, 3));
+                long bid = prices[symbol] - random.nextInt(5);
+                long ask = prices[symbol] + 1 + random.nextInt(5);
+                long start = startTime(row);
+                long end = start + (1 + random.nextLong(maxDurationMillis)) * 1_000_000L;
+
+                line.setLength(0);
+                line.append(symbol(symbol)).append(',')
+                        .append((char) ('A' + random.nextInt(marketCenters))).append(',')
+                        .append(100 * (1 + random.nextInt(10))).append(',')
+                        .append(100 * (1 + random.nextInt(10))).append(',');
+                appendCents(line, bid).append(',');
+                appendCents(line, ask).append(',')
+                        .append(OrderBookUtil.formatEpochNanos(start)).append(',')
+                        .append(OrderBookUtil.formatEpochNanos(end)).append(',')
+                        .append('R').append(',')
+                        .append(10_000_000L + row).append(',')
+                        .append("UQDF1");
+                writer.append(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @param i the number of the symbol
+     * @return the name of the symbol, four letters or more
+     */
+    public String symbol(int i) {
+        StringBuilder name = new StringBuilder();
+        for (int n = i; name.length() < 4 || n > 0; n /= 26) {
+            name.append((char) ('A' + n % 26));
+        }
+        return name.reverse().toString();
+    }
+
+    /**
+     * @param row the row of a quote
+     * @return the start time of the quote in nanoseconds since the epoch
+     */
+    public long startTime(long row) {
+        return SESSION_START + row * SESSION_MILLIS / Math.max(1, rows) * 1_000_000L;
+    }
+
+    /**
+     * @return the start time of the first quote
+     */
+    public long firstTime() {
+        return startTime(0);
+    }
+
+    /**
+     * @return the start time of the last quote
+     */
+    public long lastTime() {
+        return startTime(rows - 1);
+    }
+
+    private static StringBuilder appendCents(StringBuilder builder, long cents) {
+        builder.append(cents / 100).append('.');
+        if (cents % 100 < 10) {
+            builder.append('0');
+        }
+        return builder.append(cents % 100);
+    }
+
+    private static long epochNanos(String timestampString) {
+        try {
+            return OrderBookUtil.parseEpochNanos(timestampString);
+        } catch (ParseException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
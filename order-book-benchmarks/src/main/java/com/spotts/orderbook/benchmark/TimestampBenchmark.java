@@ -0,0 +1,62 @@
+package com.spotts.orderbook.benchmark;
+
+import com.spotts.orderbook.util.OrderBookUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing the timestamps of the quotes file, the legacy
+ * {@link OrderBookUtil#formatTimestamp(String)} against the allocation free
+ * {@link OrderBookUtil#parseEpochNanos(CharSequence)} the book uses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimestampBenchmark {
+    private static final int TIMESTAMP_COUNT = 1024;
+
+    private final OrderBookUtil orderBookUtil = new OrderBookUtil();
+    private String[] timestamps;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SyntheticQuotes quotes = new SyntheticQuotes(1_000_000, 1, 1);
+        SplittableRandom random = new SplittableRandom(42);
+        timestamps = new String[TIMESTAMP_COUNT];
+        for (int i = 0; i < TIMESTAMP_COUNT; i++) {
+            timestamps[i] = OrderBookUtil.formatEpochNanos(quotes.startTime(random.nextInt(1_000_000)));
+        }
+    }
+
+    private String nextTimestamp() {
+        next = (next + 1) & (TIMESTAMP_COUNT - 1);
+        return timestamps[next];
+    }
+
+    @Benchmark
+    public Timestamp formatTimestamp() throws ParseException {
+        return orderBookUtil.formatTimestamp(nextTimestamp());
+    }
+
+    @Benchmark
+    public long parseEpochNanos() throws ParseException {
+        return OrderBookUtil.parseEpochNanos(nextTimestamp());
+    }
+}
@@ -4,6 +4,10 @@ import com.spotts.orderbook.context.OrderBookContext;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.task.TaskExecutorCustomizer;
+import org.springframework.context.annotation.Bean;
+
+import java.util.concurrent.ThreadPoolExecutor;
 
 @SpringBootApplication
 @EnableConfigurationProperties(OrderBookContext.class)
@@ -12,4 +16,16 @@ public class OrderBookApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(OrderBookApplication.class, args);
 	}
+
+	/**
+	 * The streamed responses of /nbbo/batch and /nbbo/series are written on the
+	 * application task executor, bounded by the spring.task.execution properties.
+	 * When all its threads are busy and its queue is full, a response is written
+	 * on the request thread instead of being rejected.
+	 * @return the customizer of the application task executor
+	 */
+	@Bean
+	public TaskExecutorCustomizer callerRunsWhenBusy() {
+		return executor -> executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+	}
 }
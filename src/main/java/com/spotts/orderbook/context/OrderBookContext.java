@@ -1,5 +1,6 @@
 package com.spotts.orderbook.context;
 
+import com.spotts.orderbook.service.ReplayEngine;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -13,5 +14,32 @@ public class OrderBookContext {
             "askQuantity", "bidPrice", "askPrice", "startTime", "endTime",
             "quoteConditions","sipfeedSeq" ,"sipfeed"};
     private int resultLimit;
+    private int maxDepth = 1_000;
     private String filePath;
+    private int ingestThreads = Runtime.getRuntime().availableProcessors();
+    private QueryMode queryMode = QueryMode.INDEX;
+    private String streamFilePath;
+    private String snapshotPath;
+    private String directoryPath;
+    private int maxPartitions = 3;
+    private long partitionBudgetBytes;
+    private boolean lazySymbols;
+    private int maxCachedSymbols = 100;
+    private long symbolCacheBytes;
+    private int resultCacheSize;
+    private long resultCacheTtlMillis;
+    private int maxDepthSymbols = 1_000;
+    private int replayQueueCapacity = 1_024;
+    private ReplayEngine.SlowConsumerPolicy replaySlowConsumerPolicy = ReplayEngine.SlowConsumerPolicy.DROP_OLDEST;
+    private int replayDeliveryThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * How point in time queries are answered.
+     */
+    public enum QueryMode {
+        /** Select the best quotes from the live quotes found in the interval index. */
+        INDEX,
+        /** Look up the best quotes in a timeline precomputed after the book is built. */
+        TIMELINE
+    }
 }
\ No newline at end of file
@@ -1,12 +1,43 @@
 package com.spotts.orderbook.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotts.orderbook.model.DepthResult;
+import com.spotts.orderbook.model.MarketQuality;
+import com.spotts.orderbook.model.NbboBatchRequest;
+import com.spotts.orderbook.model.NbboQuote;
+import com.spotts.orderbook.model.NbboResult;
+import com.spotts.orderbook.model.ReplayEvent;
+import com.spotts.orderbook.model.ReplayStatus;
+import com.spotts.orderbook.service.BadRequestException;
+import com.spotts.orderbook.service.LazySymbolsException;
+import com.spotts.orderbook.service.ReplayConflictException;
+import com.spotts.orderbook.service.ReplayEngine;
 import com.spotts.orderbook.service.OrderBookService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * The Controller.
@@ -14,18 +45,278 @@ import java.text.ParseException;
 @RestController
 @RequestMapping("/")
 public class OrderBookController {
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv");
+    private static final String SERIES_CSV_HEADER =
+            "symbol,pointInTime,level,bidPrice,bidSize,bidMarketCenter,askPrice,askSize,askMarketCenter\n";
 
     @Autowired
     OrderBookService orderBookService;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     /**
      * Gets the point in time results from the order book.
+     * @param view "quotes" to list the best quotes, or "levels" to collapse the quotes
+     * at the same price into levels, quotes by default
      * @return a formatted String with the point in time results given the input symbol
      * and timestamp
      * @throws ParseException thrown when there is an issue parsing the timestamps
      */
     @GetMapping
-    public String results() throws ParseException {
+    public String results(@RequestParam(value = "view", defaultValue = "quotes") String view)
+            throws ParseException {
+        if (view.equals("levels")) {
+            return orderBookService.pointInTimeLevels("AAPL", "2021-02-18T10:08:52.868Z");
+        }
+        if (!view.equals("quotes")) {
+            throw new BadRequestException("Unknown view \"" + view + "\", expected quotes or levels");
+        }
         return orderBookService.pointInTimeResults("AAPL", "2021-02-18T10:08:52.868Z");
     }
+
+    /**
+     * Gets the best bids and asks for a symbol at a point in time.
+     * @param symbol the symbol
+     * @param ts the point in time, e.g. 2021-02-18T10:08:52.868Z
+     * @param depth the most quotes to return for each side, the result limit by default
+     * @return the best bids and asks, best first
+     * @throws ParseException thrown when there is an issue parsing the timestamp
+     */
+    @GetMapping("/nbbo")
+    public NbboResult nbbo(@RequestParam("symbol") String symbol, @RequestParam("ts") String ts,
+                           @RequestParam(value = "depth", required = false) Integer depth) throws ParseException {
+        return depth == null
+                ? orderBookService.nbbo(symbol, ts)
+                : orderBookService.nbbo(symbol, ts, depth);
+    }
+
+    /**
+     * Gets the best price levels for a symbol at a point in time, with the live
+     * quotes at each price collapsed into one level.
+     * @param symbol the symbol
+     * @param ts the point in time, e.g. 2021-02-18T10:08:52.868Z
+     * @param levels the most levels to return for each side, the result limit by default
+     * @return the best bid and ask levels, best first
+     * @throws ParseException thrown when there is an issue parsing the timestamp
+     */
+    @GetMapping("/depth")
+    public DepthResult depth(@RequestParam("symbol") String symbol, @RequestParam("ts") String ts,
+                             @RequestParam(value = "levels", required = false) Integer levels)
+            throws ParseException {
+        return levels == null
+                ? orderBookService.depth(symbol, ts)
+                : orderBookService.depth(symbol, ts, levels);
+    }
+
+    /**
+     * Gets the market quality of the symbols on the book: the time weighted average
+     * spread, the time each market center spent at the NBB and NBO, the quote counts
+     * by quote condition and the locked and crossed times, in nanoseconds.
+     * @param symbol the only symbol to report, every symbol by default
+     * @return the market quality of each symbol, by symbol
+     */
+    @GetMapping("/quality")
+    public List<MarketQuality> marketQuality(@RequestParam(value = "symbol", required = false) String symbol) {
+        return symbol == null
+                ? orderBookService.marketQuality()
+                : List.of(orderBookService.marketQuality(symbol));
+    }
+
+    /**
+     * Gets the best bids and asks for a batch of symbols and points in time. The
+     * results are streamed back as a JSON array in the order of the queries.
+     * @param request the queries and the depth, the result limit by default
+     * @return the body writing the results
+     * @throws ParseException thrown when there is an issue parsing a timestamp
+     */
+    @PostMapping("/nbbo/batch")
+    public ResponseEntity<StreamingResponseBody> nbboBatch(@RequestBody NbboBatchRequest request)
+            throws ParseException {
+        if (request.getQueries() == null) {
+            throw new BadRequestException("The batch has no queries");
+        }
+        Iterator<NbboResult> results = request.getDepth() == null
+                ? orderBookService.nbboBatch(request.getQueries())
+                : orderBookService.nbboBatch(request.getQueries(), request.getDepth());
+        StreamingResponseBody body = outputStream -> {
+            // write each result as soon as it is ready
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                while (results.hasNext()) {
+                    generator.writeObject(results.next());
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Gets the changes of a symbol's best bids and asks over a time range. The
+     * results are written as they are computed, as one JSON object per line or as
+     * csv rows with one row for each level of the book.
+     * @param symbol the symbol
+     * @param from the start of the range, e.g. 2021-02-18T09:58:59.262Z
+     * @param to the end of the range, inclusive
+     * @param depth the most quotes to return for each side, the result limit by default
+     * @param format "ndjson" or "csv", ndjson by default
+     * @return the body writing the results
+     * @throws ParseException thrown when there is an issue parsing the timestamps
+     */
+    @GetMapping("/nbbo/series")
+    public ResponseEntity<StreamingResponseBody> nbboSeries(
+            @RequestParam("symbol") String symbol, @RequestParam("from") String from,
+            @RequestParam("to") String to, @RequestParam(value = "depth", required = false) Integer depth,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format) throws ParseException {
+        if (!format.equals("ndjson") && !format.equals("csv")) {
+            throw new BadRequestException("Unknown format \"" + format + "\", expected ndjson or csv");
+        }
+        Iterator<NbboResult> results = depth == null
+                ? orderBookService.nbboSeries(symbol, from, to)
+                : orderBookService.nbboSeries(symbol, from, to, depth);
+        if (format.equals("csv")) {
+            StreamingResponseBody body = outputStream -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+                writer.write(SERIES_CSV_HEADER);
+                while (results.hasNext()) {
+                    writeCsvRows(writer, results.next());
+                }
+                writer.flush();
+            };
+            return ResponseEntity.ok().contentType(TEXT_CSV).body(body);
+        }
+        StreamingResponseBody body = outputStream -> {
+            // write each result on its own line as soon as it is computed
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                while (results.hasNext()) {
+                    generator.writeObject(results.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Writes a result as csv rows, one for each level of the book, with the fields
+     * of a side left empty past its last quote.
+     */
+    private static void writeCsvRows(Writer writer, NbboResult result) throws IOException {
+        int levels = Math.max(1, Math.max(result.getBids().size(), result.getAsks().size()));
+        for (int level = 0; level < levels; level++) {
+            writer.write(result.getSymbol());
+            writer.write(',');
+            writer.write(result.getPointInTime());
+            writer.write(',');
+            writer.write(Integer.toString(level + 1));
+            writeCsvQuote(writer, level < result.getBids().size() ? result.getBids().get(level) : null);
+            writeCsvQuote(writer, level < result.getAsks().size() ? result.getAsks().get(level) : null);
+            writer.write('\n');
+        }
+    }
+
+    private static void writeCsvQuote(Writer writer, NbboQuote quote) throws IOException {
+        if (quote == null) {
+            writer.write(",,,");
+            return;
+        }
+        writer.write(',');
+        writer.write(quote.getPrice().toPlainString());
+        writer.write(',');
+        writer.write(quote.getSize().toString());
+        writer.write(',');
+        writer.write(quote.getMarketCenter());
+    }
+
+    /**
+     * Starts replaying the quotes on the book in start time order.
+     * @param speed how many times faster than real time to replay, or 0 to replay as fast as possible, 1 by default
+     * @param depth the most quotes for each side of a change, the result limit by default
+     * @return the progress of the replay
+     */
+    @PostMapping("/replay")
+    public ReplayStatus startReplay(@RequestParam(value = "speed", defaultValue = "1") double speed,
+                                    @RequestParam(value = "depth", required = false) Integer depth) {
+        orderBookService.startReplay(speed, depth == null ? orderBookService.getResultLimit() : depth);
+        return orderBookService.replayStatus();
+    }
+
+    /**
+     * @return the progress of the current or last replay
+     */
+    @GetMapping("/replay")
+    public ReplayStatus replayStatus() {
+        return orderBookService.replayStatus();
+    }
+
+    /**
+     * Stops the current replay.
+     * @return the progress of the replay
+     */
+    @DeleteMapping("/replay")
+    public ReplayStatus stopReplay() {
+        orderBookService.stopReplay();
+        return orderBookService.replayStatus();
+    }
+
+    /**
+     * Streams the changes the current replay publishes from now on as server-sent
+     * events named nbbo, with the sequence number of each change as its id. The
+     * stream ends when the replay does, or when the client falls too far behind
+     * and the slow consumer policy disconnects it.
+     * @param symbol the only symbol to stream the changes of, every symbol by default
+     * @return the stream of events
+     */
+    @GetMapping("/replay/events")
+    public SseEmitter replayEvents(@RequestParam(value = "symbol", required = false) String symbol) {
+        // the stream lasts as long as the replay, so it never times out
+        SseEmitter emitter = new SseEmitter(0L);
+        ReplayEngine.Subscription subscription = orderBookService.subscribeReplay(new ReplayEngine.Sink() {
+            @Override
+            public void send(ReplayEvent event) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .id(Long.toString(event.getSequence()))
+                        .name("nbbo")
+                        .data(event.getNbbo(), MediaType.APPLICATION_JSON));
+            }
+
+            @Override
+            public void close(boolean disconnected) {
+                emitter.complete();
+            }
+        }, symbol);
+        // a client that goes away stops its events
+        emitter.onCompletion(subscription::disconnect);
+        emitter.onTimeout(subscription::disconnect);
+        emitter.onError(e -> subscription.disconnect());
+        return emitter;
+    }
+
+    /**
+     * Reports a request that conflicts with a replay already running, or one that
+     * isn't running, or that needs the full book when symbols are loaded lazily.
+     * Other failures, such as a quotes file that can't be loaded, are server errors.
+     * @param e the exception thrown for the request
+     * @return the reason the request failed
+     */
+    @ExceptionHandler({ReplayConflictException.class, LazySymbolsException.class})
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public String conflict(Exception e) {
+        return e.getMessage();
+    }
+
+    /**
+     * Reports a request with a timestamp or parameter that can't be used as a bad
+     * request. Any other IllegalArgumentException is a server error, so its message
+     * isn't sent back.
+     * @param e the exception thrown for the request
+     * @return the reason the request failed
+     */
+    @ExceptionHandler({ParseException.class, BadRequestException.class})
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String badRequest(Exception e) {
+        return e.getMessage();
+    }
 }
@@ -0,0 +1,55 @@
+package com.spotts.orderbook.ingest;
+
+import com.spotts.orderbook.model.QuoteStore;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Appends the parsed chunks to the store in the order of their blocks, whatever
+ * order they are parsed in, and gives each block back to the pool once its chunk
+ * is appended. The blocks parsed ahead wait here, so there are never more of
+ * them than there are blocks.
+ */
+class ChunkAppender {
+    private final QuoteStore store;
+    private final BlockingQueue<QuoteBlock> free;
+    private final Map<Long, QuoteBlock> parsed = new HashMap<>();
+    private long next;
+    private boolean discarding;
+
+    ChunkAppender(QuoteStore store, BlockingQueue<QuoteBlock> free) {
+        this.store = store;
+        this.free = free;
+    }
+
+    synchronized void append(QuoteBlock block) {
+        if (discarding) {
+            discard(block);
+            return;
+        }
+        parsed.put(block.sequence, block);
+        for (QuoteBlock ready = parsed.remove(next); ready != null; ready = parsed.remove(next)) {
+            store.append(ready.chunk);
+            ready.chunk = null;
+            free.add(ready);
+            next++;
+        }
+    }
+
+    /**
+     * Gives back a block that won't be appended, along with the blocks waiting
+     * for it, since nothing is appended once a block has failed.
+     */
+    synchronized void discard(QuoteBlock block) {
+        discarding = true;
+        block.chunk = null;
+        free.add(block);
+        for (QuoteBlock waiting : parsed.values()) {
+            waiting.chunk = null;
+            free.add(waiting);
+        }
+        parsed.clear();
+    }
+}
@@ -0,0 +1,281 @@
+package com.spotts.orderbook.ingest;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.spotts.orderbook.model.QuoteStore;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads a gzip (.gz) or zstd (.zst) compressed quotes csv file in a pipeline.
+ *
+ * A compressed file can't be split and read in parallel like {@link ParallelQuoteLoader}
+ * does, so the calling thread decompresses the file into blocks of whole lines
+ * and hands them to the parsing threads through a bounded queue. The blocks come
+ * from a fixed pool and go back to it once their quotes are appended to the store
+ * in file order. A block parsed ahead of an earlier one is held until the earlier
+ * one is appended, so the decompressor waits when the parsers fall behind or one
+ * parser is slow, and the file is read with threads + 2 blocks however big it is.
+ */
+public class CompressedQuoteLoader {
+    private static final int DEFAULT_BLOCK_SIZE = 4 << 20;
+    private static final int READ_BUFFER_SIZE = 64 << 10;
+    // handed to each parsing thread once the file has been read
+    private static final QuoteBlock END = new QuoteBlock(0);
+
+    private final int threads;
+    private final int blockSize;
+    private final Function<int[], QuoteLineParser> parserFactory;
+
+    /**
+     * @param threads the number of parsing threads
+     */
+    public CompressedQuoteLoader(int threads) {
+        this(threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param threads the number of parsing threads
+     * @param blockSize the size in bytes of the blocks the decompressed file is read into
+     */
+    public CompressedQuoteLoader(int threads, int blockSize) {
+        this(threads, blockSize, QuoteLineParser::new);
+    }
+
+    /**
+     * @param threads the number of parsing threads
+     * @param blockSize the size in bytes of the blocks the decompressed file is read into
+     * @param parsers creates the parser of each parsing thread from the fields of the columns
+     */
+    CompressedQuoteLoader(int threads, int blockSize, Function<int[], QuoteLineParser> parsers) {
+        this.threads = Math.max(1, threads);
+        this.blockSize = Math.max(1, blockSize);
+        this.parserFactory = parsers;
+    }
+
+    /**
+     * @param path the path of a quotes file
+     * @return true when the file name ends with .gz or .zst
+     */
+    public static boolean isCompressed(Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".gz") || name.endsWith(".zst");
+    }
+
+    /**
+     * Opens a compressed file for reading its decompressed bytes.
+     * @param path the path of the file, ending with .gz or .zst
+     * @return the decompressed bytes
+     * @throws IOException thrown when the file can't be opened
+     */
+    public static InputStream open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), READ_BUFFER_SIZE);
+        try {
+            if (path.getFileName().toString().endsWith(".zst")) {
+                return new ZstdInputStream(in);
+            }
+            return new GZIPInputStream(in, READ_BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads all the quotes in a compressed file. The byte offsets in parse errors
+     * are offsets in the decompressed file.
+     * @param path the path of the quotes file
+     * @return the store holding the quotes in file order
+     * @throws IOException thrown when there is an issue reading or decompressing the file
+     * @throws ParseException thrown when there is an issue parsing a line of the file
+     */
+    public QuoteStore load(Path path) throws IOException, ParseException {
+        QuoteStore store = new QuoteStore();
+        BlockingQueue<QuoteBlock> free = new ArrayBlockingQueue<>(threads + 2);
+        for (int i = 0; i < threads + 2; i++) {
+            free.add(new QuoteBlock(blockSize));
+        }
+        BlockingQueue<QuoteBlock> filled = new ArrayBlockingQueue<>(threads + 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ChunkAppender appender = new ChunkAppender(store, free);
+
+        try (InputStream in = open(path)) {
+            Decompressor decompressor = new Decompressor(in);
+            QuoteBlock block = free.poll();
+            if (!decompressor.fill(block)) {
+                return store;
+            }
+            // the header is the first line of the first block
+            int headerEnd = nextLineStart(block.bytes, 0, block.end);
+            int[] columnFields = QuoteLineParser.readHeader(
+                    new String(block.bytes, 0, headerEnd, StandardCharsets.ISO_8859_1));
+            block.start = headerEnd;
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "quote-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> parsers = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    QuoteLineParser parser = parserFactory.apply(columnFields);
+                    parsers.add(pool.submit(() -> {
+                        parseBlocks(parser, store, filled, appender, failure);
+                        return null;
+                    }));
+                }
+                try {
+                    // keep decompressing until the file ends or a block fails to parse
+                    long sequence = 0;
+                    do {
+                        block.sequence = sequence++;
+                        filled.put(block);
+                        block = free.take();
+                    } while (failure.get() == null && decompressor.fill(block));
+                } finally {
+                    for (int i = 0; i < threads; i++) {
+                        filled.put(END);
+                    }
+                }
+                for (Future<?> parser : parsers) {
+                    parser.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading quotes", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to load quotes", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        Throwable cause = failure.get();
+        if (cause instanceof ParseException) {
+            throw (ParseException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else if (cause != null) {
+            throw new IllegalStateException("Failed to load quotes", cause);
+        }
+        return store;
+    }
+
+    /**
+     * Parses the blocks from the queue until the end of the file. After a block
+     * fails to parse, for a malformed line or anything else, the rest are given
+     * back unparsed so the decompressor and the other parsers stop.
+     */
+    private static void parseBlocks(QuoteLineParser parser, QuoteStore store, BlockingQueue<QuoteBlock> filled,
+                                    ChunkAppender appender, AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        for (QuoteBlock block = filled.take(); block != END; block = filled.take()) {
+            if (failure.get() != null) {
+                appender.discard(block);
+                continue;
+            }
+            try {
+                block.chunk = store.newChunk();
+                parser.parseLines(block.bytes, block.start, block.end, block.chunk, block.offset + block.start);
+                appender.append(block);
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                appender.discard(block);
+            }
+        }
+    }
+
+    /**
+     * @return the position after the first newline in a range, or the end of the range
+     */
+    private static int nextLineStart(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Reads the decompressed file into blocks that end at the end of a line. The
+     * partial line after the last newline of a block starts the next block.
+     */
+    private static class Decompressor {
+        private final InputStream in;
+        private byte[] carry = new byte[0];
+        private int carryLength;
+        private long offset;
+        private boolean eof;
+
+        Decompressor(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Reads the next lines of the file into a block.
+         * @return false when the file has no bytes left
+         */
+        boolean fill(QuoteBlock block) throws IOException {
+            if (eof && carryLength == 0) {
+                return false;
+            }
+            if (block.bytes.length <= carryLength) {
+                block.bytes = new byte[carryLength * 2];
+            }
+            System.arraycopy(carry, 0, block.bytes, 0, carryLength);
+            int length = carryLength;
+            int end;
+            while (true) {
+                if (!eof) {
+                    int read = in.readNBytes(block.bytes, length, block.bytes.length - length);
+                    length += read;
+                    eof = length < block.bytes.length;
+                }
+                end = eof ? length : lastLineEnd(block.bytes, length);
+                if (end > 0 || eof) {
+                    break;
+                }
+                // a line longer than the block, read the rest of it into a bigger block
+                block.bytes = Arrays.copyOf(block.bytes, block.bytes.length * 2);
+            }
+            // keep the partial last line for the next block
+            carryLength = length - end;
+            if (carry.length < carryLength) {
+                carry = new byte[block.bytes.length];
+            }
+            System.arraycopy(block.bytes, end, carry, 0, carryLength);
+            block.start = 0;
+            block.end = end;
+            block.offset = offset;
+            offset += end;
+            return end > 0;
+        }
+
+        private static int lastLineEnd(byte[] bytes, int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                if (bytes[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.spotts.orderbook.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Replays a quotes csv file into a {@link QueueQuoteSource}, line by line and in
+ * file order, as a stand-in for a live feed. The source is closed when the file
+ * has been replayed.
+ */
+@Slf4j
+public class CsvReplay implements Runnable {
+    private final Path path;
+    private final QueueQuoteSource target;
+
+    /**
+     * @param path the path of the quotes file
+     * @param target the source the lines are published to
+     */
+    public CsvReplay(Path path, QueueQuoteSource target) {
+        this.path = path;
+        this.target = target;
+    }
+
+    @Override
+    public void run() {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                target.publish(line);
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to replay quotes from {}", path, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            target.close();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.spotts.orderbook.ingest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A quote stream that follows a csv file as lines are appended to it, like
+ * "tail -f". Only complete lines are returned; a partly written last line is
+ * held back until its newline arrives.
+ */
+public class FileTailQuoteSource implements QuoteSource {
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private long position;
+    private volatile boolean closed;
+
+    /**
+     * @param path the path of the file to follow, read from its beginning
+     * @throws IOException thrown when the file can't be opened
+     */
+    public FileTailQuoteSource(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer.flip();
+    }
+
+    @Override
+    public String nextLine(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!closed) {
+            // hand back the next complete line already read from the file
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    byte[] bytes = line.toByteArray();
+                    line.reset();
+                    int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                    return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+                }
+                line.write(b);
+            }
+
+            // read whatever has been appended since the last read
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            buffer.flip();
+            if (read > 0) {
+                position += read;
+                continue;
+            }
+            if (System.nanoTime() >= deadline) {
+                return null;
+            }
+            Thread.sleep(Math.min(POLL_INTERVAL_MILLIS, Math.max(1, (deadline - System.nanoTime()) / 1_000_000)));
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+}
@@ -0,0 +1,214 @@
+package com.spotts.orderbook.ingest;
+
+import com.spotts.orderbook.model.QuoteStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Loads a quotes csv file in parallel.
+ *
+ * The file is split into newline aligned chunks, and the parsing threads each
+ * read a chunk into a block from a fixed pool and parse it into its own
+ * {@link QuoteStore} chunk. The chunks are appended to the store in file order,
+ * so every symbol's quotes keep the order they have in the file, and each block
+ * goes back to the pool once its chunk is appended. A new chunk is only handed
+ * out when a block is free, so the file is read with threads + 2 blocks however
+ * big it is, even when one chunk is slow to parse.
+ */
+public class ParallelQuoteLoader {
+    private static final int DEFAULT_CHUNK_SIZE = 8 << 20;
+    private static final int SCAN_SIZE = 4096;
+
+    private final int threads;
+    private final int chunkSize;
+    private final Function<int[], QuoteLineParser> parserFactory;
+
+    /**
+     * @param threads the number of parsing threads
+     */
+    public ParallelQuoteLoader(int threads) {
+        this(threads, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param threads the number of parsing threads
+     * @param chunkSize the target size in bytes of the chunks the file is split into
+     */
+    public ParallelQuoteLoader(int threads, int chunkSize) {
+        this(threads, chunkSize, QuoteLineParser::new);
+    }
+
+    /**
+     * @param threads the number of parsing threads
+     * @param chunkSize the target size in bytes of the chunks the file is split into
+     * @param parsers creates the parser of each parsing thread from the fields of the columns
+     */
+    ParallelQuoteLoader(int threads, int chunkSize, Function<int[], QuoteLineParser> parsers) {
+        this.threads = Math.max(1, threads);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parserFactory = parsers;
+    }
+
+    /**
+     * Loads all the quotes in a file.
+     * @param path the path of the quotes file
+     * @return the store holding the quotes in file order
+     * @throws IOException thrown when there is an issue reading the file
+     * @throws ParseException thrown when there is an issue parsing a line of the file
+     */
+    public QuoteStore load(Path path) throws IOException, ParseException {
+        QuoteStore store = new QuoteStore();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long headerEnd = nextLineStart(channel, 0, size);
+            if (headerEnd == 0) {
+                return store;
+            }
+            int[] columnFields = QuoteLineParser.readHeader(readString(channel, 0, headerEnd));
+
+            // the blocks grow to the size of the chunks they are read into
+            BlockingQueue<QuoteBlock> free = new ArrayBlockingQueue<>(threads + 2);
+            for (int i = 0; i < threads + 2; i++) {
+                free.add(new QuoteBlock(0));
+            }
+            ChunkAppender appender = new ChunkAppender(store, free);
+            // each parsing thread reuses its own parser
+            ThreadLocal<QuoteLineParser> parsers = ThreadLocal.withInitial(() -> parserFactory.apply(columnFields));
+
+            ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "quote-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> chunks = new ArrayList<>();
+                long sequence = 0;
+                long chunkStart = headerEnd;
+                // hand out the chunks as blocks are freed, until the file ends or a chunk fails to parse
+                while (chunkStart < size && failure.get() == null) {
+                    long chunkEnd = nextLineStart(channel, Math.min(chunkStart + chunkSize, size), size);
+                    QuoteBlock block = free.take();
+                    block.sequence = sequence++;
+                    block.offset = chunkStart;
+                    block.start = 0;
+                    block.end = (int) (chunkEnd - chunkStart);
+                    chunks.add(pool.submit(() -> {
+                        parseChunk(channel, block, store, parsers.get(), appender, failure);
+                        return null;
+                    }));
+                    chunkStart = chunkEnd;
+                }
+                for (Future<?> chunk : chunks) {
+                    chunk.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading quotes", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to load quotes", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        Throwable cause = failure.get();
+        if (cause instanceof ParseException) {
+            throw (ParseException) cause;
+        } else if (cause instanceof IOException) {
+            throw (IOException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else if (cause != null) {
+            throw new IllegalStateException("Failed to load quotes", cause);
+        }
+        return store;
+    }
+
+    /**
+     * Reads a chunk of the file into its block and parses it. After a chunk fails
+     * to read or parse, the rest are given back unparsed so the load stops.
+     */
+    private static void parseChunk(FileChannel channel, QuoteBlock block, QuoteStore store, QuoteLineParser parser,
+                                   ChunkAppender appender, AtomicReference<Throwable> failure) {
+        if (failure.get() != null) {
+            appender.discard(block);
+            return;
+        }
+        try {
+            if (block.bytes.length < block.end) {
+                block.bytes = new byte[block.end];
+            }
+            read(channel, block.offset, block.bytes, block.end);
+            block.chunk = store.newChunk();
+            parser.parseLines(block.bytes, block.start, block.end, block.chunk, block.offset + block.start);
+            appender.append(block);
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+            appender.discard(block);
+        }
+    }
+
+    /**
+     * Reads the bytes of the file from a position into the start of a buffer.
+     */
+    private static void read(FileChannel channel, long position, byte[] bytes, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Quotes file ended at byte offset " + (position + buffer.position()));
+            }
+        }
+    }
+
+    /**
+     * Finds the start of the line after a position.
+     * @return the position after the next newline at or after the position, or the file size
+     */
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+        long pos = position;
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static String readString(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,52 @@
+package com.spotts.orderbook.ingest;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process quote stream: producers publish lines to a bounded queue and
+ * the ingest thread takes them. A full queue blocks the producer, so a slow
+ * book applies backpressure instead of buffering without limit.
+ */
+public class QueueQuoteSource implements QuoteSource {
+    private final BlockingQueue<String> lines;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity the number of lines the queue holds
+     */
+    public QueueQuoteSource(int capacity) {
+        lines = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Publishes a line, waiting while the queue is full.
+     * @param line the csv line of a quote
+     * @throws InterruptedException thrown when the publishing thread is interrupted
+     */
+    public void publish(String line) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("The quote source is closed");
+        }
+        lines.put(line);
+    }
+
+    @Override
+    public String nextLine(long timeout, TimeUnit unit) throws InterruptedException {
+        return lines.poll(timeout, unit);
+    }
+
+    @Override
+    public boolean isExhausted() {
+        return closed && lines.isEmpty();
+    }
+
+    /**
+     * Ends the stream. Lines already published are still delivered.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,20 @@
+package com.spotts.orderbook.ingest;
+
+import com.spotts.orderbook.model.QuoteStore;
+
+/**
+ * A reusable buffer of whole lines of a quotes file, and the chunk they are parsed into.
+ */
+class QuoteBlock {
+    byte[] bytes;
+    int start;
+    int end;
+    // the file offset of the first byte of the buffer
+    long offset;
+    long sequence;
+    QuoteStore chunk;
+
+    QuoteBlock(int size) {
+        bytes = new byte[size];
+    }
+}
@@ -0,0 +1,375 @@
+package com.spotts.orderbook.ingest;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.StringDictionary;
+import com.spotts.orderbook.util.AsciiSequence;
+import com.spotts.orderbook.util.OrderBookUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses lines of the quotes csv file straight from bytes into a {@link QuoteStore}.
+ *
+ * Fields are found by their position in the header line, numbers and timestamps
+ * are parsed without creating Strings, and the String fields are looked up in a
+ * small per-parser cache in front of the store's dictionaries. A parser is not
+ * thread-safe; each parsing thread uses its own.
+ *
+ * Fields are quoted as in RFC 4180: a field in double quotes can hold commas,
+ * and two double quotes in it stand for one. A quoted field can't hold a line
+ * break, since the loaders split the file into lines before parsing them.
+ */
+public class QuoteLineParser {
+    private static final int SYMBOL = 0;
+    private static final int MARKET_CENTER = 1;
+    private static final int BID_QUANTITY = 2;
+    private static final int ASK_QUANTITY = 3;
+    private static final int BID_PRICE = 4;
+    private static final int ASK_PRICE = 5;
+    private static final int START_TIME = 6;
+    private static final int END_TIME = 7;
+    private static final int QUOTE_CONDITIONS = 8;
+    private static final int SIP_FEED_SEQ = 9;
+    private static final int SIP_FEED = 10;
+
+    private final int[] columnFields;
+    private final int[] fieldStarts = new int[OrderBookContext.HEADERS.length];
+    private final int[] fieldEnds = new int[OrderBookContext.HEADERS.length];
+    private final byte[][] fieldBytes = new byte[OrderBookContext.HEADERS.length][];
+    // the fields with doubled quotes, copied without the second quote of each pair
+    private byte[] unescaped = new byte[64];
+    private final int symbolColumn;
+    private final AsciiSequence field = new AsciiSequence();
+    private final DictionaryCache symbols = new DictionaryCache();
+    private final DictionaryCache marketCenters = new DictionaryCache();
+    private final DictionaryCache quoteConditions = new DictionaryCache();
+    private final DictionaryCache sipFeeds = new DictionaryCache();
+
+    /**
+     * Creates a parser for the columns of a header line.
+     * @param columnFields the field of each column, from {@link #readHeader(String)}
+     */
+    public QuoteLineParser(int[] columnFields) {
+        this.columnFields = columnFields;
+        int column = 0;
+        while (column < columnFields.length && columnFields[column] != SYMBOL) {
+            column++;
+        }
+        symbolColumn = column;
+    }
+
+    /**
+     * Maps the columns of the header line to the quote fields in {@link OrderBookContext#HEADERS}.
+     * @param headerLine the header line of the quotes file
+     * @return the field of each column, or -1 for a column that isn't a quote field
+     * @throws QuoteParseException thrown when a quote field is missing from the header
+     */
+    public static int[] readHeader(String headerLine) throws QuoteParseException {
+        List<String> columns = splitHeader(headerLine.trim());
+        int[] columnFields = new int[columns.size()];
+        boolean[] found = new boolean[OrderBookContext.HEADERS.length];
+        for (int column = 0; column < columns.size(); column++) {
+            columnFields[column] = Arrays.asList(OrderBookContext.HEADERS).indexOf(columns.get(column).trim());
+            if (columnFields[column] >= 0) {
+                found[columnFields[column]] = true;
+            }
+        }
+        for (int field = 0; field < found.length; field++) {
+            if (!found[field]) {
+                throw new QuoteParseException("Missing column \"" + OrderBookContext.HEADERS[field]
+                        + "\" in header: " + headerLine, 0, QuoteParseException.HEADER);
+            }
+        }
+        return columnFields;
+    }
+
+    /**
+     * @return the column names of a header line, without their quotes
+     */
+    private static List<String> splitHeader(String headerLine) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        for (int pos = 0; pos < headerLine.length(); pos++) {
+            char c = headerLine.charAt(pos);
+            if (c == '"' && quoted && pos + 1 < headerLine.length() && headerLine.charAt(pos + 1) == '"') {
+                column.append(c);
+                pos++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else {
+                column.append(c);
+            }
+        }
+        columns.add(column.toString());
+        return columns;
+    }
+
+    /**
+     * Parses every line in a range of bytes. The range must start at the beginning
+     * of a line; a last line without a newline is parsed too, and blank lines are skipped.
+     * @param bytes the bytes
+     * @param from the start of the range
+     * @param to the end of the range
+     * @param store the store the quotes are added to
+     * @param fileOffset the offset of the range in the file, used in error messages
+     * @return the number of quotes added
+     * @throws QuoteParseException thrown when a line can't be parsed
+     */
+    public int parseLines(byte[] bytes, int from, int to, QuoteStore store, long fileOffset)
+            throws QuoteParseException {
+        int count = 0;
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > lineStart) {
+                try {
+                    parseLine(bytes, lineStart, contentEnd, store);
+                } catch (QuoteParseException e) {
+                    throw new QuoteParseException(e.getMessage() + " in the line at byte offset "
+                            + (fileOffset + lineStart - from), e.getErrorOffset(), e.getField());
+                }
+                count++;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Parses a single line of the quotes file.
+     * @param line the line, without the line terminator
+     * @param store the store the quote is added to
+     * @return the row of the quote in the store
+     * @throws QuoteParseException thrown when the line can't be parsed
+     */
+    public int parseLine(String line, QuoteStore store) throws QuoteParseException {
+        byte[] bytes = line.getBytes(StandardCharsets.ISO_8859_1);
+        return parseLine(bytes, 0, bytes.length, store);
+    }
+
+    /**
+     * Parses a single line of the quotes file.
+     * @param bytes the bytes holding the line
+     * @param start the start of the line
+     * @param end the end of the line, without the line terminator
+     * @param store the store the quote is added to
+     * @return the row of the quote in the store
+     * @throws QuoteParseException thrown when the line can't be parsed
+     */
+    public int parseLine(byte[] bytes, int start, int end, QuoteStore store) throws QuoteParseException {
+        int column = findFields(bytes, start, end, Integer.MAX_VALUE);
+        if (column != columnFields.length) {
+            throw new QuoteParseException("Expected " + columnFields.length + " columns but found " + column, 0,
+                    QuoteParseException.COLUMNS);
+        }
+
+        return store.add(
+                symbols.encode(store.getSymbols(), field(SYMBOL)),
+                marketCenters.encode(store.getMarketCenters(), field(MARKET_CENTER)),
+                parseInt(field(BID_QUANTITY), BID_QUANTITY),
+                parseInt(field(ASK_QUANTITY), ASK_QUANTITY),
+                parsePrice(field(BID_PRICE), BID_PRICE),
+                parsePrice(field(ASK_PRICE), ASK_PRICE),
+                parseTimestamp(field(START_TIME), START_TIME),
+                parseTimestamp(field(END_TIME), END_TIME),
+                quoteConditions.encode(store.getQuoteConditions(), field(QUOTE_CONDITIONS)),
+                parseLong(field(SIP_FEED_SEQ), SIP_FEED_SEQ),
+                sipFeeds.encode(store.getSipFeeds(), field(SIP_FEED)));
+    }
+
+    /**
+     * Finds the symbol of a line without parsing the rest of it.
+     * @param bytes the bytes holding the line
+     * @param start the start of the line
+     * @param end the end of the line, without the line terminator
+     * @return the symbol, which is only valid until the parser reads another line
+     * @throws QuoteParseException thrown when the line has no symbol column or a quote isn't closed
+     */
+    AsciiSequence parseSymbol(byte[] bytes, int start, int end) throws QuoteParseException {
+        if (findFields(bytes, start, end, symbolColumn) <= symbolColumn) {
+            throw new QuoteParseException("Missing the symbol", 0, OrderBookContext.HEADERS[SYMBOL]);
+        }
+        return field(SYMBOL);
+    }
+
+    /**
+     * Finds the start and end of each quote field in a line, stopping after a column.
+     * @return the number of columns read
+     */
+    private int findFields(byte[] bytes, int start, int end, int lastColumn) throws QuoteParseException {
+        int column = 0;
+        int pos = start;
+        int unescapedLength = 0;
+        while (column <= lastColumn) {
+            int fieldStart = pos;
+            int fieldEnd;
+            boolean escaped = false;
+            if (pos < end && bytes[pos] == '"') {
+                // a quoted field runs to the quote that isn't doubled
+                fieldStart = ++pos;
+                while (pos < end && (bytes[pos] != '"' || pos + 1 < end && bytes[pos + 1] == '"')) {
+                    escaped |= bytes[pos] == '"';
+                    pos += bytes[pos] == '"' ? 2 : 1;
+                }
+                if (pos == end) {
+                    throw new QuoteParseException("Unclosed quote in column " + (column + 1), fieldStart - start,
+                            QuoteParseException.COLUMNS);
+                }
+                fieldEnd = pos++;
+                if (pos < end && bytes[pos] != ',') {
+                    throw new QuoteParseException("Unexpected text after the quotes of column " + (column + 1),
+                            pos - start, QuoteParseException.COLUMNS);
+                }
+            } else {
+                while (pos < end && bytes[pos] != ',') {
+                    pos++;
+                }
+                fieldEnd = pos;
+            }
+            if (column < columnFields.length && columnFields[column] >= 0) {
+                int field = columnFields[column];
+                if (escaped) {
+                    unescapedLength = unescape(bytes, fieldStart, fieldEnd, field, unescapedLength);
+                } else {
+                    fieldBytes[field] = bytes;
+                    fieldStarts[field] = fieldStart;
+                    fieldEnds[field] = fieldEnd;
+                }
+            }
+            column++;
+            if (pos == end) {
+                break;
+            }
+            // skip the comma
+            pos++;
+        }
+        return column;
+    }
+
+    /**
+     * Copies a quoted field with doubled quotes after the fields already copied
+     * for the line, keeping one quote of each pair.
+     * @return the length of the copied fields
+     */
+    private int unescape(byte[] bytes, int from, int to, int field, int length) {
+        if (unescaped.length < length + to - from) {
+            // the fields already copied keep the old array
+            unescaped = new byte[Math.max(unescaped.length * 2, length + to - from)];
+            length = 0;
+        }
+        int fieldStart = length;
+        for (int pos = from; pos < to; pos++) {
+            unescaped[length++] = bytes[pos];
+            if (bytes[pos] == '"') {
+                pos++;
+            }
+        }
+        fieldBytes[field] = unescaped;
+        fieldStarts[field] = fieldStart;
+        fieldEnds[field] = length;
+        return length;
+    }
+
+    private AsciiSequence field(int field) {
+        return this.field.set(fieldBytes[field], fieldStarts[field], fieldEnds[field] - fieldStarts[field]);
+    }
+
+    private static int parseInt(AsciiSequence value, int field) throws QuoteParseException {
+        try {
+            return Integer.parseInt(value, 0, value.length(), 10);
+        } catch (NumberFormatException e) {
+            throw fieldError(value, field);
+        }
+    }
+
+    private static long parseLong(AsciiSequence value, int field) throws QuoteParseException {
+        try {
+            return Long.parseLong(value, 0, value.length(), 10);
+        } catch (NumberFormatException e) {
+            throw fieldError(value, field);
+        }
+    }
+
+    private static long parsePrice(AsciiSequence value, int field) throws QuoteParseException {
+        try {
+            return OrderBookUtil.parsePriceTicks(value);
+        } catch (ParseException e) {
+            throw fieldError(value, field);
+        }
+    }
+
+    private static long parseTimestamp(AsciiSequence value, int field) throws QuoteParseException {
+        try {
+            return OrderBookUtil.parseEpochNanos(value);
+        } catch (ParseException e) {
+            throw new QuoteParseException("Invalid " + OrderBookContext.HEADERS[field] + ": " + e.getMessage(),
+                    e.getErrorOffset(), OrderBookContext.HEADERS[field]);
+        }
+    }
+
+    private static QuoteParseException fieldError(AsciiSequence value, int field) {
+        return new QuoteParseException("Invalid " + OrderBookContext.HEADERS[field] + " \"" + value + "\"", 0,
+                OrderBookContext.HEADERS[field]);
+    }
+
+    /**
+     * An open addressing cache of the dictionary ids this parser has already seen,
+     * matched against the bytes of a field so a hit doesn't create a String.
+     */
+    static class DictionaryCache {
+        private String[] values = new String[64];
+        private int[] ids = new int[64];
+        private int size;
+
+        int encode(StringDictionary dictionary, AsciiSequence value) {
+            int mask = values.length - 1;
+            int slot = value.contentHash() & mask;
+            while (values[slot] != null) {
+                if (value.contentEquals(values[slot])) {
+                    return ids[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            // a miss creates the String once and remembers its id
+            String string = value.toString();
+            int id = dictionary.encode(string);
+            values[slot] = string;
+            ids[slot] = id;
+            if (++size * 2 > values.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private void rehash() {
+            String[] oldValues = values;
+            int[] oldIds = ids;
+            values = new String[oldValues.length * 2];
+            ids = new int[oldIds.length * 2];
+            int mask = values.length - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = oldValues[i].hashCode() & mask;
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    values[slot] = oldValues[i];
+                    ids[slot] = oldIds[i];
+                }
+            }
+        }
+    }
+}
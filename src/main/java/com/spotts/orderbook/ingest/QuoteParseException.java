@@ -0,0 +1,32 @@
+package com.spotts.orderbook.ingest;
+
+import java.text.ParseException;
+
+/**
+ * A line of quotes that can't be parsed, with the field that failed.
+ */
+public class QuoteParseException extends ParseException {
+    /** The field of a line that has the wrong number of columns. */
+    public static final String COLUMNS = "columns";
+    /** The field of a header line that is missing a quote field. */
+    public static final String HEADER = "header";
+
+    private final String field;
+
+    /**
+     * @param message the detail message
+     * @param errorOffset the position where the error was found
+     * @param field the quote field that failed, {@link #COLUMNS} or {@link #HEADER}
+     */
+    public QuoteParseException(String message, int errorOffset, String field) {
+        super(message, errorOffset);
+        this.field = field;
+    }
+
+    /**
+     * @return the quote field that failed, one of the headers, {@link #COLUMNS} or {@link #HEADER}
+     */
+    public String getField() {
+        return field;
+    }
+}
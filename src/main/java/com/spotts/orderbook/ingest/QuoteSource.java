@@ -0,0 +1,28 @@
+package com.spotts.orderbook.ingest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stream of quotes, one csv line per quote in the layout of the quotes file.
+ * A header line may appear at any point and changes the column layout of the
+ * lines after it.
+ */
+public interface QuoteSource extends Closeable {
+
+    /**
+     * Waits for the next line of the stream.
+     * @param timeout the longest time to wait
+     * @param unit the unit of the timeout
+     * @return the line without its line terminator, or null when no line arrived in time
+     * @throws IOException thrown when there is an issue reading the stream
+     * @throws InterruptedException thrown when the waiting thread is interrupted
+     */
+    String nextLine(long timeout, TimeUnit unit) throws IOException, InterruptedException;
+
+    /**
+     * @return true when the stream has ended and every line has been read
+     */
+    boolean isExhausted();
+}
@@ -0,0 +1,161 @@
+package com.spotts.orderbook.ingest;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.OrderBook;
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.SymbolQuoteIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds the quotes of a {@link QuoteSource} into a live {@link OrderBook}.
+ *
+ * The ingestor is the book's only writer. Each quote is added to the quote store
+ * and then published as a new copy-on-write snapshot of its symbol's
+ * {@link SymbolQuoteIndex}, so readers never wait for the ingest thread and
+ * always see a consistent snapshot of each symbol. A symbol's precomputed
+ * timeline is dropped when it gets a new quote, and its queries fall back to
+ * the index.
+ */
+@Slf4j
+public class QuoteStreamIngestor implements Runnable {
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * Told about each quote once it is visible to queries, and about each line
+     * that is skipped.
+     */
+    public interface Listener {
+        /**
+         * @param symbol the symbol of the quote
+         * @param startTime the start time of the quote
+         * @param endTime the end time of the quote
+         */
+        void quoteAdded(String symbol, long startTime, long endTime);
+
+        /**
+         * @param field the quote field that couldn't be parsed, see {@link QuoteParseException#getField()}
+         */
+        default void quoteSkipped(String field) {
+        }
+    }
+
+    private final QuoteSource source;
+    private final OrderBook orderBook;
+    private final Listener listener;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private QuoteLineParser parser;
+    private volatile boolean running = true;
+    private volatile long quoteCount;
+
+    /**
+     * @param source the stream of quotes
+     * @param orderBook the book the quotes are added to
+     * @throws ParseException thrown when the default column layout can't be read
+     */
+    public QuoteStreamIngestor(QuoteSource source, OrderBook orderBook) throws ParseException {
+        this(source, orderBook, null);
+    }
+
+    /**
+     * @param source the stream of quotes
+     * @param orderBook the book the quotes are added to
+     * @param listener told about each quote added to the book, or null
+     * @throws ParseException thrown when the default column layout can't be read
+     */
+    public QuoteStreamIngestor(QuoteSource source, OrderBook orderBook, Listener listener) throws ParseException {
+        this.source = source;
+        this.orderBook = orderBook;
+        this.listener = listener;
+        // lines use the column order of the quotes file until the stream sends a header
+        this.parser = new QuoteLineParser(QuoteLineParser.readHeader(String.join(",", OrderBookContext.HEADERS)));
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running && !source.isExhausted()) {
+                String line = source.nextLine(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (line != null) {
+                    ingest(line);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOG.error("Stopped ingesting quotes after a read error", e);
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Adds one line of the stream to the book.
+     * @param line the csv line of a quote, or a header line
+     */
+    void ingest(String line) {
+        if (line.isEmpty()) {
+            return;
+        }
+        try {
+            if (isHeader(line)) {
+                parser = new QuoteLineParser(QuoteLineParser.readHeader(line));
+                return;
+            }
+            publish(parser.parseLine(line, orderBook.getQuoteStore()));
+        } catch (QuoteParseException e) {
+            // a bad quote is skipped so the stream keeps flowing
+            LOG.warn("Skipping quote that can't be parsed: {} ({})", line, e.getMessage());
+            if (listener != null) {
+                listener.quoteSkipped(e.getField());
+            }
+        }
+    }
+
+    private static boolean isHeader(String line) {
+        String firstColumn = OrderBookContext.HEADERS[0];
+        return line.startsWith(firstColumn + ",") || line.startsWith("\"" + firstColumn + "\"");
+    }
+
+    private void publish(int row) {
+        QuoteStore store = orderBook.getQuoteStore();
+        String symbol = store.getSymbols().decode(store.getSymbolId(row));
+        SymbolQuoteIndex index = orderBook.getSymbolIndex().getOrDefault(symbol, new SymbolQuoteIndex());
+        orderBook.getSymbolIndex().put(symbol, index.withQuote(row, store.getStartTime(row), store.getEndTime(row)));
+        orderBook.getTimelines().remove(symbol);
+        if (listener != null) {
+            listener.quoteAdded(symbol, store.getStartTime(row), store.getEndTime(row));
+        }
+        quoteCount++;
+    }
+
+    /**
+     * @return the number of quotes added to the book
+     */
+    public long getQuoteCount() {
+        return quoteCount;
+    }
+
+    /**
+     * Asks the ingest thread to stop after the line it is working on.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Waits for the ingest thread to stop, either because the source is exhausted
+     * or because it was asked to stop.
+     * @param timeout the longest time to wait
+     * @param unit the unit of the timeout
+     * @return true when the ingest thread stopped
+     * @throws InterruptedException thrown when the waiting thread is interrupted
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+}
@@ -0,0 +1,262 @@
+package com.spotts.orderbook.ingest;
+
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.StringDictionary;
+import com.spotts.orderbook.util.AsciiSequence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The byte ranges of each symbol's lines in a quotes csv file, so one symbol's
+ * quotes can be parsed without parsing the rest of the file.
+ *
+ * The ranges are found by a single sequential scan that only looks at the
+ * symbol column of each line. Consecutive lines of the same symbol share a
+ * range, so a file sorted by symbol has a handful of ranges per symbol while a
+ * file in time order has about one per line. Each range is packed into one
+ * long of its offset and length, so the ranges take 8 bytes per line at worst.
+ */
+public class SymbolRanges {
+    private static final int BUFFER_SIZE = 8 << 20;
+    private static final int MAX_RANGE_SIZE = 8 << 20;
+    // a range is its offset in the high bits and its length, at most MAX_RANGE_SIZE, in the low bits
+    private static final int LENGTH_BITS = 24;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final long MAX_FILE_SIZE = 1L << (Long.SIZE - 1 - LENGTH_BITS);
+    // ranges closer than this are read together rather than one read each
+    private static final int MAX_READ_GAP = 64 << 10;
+
+    private final Path path;
+    private final int[] columnFields;
+    private final StringDictionary symbols;
+    private final Ranges[] ranges;
+
+    private SymbolRanges(Path path, int[] columnFields, StringDictionary symbols, Ranges[] ranges) {
+        this.path = path;
+        this.columnFields = columnFields;
+        this.symbols = symbols;
+        this.ranges = ranges;
+    }
+
+    /**
+     * Scans a quotes file for the byte ranges of each symbol's lines.
+     * @param path the path of the quotes file
+     * @return the ranges of each symbol
+     * @throws IOException thrown when there is an issue reading the file
+     * @throws ParseException thrown when the header or the symbol of a line can't be read
+     */
+    public static SymbolRanges scan(Path path) throws IOException, ParseException {
+        StringDictionary symbols = new StringDictionary();
+        List<Ranges> ranges = new ArrayList<>();
+        QuoteLineParser.DictionaryCache cache = new QuoteLineParser.DictionaryCache();
+        int[] columnFields = null;
+        QuoteLineParser parser = null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            // the file offset of bytes[0]
+            long bufferOffset = 0;
+            int filled = 0;
+            boolean eof = false;
+            while (!eof || filled > 0) {
+                if (!eof) {
+                    buffer.limit(bytes.length).position(filled);
+                    int read = channel.read(buffer, bufferOffset + filled);
+                    if (read < 0) {
+                        eof = true;
+                    } else {
+                        filled += read;
+                    }
+                }
+                int lineStart = 0;
+                while (lineStart < filled) {
+                    int lineEnd = lineStart;
+                    while (lineEnd < filled && bytes[lineEnd] != '\n') {
+                        lineEnd++;
+                    }
+                    if (lineEnd == filled && !eof) {
+                        // the rest of the line is in the next read
+                        break;
+                    }
+                    int contentEnd = lineEnd > lineStart && bytes[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+                    if (columnFields == null) {
+                        columnFields = QuoteLineParser.readHeader(
+                                new String(bytes, lineStart, contentEnd - lineStart, StandardCharsets.ISO_8859_1));
+                        parser = new QuoteLineParser(columnFields);
+                    } else if (contentEnd > lineStart) {
+                        int id = cache.encode(symbols, symbol(parser, bytes, lineStart, contentEnd, bufferOffset));
+                        if (id == ranges.size()) {
+                            ranges.add(new Ranges());
+                        }
+                        // the range takes in the newline so back to back lines join up
+                        ranges.get(id).add(bufferOffset + lineStart, bufferOffset + Math.min(lineEnd + 1, filled));
+                    }
+                    lineStart = lineEnd + 1;
+                }
+                if (lineStart == 0 && filled == bytes.length) {
+                    throw new ParseException("A line longer than " + bytes.length + " bytes at byte offset "
+                            + bufferOffset, 0);
+                }
+                // carry the partial line over to the start of the buffer
+                int carried = Math.max(0, filled - lineStart);
+                System.arraycopy(bytes, Math.min(lineStart, filled), bytes, 0, carried);
+                bufferOffset += filled - carried;
+                filled = carried;
+                if (eof) {
+                    break;
+                }
+            }
+        }
+        if (columnFields == null) {
+            throw new ParseException("Missing the header line in " + path, 0);
+        }
+        ranges.forEach(Ranges::trim);
+        return new SymbolRanges(path, columnFields, symbols, ranges.toArray(new Ranges[0]));
+    }
+
+    /**
+     * Finds the symbol field of a line, without its quotes.
+     */
+    private static AsciiSequence symbol(QuoteLineParser parser, byte[] bytes, int start, int end, long bufferOffset)
+            throws ParseException {
+        try {
+            return parser.parseSymbol(bytes, start, end);
+        } catch (QuoteParseException e) {
+            throw new QuoteParseException(e.getMessage() + " in the line at byte offset " + (bufferOffset + start),
+                    e.getErrorOffset(), e.getField());
+        }
+    }
+
+    /**
+     * Parses the quotes of one symbol.
+     * @param symbol the symbol
+     * @return a store holding the symbol's quotes in file order, empty when the file has none
+     * @throws IOException thrown when there is an issue reading the file
+     * @throws ParseException thrown when there is an issue parsing a line of the symbol
+     */
+    public QuoteStore load(String symbol) throws IOException, ParseException {
+        QuoteStore store = new QuoteStore();
+        int id = symbols.lookup(symbol);
+        if (id < 0) {
+            return store;
+        }
+        Ranges symbolRanges = ranges[id];
+        QuoteLineParser parser = new QuoteLineParser(columnFields);
+        byte[] bytes = new byte[0];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int first = 0;
+            while (first < symbolRanges.size) {
+                // read the ranges that are close together in one read
+                int last = first;
+                long readStart = symbolRanges.start(first);
+                while (last + 1 < symbolRanges.size
+                        && symbolRanges.start(last + 1) - symbolRanges.end(last) <= MAX_READ_GAP
+                        && symbolRanges.end(last + 1) - readStart <= BUFFER_SIZE) {
+                    last++;
+                }
+                int length = (int) (symbolRanges.end(last) - readStart);
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                read(channel, bytes, length, readStart);
+                for (int i = first; i <= last; i++) {
+                    int from = (int) (symbolRanges.start(i) - readStart);
+                    parser.parseLines(bytes, from, (int) (symbolRanges.end(i) - readStart), store,
+                            symbolRanges.start(i));
+                }
+                first = last + 1;
+            }
+        }
+        return store;
+    }
+
+    private static void read(FileChannel channel, byte[] bytes, int length, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("The quotes file " + channel + " got shorter since it was scanned");
+            }
+        }
+    }
+
+    /**
+     * @return the symbols with quotes in the file
+     */
+    public List<String> getSymbols() {
+        List<String> names = new ArrayList<>(symbols.size());
+        for (int id = 0; id < symbols.size(); id++) {
+            names.add(symbols.decode(id));
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @param symbol the symbol
+     * @return the number of byte ranges holding the symbol's lines
+     */
+    public int getRangeCount(String symbol) {
+        int id = symbols.lookup(symbol);
+        return id < 0 ? 0 : ranges[id].size;
+    }
+
+    /**
+     * @return the approximate heap size of the ranges in bytes
+     */
+    public long estimatedBytes() {
+        long bytes = symbols.estimatedBytes();
+        for (Ranges symbolRanges : ranges) {
+            bytes += 8L * symbolRanges.ranges.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * The packed offset and length of one symbol's ranges, in file order.
+     */
+    private static class Ranges {
+        long[] ranges = new long[4];
+        int size;
+
+        void add(long start, long end) throws ParseException {
+            // extend the last range when the line follows right after it
+            if (size > 0 && end(size - 1) == start && end - start(size - 1) <= MAX_RANGE_SIZE) {
+                ranges[size - 1] += end - start;
+                return;
+            }
+            if (end >= MAX_FILE_SIZE) {
+                throw new ParseException("Lazy symbols need a quotes file smaller than " + MAX_FILE_SIZE
+                        + " bytes", 0);
+            }
+            if (size == ranges.length) {
+                ranges = Arrays.copyOf(ranges, size * 2);
+            }
+            ranges[size++] = start << LENGTH_BITS | (end - start);
+        }
+
+        long start(int range) {
+            return ranges[range] >>> LENGTH_BITS;
+        }
+
+        long end(int range) {
+            return start(range) + (ranges[range] & LENGTH_MASK);
+        }
+
+        /**
+         * Drops the room left for more ranges once the file has been scanned.
+         */
+        void trim() {
+            ranges = Arrays.copyOf(ranges, size);
+        }
+    }
+}
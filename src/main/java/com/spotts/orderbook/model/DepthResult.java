@@ -0,0 +1,24 @@
+package com.spotts.orderbook.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * The best price levels for a symbol at a point in time, best first.
+ * A result is immutable, so it can be shared and serialized safely.
+ */
+@Value
+public class DepthResult {
+    String symbol;
+    String pointInTime;
+    List<PriceLevel> bids;
+    List<PriceLevel> asks;
+
+    public DepthResult(String symbol, String pointInTime, List<PriceLevel> bids, List<PriceLevel> asks) {
+        this.symbol = symbol;
+        this.pointInTime = pointInTime;
+        this.bids = List.copyOf(bids);
+        this.asks = List.copyOf(asks);
+    }
+}
@@ -0,0 +1,49 @@
+package com.spotts.orderbook.model;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The market quality of one symbol over its quotes on the book, from its first
+ * quote starting to its last quote ending. The durations are in nanoseconds.
+ *
+ * The average spread is weighted by how long each spread was quoted, over the
+ * time both sides of the book had a quote, so a locked or crossed market counts
+ * as a spread of zero or less. The time at the NBB and NBO is the time a market
+ * center quoted the best bid or ask price, alone or tied with others, largest first.
+ */
+@Value
+public class MarketQuality {
+    String symbol;
+    String from;
+    String to;
+    long quoteCount;
+    BigDecimal averageSpread;
+    long twoSidedNanos;
+    long lockedNanos;
+    long crossedNanos;
+    Map<String, Long> nbbNanos;
+    Map<String, Long> nboNanos;
+    Map<String, Long> quoteConditions;
+
+    public MarketQuality(String symbol, String from, String to, long quoteCount, BigDecimal averageSpread,
+                         long twoSidedNanos, long lockedNanos, long crossedNanos, Map<String, Long> nbbNanos,
+                         Map<String, Long> nboNanos, Map<String, Long> quoteConditions) {
+        this.symbol = symbol;
+        this.from = from;
+        this.to = to;
+        this.quoteCount = quoteCount;
+        this.averageSpread = averageSpread;
+        this.twoSidedNanos = twoSidedNanos;
+        this.lockedNanos = lockedNanos;
+        this.crossedNanos = crossedNanos;
+        // keep the order of the maps, which a copy with Map.copyOf would lose
+        this.nbbNanos = Collections.unmodifiableMap(new LinkedHashMap<>(nbbNanos));
+        this.nboNanos = Collections.unmodifiableMap(new LinkedHashMap<>(nboNanos));
+        this.quoteConditions = Collections.unmodifiableMap(new LinkedHashMap<>(quoteConditions));
+    }
+}
@@ -0,0 +1,14 @@
+package com.spotts.orderbook.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A batch of NBBO queries answered with the same depth.
+ */
+@Data
+public class NbboBatchRequest {
+    private Integer depth;
+    private List<NbboQuery> queries;
+}
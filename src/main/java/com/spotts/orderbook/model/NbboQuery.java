@@ -0,0 +1,16 @@
+package com.spotts.orderbook.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A symbol and point in time to get the best bids and asks for.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NbboQuery {
+    private String symbol;
+    private String ts;
+}
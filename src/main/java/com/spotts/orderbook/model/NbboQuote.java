@@ -0,0 +1,30 @@
+package com.spotts.orderbook.model;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * One side of a quote in an NBBO result: the price and size a market center
+ * quoted on the bid or the ask.
+ */
+@Value
+public class NbboQuote {
+    BigDecimal price;
+    BigInteger size;
+    String marketCenter;
+
+    /**
+     * Creates the quote on one side of a row of the store.
+     * @param store the quote store
+     * @param side the side of the quote
+     * @param row the row
+     * @return the quote
+     */
+    public static NbboQuote of(QuoteStore store, Side side, int row) {
+        return new NbboQuote(QuoteStore.toPrice(side.price(store, row)),
+                BigInteger.valueOf(side.quantity(store, row)),
+                store.getMarketCenters().decode(store.getMarketCenterId(row)));
+    }
+}
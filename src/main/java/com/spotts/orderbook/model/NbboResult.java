@@ -0,0 +1,24 @@
+package com.spotts.orderbook.model;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * The best bids and asks for a symbol at a point in time, best first.
+ * A result is immutable, so it can be shared and serialized safely.
+ */
+@Value
+public class NbboResult {
+    String symbol;
+    String pointInTime;
+    List<NbboQuote> bids;
+    List<NbboQuote> asks;
+
+    public NbboResult(String symbol, String pointInTime, List<NbboQuote> bids, List<NbboQuote> asks) {
+        this.symbol = symbol;
+        this.pointInTime = pointInTime;
+        this.bids = List.copyOf(bids);
+        this.asks = List.copyOf(asks);
+    }
+}
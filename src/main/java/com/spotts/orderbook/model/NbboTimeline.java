@@ -0,0 +1,184 @@
+package com.spotts.orderbook.model;
+
+import java.util.Arrays;
+
+/**
+ * The precomputed best bids and asks of one symbol over time.
+ *
+ * The timeline is a sequence of change points: the times at which the top
+ * {@link #getDepth()} quotes on either side changed. Each change point is stored
+ * as a delta against the previous one (the length of the unchanged prefix on each
+ * side and the rows that follow it), and every {@link #SNAPSHOT_INTERVAL}th change
+ * point is a full snapshot. A point in time lookup binary searches the change
+ * points and applies at most {@link #SNAPSHOT_INTERVAL} deltas from the nearest
+ * snapshot.
+ */
+public class NbboTimeline {
+    public static final int SNAPSHOT_INTERVAL = 32;
+
+    private final int depth;
+    private final long[] times;
+    private final int[] offsets;
+    private final int[] deltas;
+
+    private NbboTimeline(int depth, long[] times, int[] offsets, int[] deltas) {
+        this.depth = depth;
+        this.times = times;
+        this.offsets = offsets;
+        this.deltas = deltas;
+    }
+
+    /**
+     * @return the number of best quotes kept on each side
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the number of change points
+     */
+    public int size() {
+        return times.length;
+    }
+
+    /**
+     * Gets the best quotes on both sides at a point in time.
+     * @param pointInTime the point in time
+     * @param bids the array the best bid rows are copied into, best first
+     * @param asks the array the best ask rows are copied into, best first
+     * @return the number of bids in the high 32 bits and the number of asks in the low 32 bits
+     */
+    public long lookup(long pointInTime, int[] bids, int[] asks) {
+        // the last change point at or before the point in time
+        int changePoint = upperBound(pointInTime) - 1;
+        if (changePoint < 0) {
+            return 0;
+        }
+        int bidCount = 0;
+        int askCount = 0;
+        for (int i = changePoint - changePoint % SNAPSHOT_INTERVAL; i <= changePoint; i++) {
+            int pos = offsets[i];
+            bidCount = applyDelta(pos, bids);
+            pos += 2 + deltas[pos + 1];
+            askCount = applyDelta(pos, asks);
+        }
+        return ((long) bidCount << 32) | askCount;
+    }
+
+    private int applyDelta(int pos, int[] rows) {
+        int keep = deltas[pos];
+        int count = deltas[pos + 1];
+        System.arraycopy(deltas, pos + 2, rows, keep, count);
+        return keep + count;
+    }
+
+    private int upperBound(long pointInTime) {
+        int lo = 0;
+        int hi = times.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= pointInTime) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return the approximate heap size of the timeline in bytes
+     */
+    public long estimatedBytes() {
+        return 48L + 8L * times.length + 4L * offsets.length + 4L * deltas.length;
+    }
+
+    /**
+     * Builds a timeline from its change points, which must be added in time order.
+     */
+    public static class Builder {
+        private final int depth;
+        private final int[] bids;
+        private final int[] asks;
+        private int bidCount;
+        private int askCount;
+        private long[] times = new long[16];
+        private int[] offsets = new int[16];
+        private int[] deltas = new int[64];
+        private int size;
+        private int deltaSize;
+
+        /**
+         * @param depth the number of best quotes kept on each side
+         */
+        public Builder(int depth) {
+            this.depth = depth;
+            this.bids = new int[depth];
+            this.asks = new int[depth];
+        }
+
+        /**
+         * Adds a change point if the best quotes differ from the previous change point.
+         * @param time the time of the change point
+         * @param newBids the best bid rows, best first
+         * @param newBidCount the number of best bids
+         * @param newAsks the best ask rows, best first
+         * @param newAskCount the number of best asks
+         */
+        public void add(long time, int[] newBids, int newBidCount, int[] newAsks, int newAskCount) {
+            int bidKeep = commonPrefix(bids, bidCount, newBids, newBidCount);
+            int askKeep = commonPrefix(asks, askCount, newAsks, newAskCount);
+            if (bidKeep == bidCount && bidKeep == newBidCount && askKeep == askCount && askKeep == newAskCount) {
+                return;
+            }
+            // every SNAPSHOT_INTERVAL change points the full book is stored
+            if (size % SNAPSHOT_INTERVAL == 0) {
+                bidKeep = 0;
+                askKeep = 0;
+            }
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            times[size] = time;
+            offsets[size] = deltaSize;
+            size++;
+            writeDelta(bidKeep, newBids, newBidCount);
+            writeDelta(askKeep, newAsks, newAskCount);
+
+            System.arraycopy(newBids, 0, bids, 0, newBidCount);
+            bidCount = newBidCount;
+            System.arraycopy(newAsks, 0, asks, 0, newAskCount);
+            askCount = newAskCount;
+        }
+
+        private void writeDelta(int keep, int[] rows, int count) {
+            int required = deltaSize + 2 + count - keep;
+            if (required > deltas.length) {
+                deltas = Arrays.copyOf(deltas, Math.max(required, deltas.length * 2));
+            }
+            deltas[deltaSize++] = keep;
+            deltas[deltaSize++] = count - keep;
+            System.arraycopy(rows, keep, deltas, deltaSize, count - keep);
+            deltaSize += count - keep;
+        }
+
+        private static int commonPrefix(int[] first, int firstCount, int[] second, int secondCount) {
+            int limit = Math.min(firstCount, secondCount);
+            int i = 0;
+            while (i < limit && first[i] == second[i]) {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * @return the timeline
+         */
+        public NbboTimeline build() {
+            return new NbboTimeline(depth, Arrays.copyOf(times, size), Arrays.copyOf(offsets, size),
+                    Arrays.copyOf(deltas, deltaSize));
+        }
+    }
+}
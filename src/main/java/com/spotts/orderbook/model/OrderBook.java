@@ -2,8 +2,8 @@ package com.spotts.orderbook.model;
 
 import lombok.Data;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The OrderBook: a list of buy and sell orders for a security
@@ -11,7 +11,19 @@ import java.util.List;
  */
 @Data
 public class OrderBook {
-    private List<Quote> fullOrderBook = new ArrayList<>();
-    private List<Quote> nbbQuotes = new ArrayList<>();
-    private List<Quote> nboQuotes = new ArrayList<>();
+    private QuoteStore quoteStore = new QuoteStore();
+    private Map<String, SymbolQuoteIndex> symbolIndex = new ConcurrentHashMap<>();
+    private Map<String, NbboTimeline> timelines = new ConcurrentHashMap<>();
+
+    /**
+     * @return the approximate heap size of the book in bytes
+     */
+    public long estimatedBytes() {
+        // the interval indexes keep a row, start, end and subtree max end for each quote
+        long bytes = quoteStore.estimatedBytes() + 28L * quoteStore.size();
+        for (NbboTimeline timeline : timelines.values()) {
+            bytes += timeline.estimatedBytes();
+        }
+        return bytes;
+    }
 }
@@ -0,0 +1,30 @@
+package com.spotts.orderbook.model;
+
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One price level on a side of the book: the live quotes at the same price,
+ * whichever market centers quoted it, collapsed into their total size and the
+ * size each market center quoted, largest first.
+ */
+@Value
+public class PriceLevel {
+    BigDecimal price;
+    BigInteger size;
+    int quoteCount;
+    Map<String, BigInteger> marketCenters;
+
+    public PriceLevel(BigDecimal price, BigInteger size, int quoteCount, Map<String, BigInteger> marketCenters) {
+        this.price = price;
+        this.size = size;
+        this.quoteCount = quoteCount;
+        // keep the order of the market centers, which a copy with Map.copyOf would lose
+        this.marketCenters = Collections.unmodifiableMap(new LinkedHashMap<>(marketCenters));
+    }
+}
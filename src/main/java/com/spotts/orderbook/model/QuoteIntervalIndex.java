@@ -0,0 +1,184 @@
+package com.spotts.orderbook.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A static interval index over the quotes of a single symbol.
+ *
+ * The intervals are kept in arrays sorted by start time, and the sorted arrays
+ * are treated as an implicit balanced binary search tree (the middle element of
+ * every range is the root of that range). Each node stores the maximum end time
+ * of its subtree, so a "which quotes were live at T" query only descends into
+ * subtrees that can contain a live quote and costs O(log n + k).
+ *
+ * Both ends of an interval are inclusive, matching the book's live semantics.
+ */
+public class QuoteIntervalIndex {
+    private final int[] rows;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] subtreeMaxEnds;
+
+    /**
+     * Creates the index from parallel arrays of row positions and interval bounds,
+     * given in row order.
+     * @param rows the positions of the quotes in the full order book
+     * @param starts the start time of each quote
+     * @param ends the end time of each quote
+     * @param size the number of valid entries in the arrays
+     */
+    public QuoteIntervalIndex(int[] rows, long[] starts, long[] ends, int size) {
+        this.rows = new int[size];
+        this.starts = new long[size];
+        this.ends = new long[size];
+        this.subtreeMaxEnds = new long[size];
+
+        // sort the entries by start time; the sort is stable so ties keep book order
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+        for (int i = 0; i < size; i++) {
+            this.rows[i] = rows[order[i]];
+            this.starts[i] = starts[order[i]];
+            this.ends[i] = ends[order[i]];
+        }
+        computeMaxEnds(0, size);
+    }
+
+    private QuoteIntervalIndex(int[] sortedRows, long[] sortedStarts, long[] sortedEnds) {
+        this.rows = sortedRows;
+        this.starts = sortedStarts;
+        this.ends = sortedEnds;
+        this.subtreeMaxEnds = new long[sortedRows.length];
+        computeMaxEnds(0, sortedRows.length);
+    }
+
+    /**
+     * Merges two indexes into one holding the quotes of both.
+     * @param first the first index
+     * @param second the second index
+     * @return the merged index
+     */
+    public static QuoteIntervalIndex merge(QuoteIntervalIndex first, QuoteIntervalIndex second) {
+        int size = first.size() + second.size();
+        int[] rows = new int[size];
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            // take the entry with the earlier start, ties broken by row
+            boolean takeFirst = j == second.size() || (i < first.size()
+                    && (first.starts[i] < second.starts[j]
+                    || (first.starts[i] == second.starts[j] && first.rows[i] < second.rows[j])));
+            QuoteIntervalIndex from = takeFirst ? first : second;
+            int pos = takeFirst ? i++ : j++;
+            rows[k] = from.rows[pos];
+            starts[k] = from.starts[pos];
+            ends[k] = from.ends[pos];
+        }
+        return new QuoteIntervalIndex(rows, starts, ends);
+    }
+
+    /**
+     * @return the number of quotes in the index
+     */
+    public int size() {
+        return rows.length;
+    }
+
+    /**
+     * @param i the position in start time order
+     * @return the row of the quote at the position
+     */
+    public int rowAt(int i) {
+        return rows[i];
+    }
+
+    /**
+     * @param i the position in start time order
+     * @return the start time of the quote at the position
+     */
+    public long startAt(int i) {
+        return starts[i];
+    }
+
+    /**
+     * @param i the position in start time order
+     * @return the end time of the quote at the position
+     */
+    public long endAt(int i) {
+        return ends[i];
+    }
+
+    /**
+     * @param pointInTime the point in time
+     * @return the number of quotes that start at or before the point in time, which
+     * is also the position of the first quote that starts after it
+     */
+    public int countStartedBy(long pointInTime) {
+        int low = 0;
+        int high = starts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= pointInTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Collects the rows of all quotes with start <= pointInTime <= end.
+     * @param pointInTime the point in time
+     * @param liveRows the list the live rows are added to, in start time order
+     */
+    public void collectLive(long pointInTime, List<Integer> liveRows) {
+        forEachLive(pointInTime, liveRows::add);
+    }
+
+    /**
+     * Passes the rows of all quotes with start <= pointInTime <= end to a consumer,
+     * in start time order.
+     * @param pointInTime the point in time
+     * @param consumer the consumer of the live rows
+     */
+    public void forEachLive(long pointInTime, IntConsumer consumer) {
+        forEachLive(0, rows.length, pointInTime, consumer);
+    }
+
+    private void forEachLive(int lo, int hi, long pointInTime, IntConsumer consumer) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            // nothing in this subtree ends at or after the point in time
+            if (subtreeMaxEnds[mid] < pointInTime) {
+                return;
+            }
+            forEachLive(lo, mid, pointInTime, consumer);
+            // everything from here to the right starts after the point in time
+            if (starts[mid] > pointInTime) {
+                return;
+            }
+            if (ends[mid] >= pointInTime) {
+                consumer.accept(rows[mid]);
+            }
+            lo = mid + 1;
+        }
+    }
+
+    private long computeMaxEnds(int lo, int hi) {
+        if (lo >= hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(ends[mid], Math.max(computeMaxEnds(lo, mid), computeMaxEnds(mid + 1, hi)));
+        subtreeMaxEnds[mid] = max;
+        return max;
+    }
+}
@@ -0,0 +1,308 @@
+package com.spotts.orderbook.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A binary snapshot of a {@link QuoteStore}, so a restart can skip parsing the
+ * quotes file it was built from.
+ *
+ * The snapshot holds the store's dictionaries and its columns as little-endian
+ * arrays, each starting on an 8 byte boundary, followed by a CRC32 of
+ * everything before it. The header records the version of the layout and the
+ * path, size and modification time of the quotes file, and a snapshot is only
+ * read back for the same quotes file in the same state. The columns are
+ * memory-mapped and copied into the store's arrays in bulk.
+ */
+public final class QuoteSnapshot {
+    static final long MAGIC = 0x50414E534B4F4F42L; // "BOOKSNAP" in little-endian
+    static final int VERSION = 1;
+    // magic, version, row count, source size, source modification time, header length
+    private static final int FIXED_HEADER_BYTES = 8 + 4 + 4 + 8 + 8 + 8;
+    private static final int INT_COLUMNS = 6;
+    private static final int LONG_COLUMNS = 5;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final int MAX_MAPPED_BYTES = 1 << 30;
+
+    private QuoteSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a store. The snapshot is written to a temp file first and
+     * then moved into place, so a reader never sees half a snapshot.
+     * @param store the store, which must not be written to while it is saved
+     * @param snapshot the path of the snapshot
+     * @param source the quotes file the store was built from
+     * @throws IOException thrown when the snapshot can't be written
+     */
+    public static void write(QuoteStore store, Path snapshot, Path source) throws IOException {
+        int rows = store.size();
+        QuoteStore.Columns columns = store.getColumns();
+        Path directory = snapshot.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path partial = Files.createTempFile(directory, snapshot.getFileName().toString(), ".partial");
+        try {
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                CRC32 crc = new CRC32();
+                write(channel, header(store, rows, source), crc);
+
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (int[] column : new int[][]{columns.symbolIds, columns.marketCenterIds, columns.bidQuantities,
+                        columns.askQuantities, columns.quoteConditionIds, columns.sipFeedIds}) {
+                    for (int from = 0; from < rows; from += BUFFER_BYTES / Integer.BYTES) {
+                        int count = Math.min(rows - from, BUFFER_BYTES / Integer.BYTES);
+                        buffer.clear();
+                        buffer.asIntBuffer().put(column, from, count);
+                        buffer.limit(count * Integer.BYTES);
+                        write(channel, buffer, crc);
+                    }
+                    write(channel, ByteBuffer.allocate((int) padding((long) rows * Integer.BYTES)), crc);
+                }
+                for (long[] column : new long[][]{columns.bidPrices, columns.askPrices, columns.startTimes,
+                        columns.endTimes, columns.sipFeedSeqs}) {
+                    for (int from = 0; from < rows; from += BUFFER_BYTES / Long.BYTES) {
+                        int count = Math.min(rows - from, BUFFER_BYTES / Long.BYTES);
+                        buffer.clear();
+                        buffer.asLongBuffer().put(column, from, count);
+                        buffer.limit(count * Long.BYTES);
+                        write(channel, buffer, crc);
+                    }
+                }
+
+                ByteBuffer trailer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                trailer.putLong(crc.getValue()).flip();
+                write(channel, trailer, null);
+                channel.force(true);
+            }
+            Files.move(partial, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private static ByteBuffer header(QuoteStore store, int rows, Path source) throws IOException {
+        byte[][] strings = headerStrings(store, source);
+        // the source path and the dictionaries, each value and each dictionary with its length
+        long length = FIXED_HEADER_BYTES + 4L * Integer.BYTES;
+        for (byte[] string : strings) {
+            length += Integer.BYTES + string.length;
+        }
+        length += padding(length);
+        ByteBuffer header = ByteBuffer.allocate(Math.toIntExact(length)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC)
+                .putInt(VERSION)
+                .putInt(rows)
+                .putLong(Files.size(source))
+                .putLong(Files.getLastModifiedTime(source).toMillis())
+                .putLong(length);
+        int string = 0;
+        header.putInt(strings[string].length).put(strings[string++]);
+        for (StringDictionary dictionary : dictionaries(store)) {
+            header.putInt(dictionary.size());
+            for (int id = 0; id < dictionary.size(); id++) {
+                header.putInt(strings[string].length).put(strings[string++]);
+            }
+        }
+        header.position(header.capacity());
+        return header.flip();
+    }
+
+    private static byte[][] headerStrings(QuoteStore store, Path source) {
+        int count = 1;
+        for (StringDictionary dictionary : dictionaries(store)) {
+            count += dictionary.size();
+        }
+        byte[][] strings = new byte[count][];
+        int string = 0;
+        strings[string++] = sourceKey(source).getBytes(StandardCharsets.UTF_8);
+        for (StringDictionary dictionary : dictionaries(store)) {
+            for (int id = 0; id < dictionary.size(); id++) {
+                strings[string++] = dictionary.decode(id).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return strings;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        if (crc != null) {
+            crc.update(buffer.duplicate());
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reads a store back from a snapshot.
+     * @param snapshot the path of the snapshot
+     * @param source the quotes file the store should be built from
+     * @return the store
+     * @throws IOException thrown when the snapshot can't be read, is corrupt, has
+     * another version, or was written for another quotes file or an older state of it
+     */
+    public static QuoteStore read(Path snapshot, Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < FIXED_HEADER_BYTES + Long.BYTES) {
+                throw corrupt(snapshot, "it is too short");
+            }
+            ByteBuffer fixed = channel.map(FileChannel.MapMode.READ_ONLY, 0, FIXED_HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (fixed.getLong() != MAGIC) {
+                throw corrupt(snapshot, "it is not a quote snapshot");
+            }
+            int version = fixed.getInt();
+            if (version != VERSION) {
+                throw new IOException("The snapshot " + snapshot + " has version " + version
+                        + " but version " + VERSION + " is expected");
+            }
+            int rows = fixed.getInt();
+            long sourceSize = fixed.getLong();
+            long sourceModified = fixed.getLong();
+            long headerLength = fixed.getLong();
+            if (rows < 0 || headerLength < FIXED_HEADER_BYTES || headerLength > Integer.MAX_VALUE
+                    || fileSize != headerLength + columnBytes(rows) + Long.BYTES) {
+                throw corrupt(snapshot, "its length doesn't match its header");
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerLength)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            CRC32 crc = new CRC32();
+            crc.update(header.duplicate());
+            header.position(FIXED_HEADER_BYTES);
+            String sourceKey = readString(header, snapshot);
+            if (!sourceKey.equals(sourceKey(source)) || sourceSize != Files.size(source)
+                    || sourceModified != Files.getLastModifiedTime(source).toMillis()) {
+                throw new IOException("The snapshot " + snapshot + " is stale, it was written for another "
+                        + "version of " + sourceKey);
+            }
+            StringDictionary[] dictionaries = new StringDictionary[4];
+            for (int i = 0; i < dictionaries.length; i++) {
+                dictionaries[i] = readDictionary(header, snapshot);
+            }
+
+            QuoteStore.Columns columns = new QuoteStore.Columns(rows);
+            long offset = headerLength;
+            for (int[] column : new int[][]{columns.symbolIds, columns.marketCenterIds, columns.bidQuantities,
+                    columns.askQuantities, columns.quoteConditionIds, columns.sipFeedIds}) {
+                offset = readInts(channel, offset, column, crc);
+                long padding = padding((long) rows * Integer.BYTES);
+                if (padding > 0) {
+                    crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, padding));
+                    offset += padding;
+                }
+            }
+            for (long[] column : new long[][]{columns.bidPrices, columns.askPrices, columns.startTimes,
+                    columns.endTimes, columns.sipFeedSeqs}) {
+                offset = readLongs(channel, offset, column, crc);
+            }
+            long checksum = channel.map(FileChannel.MapMode.READ_ONLY, offset, Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).getLong();
+            if (checksum != crc.getValue()) {
+                throw corrupt(snapshot, "its checksum doesn't match");
+            }
+            checkIds(columns.symbolIds, dictionaries[0], snapshot);
+            checkIds(columns.marketCenterIds, dictionaries[1], snapshot);
+            checkIds(columns.quoteConditionIds, dictionaries[2], snapshot);
+            checkIds(columns.sipFeedIds, dictionaries[3], snapshot);
+            return new QuoteStore(dictionaries[0], dictionaries[1], dictionaries[2], dictionaries[3],
+                    columns, rows);
+        }
+    }
+
+    private static long readInts(FileChannel channel, long offset, int[] column, CRC32 crc) throws IOException {
+        int perMap = MAX_MAPPED_BYTES / Integer.BYTES;
+        for (int from = 0; from < column.length; from += perMap) {
+            int count = Math.min(column.length - from, perMap);
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) count * Integer.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            crc.update(mapped.duplicate());
+            mapped.asIntBuffer().get(column, from, count);
+            offset += (long) count * Integer.BYTES;
+        }
+        return offset;
+    }
+
+    private static long readLongs(FileChannel channel, long offset, long[] column, CRC32 crc) throws IOException {
+        int perMap = MAX_MAPPED_BYTES / Long.BYTES;
+        for (int from = 0; from < column.length; from += perMap) {
+            int count = Math.min(column.length - from, perMap);
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, (long) count * Long.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            crc.update(mapped.duplicate());
+            mapped.asLongBuffer().get(column, from, count);
+            offset += (long) count * Long.BYTES;
+        }
+        return offset;
+    }
+
+    private static StringDictionary readDictionary(ByteBuffer header, Path snapshot) throws IOException {
+        int size = readLength(header, snapshot);
+        StringDictionary dictionary = new StringDictionary();
+        for (int id = 0; id < size; id++) {
+            // the values are added in id order, so they get back their ids
+            if (dictionary.encode(readString(header, snapshot)) != id) {
+                throw corrupt(snapshot, "a dictionary holds a value twice");
+            }
+        }
+        return dictionary;
+    }
+
+    private static String readString(ByteBuffer header, Path snapshot) throws IOException {
+        byte[] bytes = new byte[readLength(header, snapshot)];
+        if (bytes.length > header.remaining()) {
+            throw corrupt(snapshot, "its header is cut short");
+        }
+        header.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readLength(ByteBuffer header, Path snapshot) throws IOException {
+        if (header.remaining() < Integer.BYTES) {
+            throw corrupt(snapshot, "its header is cut short");
+        }
+        int length = header.getInt();
+        if (length < 0 || length > header.remaining()) {
+            throw corrupt(snapshot, "its header holds a bad length");
+        }
+        return length;
+    }
+
+    private static void checkIds(int[] ids, StringDictionary dictionary, Path snapshot) throws IOException {
+        for (int id : ids) {
+            if (id < 0 || id >= dictionary.size()) {
+                throw corrupt(snapshot, "a row refers to a missing dictionary value");
+            }
+        }
+    }
+
+    private static StringDictionary[] dictionaries(QuoteStore store) {
+        return new StringDictionary[]{store.getSymbols(), store.getMarketCenters(),
+                store.getQuoteConditions(), store.getSipFeeds()};
+    }
+
+    private static String sourceKey(Path source) {
+        return source.toAbsolutePath().normalize().toString();
+    }
+
+    private static long columnBytes(int rows) {
+        long intColumn = (long) rows * Integer.BYTES;
+        return INT_COLUMNS * (intColumn + padding(intColumn)) + LONG_COLUMNS * (long) rows * Long.BYTES;
+    }
+
+    private static long padding(long bytes) {
+        return (8 - bytes % 8) % 8;
+    }
+
+    private static IOException corrupt(Path snapshot, String reason) {
+        return new IOException("The snapshot " + snapshot + " is corrupt, " + reason);
+    }
+}
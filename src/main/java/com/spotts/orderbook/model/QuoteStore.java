@@ -0,0 +1,297 @@
+package com.spotts.orderbook.model;
+
+import com.spotts.orderbook.util.OrderBookUtil;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Columnar (struct of arrays) storage for the quotes on the book.
+ *
+ * Each quote is a row number, and each field is a primitive array indexed by row:
+ * prices are fixed-point ticks of {@link #PRICE_SCALE} decimal places, times are
+ * nanoseconds since the epoch, and the String fields are ids in a
+ * {@link StringDictionary}. A row costs 64 bytes, and {@link Quote} objects are
+ * only created from a row at the API edge with {@link #toQuote(int)}.
+ *
+ * A store has a single writer, and rows are never changed once added, so
+ * readers on other threads can read any row below {@link #size()} while quotes
+ * are being added.
+ */
+public class QuoteStore {
+    public static final int PRICE_SCALE = 6;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StringDictionary symbols;
+    private final StringDictionary marketCenters;
+    private final StringDictionary quoteConditions;
+    private final StringDictionary sipFeeds;
+
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY);
+    private volatile int size;
+
+    public QuoteStore() {
+        this(new StringDictionary(), new StringDictionary(), new StringDictionary(), new StringDictionary());
+    }
+
+    private QuoteStore(StringDictionary symbols, StringDictionary marketCenters,
+                       StringDictionary quoteConditions, StringDictionary sipFeeds) {
+        this.symbols = symbols;
+        this.marketCenters = marketCenters;
+        this.quoteConditions = quoteConditions;
+        this.sipFeeds = sipFeeds;
+    }
+
+    /**
+     * Creates a store holding columns that were read back from a {@link QuoteSnapshot}.
+     */
+    QuoteStore(StringDictionary symbols, StringDictionary marketCenters, StringDictionary quoteConditions,
+               StringDictionary sipFeeds, Columns columns, int size) {
+        this(symbols, marketCenters, quoteConditions, sipFeeds);
+        this.columns = columns;
+        this.size = size;
+    }
+
+    /**
+     * Creates an empty store that shares this store's dictionaries, so a chunk of
+     * quotes can be parsed on another thread and then appended with {@link #append(QuoteStore)}.
+     * @return the new chunk store
+     */
+    public QuoteStore newChunk() {
+        return new QuoteStore(symbols, marketCenters, quoteConditions, sipFeeds);
+    }
+
+    /**
+     * Appends all the quotes of a chunk created by {@link #newChunk()} to the end of the store.
+     * @param chunk the chunk
+     */
+    public void append(QuoteStore chunk) {
+        if (chunk.symbols != symbols) {
+            throw new IllegalArgumentException("The chunk does not share this store's dictionaries");
+        }
+        int count = chunk.size;
+        int required = size + count;
+        Columns columns = this.columns;
+        if (required > columns.capacity()) {
+            columns = grow(required);
+        }
+        Columns source = chunk.columns;
+        System.arraycopy(source.symbolIds, 0, columns.symbolIds, size, count);
+        System.arraycopy(source.marketCenterIds, 0, columns.marketCenterIds, size, count);
+        System.arraycopy(source.bidQuantities, 0, columns.bidQuantities, size, count);
+        System.arraycopy(source.askQuantities, 0, columns.askQuantities, size, count);
+        System.arraycopy(source.bidPrices, 0, columns.bidPrices, size, count);
+        System.arraycopy(source.askPrices, 0, columns.askPrices, size, count);
+        System.arraycopy(source.startTimes, 0, columns.startTimes, size, count);
+        System.arraycopy(source.endTimes, 0, columns.endTimes, size, count);
+        System.arraycopy(source.quoteConditionIds, 0, columns.quoteConditionIds, size, count);
+        System.arraycopy(source.sipFeedSeqs, 0, columns.sipFeedSeqs, size, count);
+        System.arraycopy(source.sipFeedIds, 0, columns.sipFeedIds, size, count);
+        size = required;
+    }
+
+    /**
+     * Adds a quote to the end of the store.
+     * @return the row of the new quote
+     */
+    public int add(int symbolId, int marketCenterId, int bidQuantity, int askQuantity,
+                   long bidPrice, long askPrice, long startTime, long endTime,
+                   int quoteConditionId, long sipFeedSeq, int sipFeedId) {
+        int row = size;
+        Columns columns = this.columns;
+        if (row == columns.capacity()) {
+            columns = grow(row + 1);
+        }
+        columns.symbolIds[row] = symbolId;
+        columns.marketCenterIds[row] = marketCenterId;
+        columns.bidQuantities[row] = bidQuantity;
+        columns.askQuantities[row] = askQuantity;
+        columns.bidPrices[row] = bidPrice;
+        columns.askPrices[row] = askPrice;
+        columns.startTimes[row] = startTime;
+        columns.endTimes[row] = endTime;
+        columns.quoteConditionIds[row] = quoteConditionId;
+        columns.sipFeedSeqs[row] = sipFeedSeq;
+        columns.sipFeedIds[row] = sipFeedId;
+        // publish the row after its fields are written
+        size = row + 1;
+        return row;
+    }
+
+    private Columns grow(int required) {
+        Columns grown = new Columns(columns, Math.max(required, columns.capacity() * 2));
+        columns = grown;
+        return grown;
+    }
+
+    /**
+     * @return the number of quotes in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the current column arrays, filled up to {@link #size()}
+     */
+    Columns getColumns() {
+        return columns;
+    }
+
+    public StringDictionary getSymbols() {
+        return symbols;
+    }
+
+    public StringDictionary getMarketCenters() {
+        return marketCenters;
+    }
+
+    public StringDictionary getQuoteConditions() {
+        return quoteConditions;
+    }
+
+    public StringDictionary getSipFeeds() {
+        return sipFeeds;
+    }
+
+    public int getSymbolId(int row) {
+        return columns.symbolIds[row];
+    }
+
+    public int getMarketCenterId(int row) {
+        return columns.marketCenterIds[row];
+    }
+
+    public int getBidQuantity(int row) {
+        return columns.bidQuantities[row];
+    }
+
+    public int getAskQuantity(int row) {
+        return columns.askQuantities[row];
+    }
+
+    public long getBidPrice(int row) {
+        return columns.bidPrices[row];
+    }
+
+    public long getAskPrice(int row) {
+        return columns.askPrices[row];
+    }
+
+    public long getStartTime(int row) {
+        return columns.startTimes[row];
+    }
+
+    public long getEndTime(int row) {
+        return columns.endTimes[row];
+    }
+
+    public int getQuoteConditionId(int row) {
+        return columns.quoteConditionIds[row];
+    }
+
+    public long getSipFeedSeq(int row) {
+        return columns.sipFeedSeqs[row];
+    }
+
+    public int getSipFeedId(int row) {
+        return columns.sipFeedIds[row];
+    }
+
+    /**
+     * Creates a Quote object from a row of the store.
+     * @param row the row
+     * @return the Quote
+     */
+    public Quote toQuote(int row) {
+        Columns columns = this.columns;
+        Quote quote = new Quote();
+        quote.setSymbol(symbols.decode(columns.symbolIds[row]));
+        quote.setMarketCenter(marketCenters.decode(columns.marketCenterIds[row]));
+        quote.setBidQuantity(BigInteger.valueOf(columns.bidQuantities[row]));
+        quote.setAskQuantity(BigInteger.valueOf(columns.askQuantities[row]));
+        quote.setBidPrice(toPrice(columns.bidPrices[row]));
+        quote.setAskPrice(toPrice(columns.askPrices[row]));
+        quote.setStartTime(OrderBookUtil.toTimestamp(columns.startTimes[row]));
+        quote.setEndTime(OrderBookUtil.toTimestamp(columns.endTimes[row]));
+        quote.setQuoteConditions(quoteConditions.decode(columns.quoteConditionIds[row]));
+        quote.setSipFeedSeq(Long.toString(columns.sipFeedSeqs[row]));
+        quote.setSipFeed(sipFeeds.decode(columns.sipFeedIds[row]));
+        return quote;
+    }
+
+    /**
+     * Converts price ticks back to a decimal price with at least one decimal place,
+     * the way the prices are written in the quotes file (e.g. 129.46, 128.0). The
+     * ticks don't keep the scale the price was written with, so trailing zeros are
+     * dropped down to one decimal place (130 and 129.460 come back as 130.0 and 129.46).
+     * @param ticks the price in ticks
+     * @return the decimal price
+     */
+    public static BigDecimal toPrice(long ticks) {
+        BigDecimal price = BigDecimal.valueOf(ticks, PRICE_SCALE).stripTrailingZeros();
+        return price.scale() < 1 ? price.setScale(1) : price;
+    }
+
+    /**
+     * @return the approximate heap size of the store in bytes
+     */
+    public long estimatedBytes() {
+        // six int columns and five long columns
+        long columnBytes = (6L * Integer.BYTES + 5L * Long.BYTES) * columns.capacity() + 11L * 16L;
+        return columnBytes + symbols.estimatedBytes() + marketCenters.estimatedBytes()
+                + quoteConditions.estimatedBytes() + sipFeeds.estimatedBytes();
+    }
+
+    /**
+     * The column arrays. A store replaces its columns with a larger copy when it
+     * grows, and publishes them through a volatile field, so a reader that got a
+     * row from the store always sees that row's fields.
+     */
+    static final class Columns {
+        final int[] symbolIds;
+        final int[] marketCenterIds;
+        final int[] bidQuantities;
+        final int[] askQuantities;
+        final long[] bidPrices;
+        final long[] askPrices;
+        final long[] startTimes;
+        final long[] endTimes;
+        final int[] quoteConditionIds;
+        final long[] sipFeedSeqs;
+        final int[] sipFeedIds;
+
+        Columns(int capacity) {
+            symbolIds = new int[capacity];
+            marketCenterIds = new int[capacity];
+            bidQuantities = new int[capacity];
+            askQuantities = new int[capacity];
+            bidPrices = new long[capacity];
+            askPrices = new long[capacity];
+            startTimes = new long[capacity];
+            endTimes = new long[capacity];
+            quoteConditionIds = new int[capacity];
+            sipFeedSeqs = new long[capacity];
+            sipFeedIds = new int[capacity];
+        }
+
+        Columns(Columns columns, int capacity) {
+            symbolIds = Arrays.copyOf(columns.symbolIds, capacity);
+            marketCenterIds = Arrays.copyOf(columns.marketCenterIds, capacity);
+            bidQuantities = Arrays.copyOf(columns.bidQuantities, capacity);
+            askQuantities = Arrays.copyOf(columns.askQuantities, capacity);
+            bidPrices = Arrays.copyOf(columns.bidPrices, capacity);
+            askPrices = Arrays.copyOf(columns.askPrices, capacity);
+            startTimes = Arrays.copyOf(columns.startTimes, capacity);
+            endTimes = Arrays.copyOf(columns.endTimes, capacity);
+            quoteConditionIds = Arrays.copyOf(columns.quoteConditionIds, capacity);
+            sipFeedSeqs = Arrays.copyOf(columns.sipFeedSeqs, capacity);
+            sipFeedIds = Arrays.copyOf(columns.sipFeedIds, capacity);
+        }
+
+        int capacity() {
+            return symbolIds.length;
+        }
+    }
+}
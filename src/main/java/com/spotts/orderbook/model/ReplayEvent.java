@@ -0,0 +1,18 @@
+package com.spotts.orderbook.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Value;
+
+/**
+ * A change of a symbol's best bids and asks, as a replay of the book publishes
+ * it to its subscribers. The sequence numbers of a replay's events count up from
+ * 0, so a subscriber can tell how many events it missed.
+ */
+@Value
+public class ReplayEvent {
+    long sequence;
+    NbboResult nbbo;
+    // the System.nanoTime() the event was published at, for the delivery latency
+    @JsonIgnore
+    long publishedNanos;
+}
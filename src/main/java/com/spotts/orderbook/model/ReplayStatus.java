@@ -0,0 +1,19 @@
+package com.spotts.orderbook.model;
+
+import lombok.Value;
+
+/**
+ * The progress of a replay of the book: whether it is still running, its speed,
+ * and what happened to its events so far.
+ */
+@Value
+public class ReplayStatus {
+    boolean running;
+    double speed;
+    long published;
+    double publishedPerSecond;
+    long delivered;
+    long dropped;
+    long disconnected;
+    int subscribers;
+}
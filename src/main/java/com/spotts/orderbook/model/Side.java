@@ -0,0 +1,72 @@
+package com.spotts.orderbook.model;
+
+/**
+ * A side of the book. Each side orders the quotes in a {@link QuoteStore} from
+ * best to worst: by price (highest bid, lowest ask), then by earliest start time,
+ * then by lowest sip feed sequence number, then by row.
+ */
+public enum Side {
+    BID {
+        @Override
+        public long price(QuoteStore store, int row) {
+            return store.getBidPrice(row);
+        }
+
+        @Override
+        public int quantity(QuoteStore store, int row) {
+            return store.getBidQuantity(row);
+        }
+
+        @Override
+        public int comparePrices(long firstPrice, long secondPrice) {
+            return Long.compare(secondPrice, firstPrice);
+        }
+    },
+    ASK {
+        @Override
+        public long price(QuoteStore store, int row) {
+            return store.getAskPrice(row);
+        }
+
+        @Override
+        public int quantity(QuoteStore store, int row) {
+            return store.getAskQuantity(row);
+        }
+
+        @Override
+        public int comparePrices(long firstPrice, long secondPrice) {
+            return Long.compare(firstPrice, secondPrice);
+        }
+    };
+
+    /**
+     * @return the price of the quote on this side, in ticks
+     */
+    public abstract long price(QuoteStore store, int row);
+
+    /**
+     * @return the quantity of the quote on this side
+     */
+    public abstract int quantity(QuoteStore store, int row);
+
+    /**
+     * @return a negative number when the first price is better than the second,
+     * a positive number when it is worse, and 0 when they are the same
+     */
+    public abstract int comparePrices(long firstPrice, long secondPrice);
+
+    /**
+     * Compares two quotes on this side.
+     * @return a negative number when the first quote is better than the second
+     */
+    public int compare(QuoteStore store, int firstRow, int secondRow) {
+        int result = comparePrices(price(store, firstRow), price(store, secondRow));
+        if (result == 0) {
+            result = Long.compare(store.getStartTime(firstRow), store.getStartTime(secondRow));
+        }
+        if (result == 0) {
+            result = Long.compare(store.getSipFeedSeq(firstRow), store.getSipFeedSeq(secondRow));
+        }
+        return result != 0 ? result : Integer.compare(firstRow, secondRow);
+    }
+}
@@ -0,0 +1,79 @@
+package com.spotts.orderbook.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encoding for the low cardinality String fields of a quote
+ * (symbol, market center, quote conditions, sip feed). Each distinct value
+ * is stored once and quotes refer to it by a dense int id.
+ */
+public class StringDictionary {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private volatile int size;
+
+    /**
+     * Gets the id of a value, adding the value to the dictionary if it is new.
+     * @param value the String value
+     * @return the id of the value
+     */
+    public int encode(String value) {
+        Integer id = ids.get(value);
+        return id != null ? id : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        values = current;
+        // publish the value before its id so readers never see an unknown id
+        ids.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Gets the id of a value without adding it.
+     * @param value the String value
+     * @return the id of the value, or -1 if the value is not in the dictionary
+     */
+    public int lookup(String value) {
+        Integer id = ids.get(value);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * @param id the id of a value
+     * @return the String value for the id
+     */
+    public String decode(int id) {
+        return values[id];
+    }
+
+    /**
+     * @return the number of distinct values
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the approximate heap size of the dictionary in bytes
+     */
+    public long estimatedBytes() {
+        long bytes = 16L + 8L * values.length;
+        for (int i = 0; i < size; i++) {
+            // String header, byte array header and contents, and the map entry
+            bytes += 24L + 16L + values[i].length() + 48L;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,144 @@
+package com.spotts.orderbook.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable snapshot of the time index of one symbol's quotes that new
+ * quotes can be added to while readers use older snapshots.
+ *
+ * The quotes are split into levels, each a static {@link QuoteIntervalIndex}
+ * at least twice the size of the next, plus a short unsorted tail of the newest
+ * quotes. Adding a quote returns a new snapshot: it writes past the end of the
+ * tail arrays, which older snapshots never read, and when the tail is full it
+ * becomes a level and same-sized levels are merged. A lookup queries the
+ * O(log n) levels and scans the tail.
+ */
+public class SymbolQuoteIndex {
+    private static final int TAIL_CAPACITY = 64;
+    private static final QuoteIntervalIndex[] NO_LEVELS = new QuoteIntervalIndex[0];
+
+    private final QuoteIntervalIndex[] levels;
+    private final int[] tailRows;
+    private final long[] tailStarts;
+    private final long[] tailEnds;
+    private final int tailSize;
+    private final int size;
+    private QuoteIntervalIndex compacted;
+
+    /**
+     * Creates a snapshot holding a single static index.
+     * @param index the index
+     */
+    public SymbolQuoteIndex(QuoteIntervalIndex index) {
+        this(new QuoteIntervalIndex[]{index}, new int[TAIL_CAPACITY], new long[TAIL_CAPACITY],
+                new long[TAIL_CAPACITY], 0);
+    }
+
+    /**
+     * Creates an empty snapshot.
+     */
+    public SymbolQuoteIndex() {
+        this(NO_LEVELS, new int[TAIL_CAPACITY], new long[TAIL_CAPACITY], new long[TAIL_CAPACITY], 0);
+    }
+
+    private SymbolQuoteIndex(QuoteIntervalIndex[] levels, int[] tailRows, long[] tailStarts,
+                             long[] tailEnds, int tailSize) {
+        this.levels = levels;
+        this.tailRows = tailRows;
+        this.tailStarts = tailStarts;
+        this.tailEnds = tailEnds;
+        this.tailSize = tailSize;
+        int count = tailSize;
+        for (QuoteIntervalIndex level : levels) {
+            count += level.size();
+        }
+        this.size = count;
+    }
+
+    /**
+     * Adds a quote. Quotes must be added in row order, by a single writer,
+     * and always to the newest snapshot.
+     * @param row the row of the quote
+     * @param start the start time of the quote
+     * @param end the end time of the quote
+     * @return the new snapshot
+     */
+    public SymbolQuoteIndex withQuote(int row, long start, long end) {
+        if (tailSize < TAIL_CAPACITY) {
+            tailRows[tailSize] = row;
+            tailStarts[tailSize] = start;
+            tailEnds[tailSize] = end;
+            return new SymbolQuoteIndex(levels, tailRows, tailStarts, tailEnds, tailSize + 1);
+        }
+
+        // the tail becomes the smallest level, merged with the levels that aren't at least twice its size
+        QuoteIntervalIndex merged = new QuoteIntervalIndex(tailRows, tailStarts, tailEnds, tailSize);
+        int count = levels.length;
+        while (count > 0 && levels[count - 1].size() < 2 * merged.size()) {
+            merged = QuoteIntervalIndex.merge(levels[--count], merged);
+        }
+        QuoteIntervalIndex[] newLevels = Arrays.copyOf(levels, count + 1);
+        newLevels[count] = merged;
+
+        int[] newTailRows = new int[TAIL_CAPACITY];
+        long[] newTailStarts = new long[TAIL_CAPACITY];
+        long[] newTailEnds = new long[TAIL_CAPACITY];
+        newTailRows[0] = row;
+        newTailStarts[0] = start;
+        newTailEnds[0] = end;
+        return new SymbolQuoteIndex(newLevels, newTailRows, newTailStarts, newTailEnds, 1);
+    }
+
+    /**
+     * @return the number of quotes in the snapshot
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Collects the rows of all quotes with start <= pointInTime <= end.
+     * @param pointInTime the point in time
+     * @param liveRows the list the live rows are added to
+     */
+    public void collectLive(long pointInTime, List<Integer> liveRows) {
+        forEachLive(pointInTime, liveRows::add);
+    }
+
+    /**
+     * Passes the rows of all quotes with start <= pointInTime <= end to a consumer.
+     * The rows are not in any particular order.
+     * @param pointInTime the point in time
+     * @param consumer the consumer of the live rows
+     */
+    public void forEachLive(long pointInTime, IntConsumer consumer) {
+        for (QuoteIntervalIndex level : levels) {
+            level.forEachLive(pointInTime, consumer);
+        }
+        for (int i = 0; i < tailSize; i++) {
+            if (tailStarts[i] <= pointInTime && pointInTime <= tailEnds[i]) {
+                consumer.accept(tailRows[i]);
+            }
+        }
+    }
+
+    /**
+     * @return a single static index holding all the quotes of the snapshot, in start time order
+     */
+    public QuoteIntervalIndex compacted() {
+        QuoteIntervalIndex result = compacted;
+        if (result == null && tailSize == 0 && levels.length == 1) {
+            result = levels[0];
+        } else if (result == null) {
+            result = new QuoteIntervalIndex(tailRows, tailStarts, tailEnds, tailSize);
+            for (int i = levels.length - 1; i >= 0; i--) {
+                result = QuoteIntervalIndex.merge(levels[i], result);
+            }
+            // the result is immutable, so it is safe to share without synchronization
+            compacted = result;
+        }
+        return result;
+    }
+}
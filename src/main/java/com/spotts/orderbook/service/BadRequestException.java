@@ -0,0 +1,15 @@
+package com.spotts.orderbook.service;
+
+/**
+ * A request with a parameter that can't be used, such as a negative depth or a
+ * range that ends before it starts. Only these are reported back to the client
+ * as bad requests, not the IllegalArgumentExceptions of the service's own bugs.
+ */
+public class BadRequestException extends IllegalArgumentException {
+    /**
+     * @param message the detail message
+     */
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,108 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.Side;
+
+/**
+ * Keeps the best K quotes on one side of the book while the live quotes are
+ * offered one at a time. The heap is bounded: its root is the worst quote kept,
+ * so a quote that can't make the top K is rejected with a single comparison.
+ */
+public class BestQuoteHeap {
+    private final QuoteStore store;
+    private final Side side;
+    private final int[] heap;
+    private int size;
+    private int offered;
+
+    /**
+     * @param store the store holding the quotes
+     * @param side the side of the book
+     * @param limit the number of best quotes to keep
+     */
+    public BestQuoteHeap(QuoteStore store, Side side, int limit) {
+        this.store = store;
+        this.side = side;
+        this.heap = new int[Math.max(0, limit)];
+    }
+
+    /**
+     * Offers a live quote to the heap.
+     * @param row the row of the quote in the store
+     */
+    public void offer(int row) {
+        offered++;
+        if (size < heap.length) {
+            heap[size] = row;
+            siftUp(size++);
+        } else if (size > 0 && side.compare(store, row, heap[0]) < 0) {
+            // better than the worst quote kept, so it replaces it
+            heap[0] = row;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @return the number of quotes kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of quotes offered
+     */
+    public int offeredCount() {
+        return offered;
+    }
+
+    /**
+     * @return the rows of the quotes kept, best first
+     */
+    public int[] toSortedRows() {
+        int[] rows = new int[size];
+        System.arraycopy(heap, 0, rows, 0, size);
+        // the heap holds at most K rows, so an insertion sort is enough
+        for (int i = 1; i < rows.length; i++) {
+            int row = rows[i];
+            int j = i - 1;
+            while (j >= 0 && side.compare(store, rows[j], row) > 0) {
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            rows[j + 1] = row;
+        }
+        return rows;
+    }
+
+    private void siftUp(int pos) {
+        int row = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (side.compare(store, heap[parent], row) >= 0) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = row;
+    }
+
+    private void siftDown(int pos) {
+        int row = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            // move towards the worse child so the worst quote stays at the root
+            if (child + 1 < size && side.compare(store, heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (side.compare(store, row, heap[child]) >= 0) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = row;
+    }
+}
@@ -0,0 +1,14 @@
+package com.spotts.orderbook.service;
+
+/**
+ * A request that needs the full order book, made to a book configured to load
+ * its symbols lazily.
+ */
+public class LazySymbolsException extends IllegalStateException {
+    /**
+     * @param message the detail message
+     */
+    public LazySymbolsException(String message) {
+        super(message);
+    }
+}
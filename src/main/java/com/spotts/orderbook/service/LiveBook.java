@@ -0,0 +1,96 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.Side;
+
+import java.util.TreeSet;
+import java.util.function.IntConsumer;
+
+/**
+ * The quotes live on the book for one symbol while its quotes are swept in time
+ * order, kept sorted best first on both sides.
+ */
+public class LiveBook {
+    private final QuoteStore store;
+    private final TreeSet<Integer> bids;
+    private final TreeSet<Integer> asks;
+
+    /**
+     * @param store the store holding the quotes
+     */
+    public LiveBook(QuoteStore store) {
+        this.store = store;
+        bids = new TreeSet<>((first, second) -> Side.BID.compare(store, first, second));
+        asks = new TreeSet<>((first, second) -> Side.ASK.compare(store, first, second));
+    }
+
+    /**
+     * Adds a quote that became live.
+     * @param row the row of the quote
+     */
+    public void add(int row) {
+        bids.add(row);
+        asks.add(row);
+    }
+
+    /**
+     * Removes a quote that is no longer live.
+     * @param row the row of the quote
+     */
+    public void remove(int row) {
+        bids.remove(row);
+        asks.remove(row);
+    }
+
+    /**
+     * @return the number of live quotes
+     */
+    public int size() {
+        return bids.size();
+    }
+
+    /**
+     * Copies the best live quotes on one side into an array.
+     * @param side the side of the book
+     * @param limit the maximum number of quotes
+     * @param rows the array the rows are copied into, best first
+     * @return the number of rows copied
+     */
+    public int best(Side side, int limit, int[] rows) {
+        int count = 0;
+        for (int row : side == Side.BID ? bids : asks) {
+            if (count == limit) {
+                break;
+            }
+            rows[count++] = row;
+        }
+        return count;
+    }
+
+    /**
+     * @return the row of the best live quote on one side, or -1 when the book is empty
+     */
+    public int best(Side side) {
+        TreeSet<Integer> quotes = side == Side.BID ? bids : asks;
+        return quotes.isEmpty() ? -1 : quotes.first();
+    }
+
+    /**
+     * Calls a consumer with each live quote at the best price on one side, best first.
+     * @param side the side of the book
+     * @param consumer called with the row of each quote
+     */
+    public void forEachAtBest(Side side, IntConsumer consumer) {
+        TreeSet<Integer> quotes = side == Side.BID ? bids : asks;
+        if (quotes.isEmpty()) {
+            return;
+        }
+        long bestPrice = side.price(store, quotes.first());
+        for (int row : quotes) {
+            if (side.price(store, row) != bestPrice) {
+                break;
+            }
+            consumer.accept(row);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.MarketQuality;
+import com.spotts.orderbook.model.QuoteIntervalIndex;
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.Side;
+import com.spotts.orderbook.model.StringDictionary;
+import com.spotts.orderbook.util.OrderBookUtil;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the market quality of one symbol in a single sweep of its quotes in
+ * time order. Between two sweep events the best bid and ask don't change, so
+ * each stretch adds its length to the times of the market centers at the best
+ * prices, to the two sided, locked and crossed times, and its spread times its
+ * length to the weighted spread.
+ *
+ * Only the quotes live at the current time are kept, plus a total for each
+ * market center and quote condition, however many quotes the symbol has.
+ */
+class MarketQualitySweep {
+    private final QuoteStore store;
+    private final String symbol;
+    private final QuoteIntervalIndex index;
+    private final long[] nbbNanos;
+    private final long[] nboNanos;
+    private final long[] conditionCounts;
+    // the market centers at the best price on a side, each listed once
+    private final int[] centers;
+    private final boolean[] listed;
+    private final IntConsumer collector = this::collect;
+    private int centerCount;
+
+    /**
+     * @param store the store holding the quotes
+     * @param symbol the symbol
+     * @param index the symbol's index
+     */
+    MarketQualitySweep(QuoteStore store, String symbol, QuoteIntervalIndex index) {
+        this.store = store;
+        this.symbol = symbol;
+        this.index = index;
+        // the dictionaries only grow, so they already hold the ids of the indexed quotes
+        int marketCenters = store.getMarketCenters().size();
+        nbbNanos = new long[marketCenters];
+        nboNanos = new long[marketCenters];
+        centers = new int[marketCenters];
+        listed = new boolean[marketCenters];
+        conditionCounts = new long[store.getQuoteConditions().size()];
+    }
+
+    /**
+     * Sweeps the symbol's quotes.
+     * @return the market quality of the symbol
+     */
+    MarketQuality run() {
+        QuoteSweep sweep = new QuoteSweep(store, index);
+        LiveBook liveBook = sweep.getLiveBook();
+        long twoSidedNanos = 0;
+        long lockedNanos = 0;
+        long crossedNanos = 0;
+        // the sum of spread ticks times nanoseconds overflows a long within a day
+        double weightedSpread = 0;
+        int started = 0;
+        long from = sweep.nextEventTime();
+        long time = from;
+        while (time != Long.MAX_VALUE) {
+            sweep.advanceTo(time);
+            // count the conditions of the quotes that started
+            while (started < index.size() && index.startAt(started) <= time) {
+                conditionCounts[store.getQuoteConditionId(index.rowAt(started++))]++;
+            }
+            long next = sweep.nextEventTime();
+            if (next == Long.MAX_VALUE) {
+                // every quote has ended
+                break;
+            }
+            long nanos = next - time;
+            int bid = liveBook.best(Side.BID);
+            int ask = liveBook.best(Side.ASK);
+            if (bid >= 0) {
+                addToMarketCenters(liveBook, Side.BID, nbbNanos, nanos);
+            }
+            if (ask >= 0) {
+                addToMarketCenters(liveBook, Side.ASK, nboNanos, nanos);
+            }
+            if (bid >= 0 && ask >= 0) {
+                long spread = store.getAskPrice(ask) - store.getBidPrice(bid);
+                twoSidedNanos += nanos;
+                weightedSpread += (double) spread * nanos;
+                if (spread == 0) {
+                    lockedNanos += nanos;
+                } else if (spread < 0) {
+                    crossedNanos += nanos;
+                }
+            }
+            time = next;
+        }
+
+        StringDictionary marketCenters = store.getMarketCenters();
+        return new MarketQuality(symbol,
+                from == Long.MAX_VALUE ? null : OrderBookUtil.formatEpochNanos(from),
+                // the last event is one nanosecond after the last quote ended
+                from == Long.MAX_VALUE ? null : OrderBookUtil.formatEpochNanos(time - 1),
+                index.size(),
+                twoSidedNanos > 0 ? QuoteStore.toPrice(Math.round(weightedSpread / twoSidedNanos)) : null,
+                twoSidedNanos, lockedNanos, crossedNanos,
+                largestFirst(marketCenters, nbbNanos), largestFirst(marketCenters, nboNanos),
+                largestFirst(store.getQuoteConditions(), conditionCounts));
+    }
+
+    /**
+     * Adds a stretch of time to the market centers quoting the best price on one
+     * side, once for each market center however many quotes it has at that price.
+     */
+    private void addToMarketCenters(LiveBook liveBook, Side side, long[] totals, long nanos) {
+        centerCount = 0;
+        liveBook.forEachAtBest(side, collector);
+        for (int i = 0; i < centerCount; i++) {
+            totals[centers[i]] += nanos;
+            listed[centers[i]] = false;
+        }
+    }
+
+    private void collect(int row) {
+        int marketCenterId = store.getMarketCenterId(row);
+        if (!listed[marketCenterId]) {
+            listed[marketCenterId] = true;
+            centers[centerCount++] = marketCenterId;
+        }
+    }
+
+    /**
+     * Decodes the ids with a total, largest total first and then by name.
+     */
+    private static Map<String, Long> largestFirst(StringDictionary dictionary, long[] totals) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        IntStream.range(0, totals.length)
+                .filter(id -> totals[id] > 0)
+                .boxed()
+                .sorted(Comparator.<Integer>comparingLong(id -> -totals[id]).thenComparing(dictionary::decode))
+                .forEach(id -> result.put(dictionary.decode(id), totals[id]));
+        return result;
+    }
+}
@@ -5,12 +5,21 @@ import com.spotts.orderbook.model.Quote;
 import java.util.Comparator;
 
 /**
- * Comparator for comparing the bidPrice between two Quotes.
+ * Comparator for comparing the bidPrice between two Quotes. The best (highest)
+ * price comes first, and ties go to the earlier startTime, then the lower sipFeedSeq.
  */
 public class NbbQuoteComparator implements Comparator<Quote> {
 
     @Override
     public int compare(Quote firstQuote, Quote secondQuote) {
-        return firstQuote.getBidPrice().compareTo(secondQuote.getBidPrice());
+        int result = secondQuote.getBidPrice().compareTo(firstQuote.getBidPrice());
+        if (result == 0) {
+            result = firstQuote.getStartTime().compareTo(secondQuote.getStartTime());
+        }
+        if (result == 0) {
+            result = Long.compare(Long.parseLong(firstQuote.getSipFeedSeq()),
+                    Long.parseLong(secondQuote.getSipFeedSeq()));
+        }
+        return result;
     }
 }
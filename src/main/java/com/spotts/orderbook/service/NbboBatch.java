@@ -0,0 +1,199 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.NbboQuery;
+import com.spotts.orderbook.model.NbboResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A batch of NBBO queries answered symbol by symbol and handed out in query order.
+ *
+ * The batch is split into windows of consecutive queries, and the queries of a
+ * window are grouped by symbol. Each symbol of a window is answered by whichever
+ * thread claims it first: a helper task on the executor, or the thread reading
+ * the results when the symbol it needs next hasn't been claimed yet. The reader
+ * only waits for a symbol a helper is still answering, so a batch runs without
+ * any hand-offs when there are no spare cores.
+ *
+ * Helpers work at most one window ahead of the reader, and each answer is kept as
+ * the rows of its best quotes until it is handed out, so a large batch never
+ * holds more than two windows of answers.
+ */
+class NbboBatch implements Iterator<NbboResult> {
+    static final int WINDOW_SIZE = 16384;
+
+    /**
+     * Answers the queries of the batch.
+     */
+    interface Answerer {
+        /**
+         * Answers the queries of one symbol.
+         * @param symbol the symbol
+         * @param queryNumbers the positions of the symbol's queries in the batch, in query order
+         * @param bestRows the answers of the batch, filled in at the query positions
+         *                 with the bid count, the best bid rows and then the best ask rows
+         */
+        void answer(String symbol, int[] queryNumbers, int[][] bestRows);
+
+        /**
+         * Creates the result of a query from its answer.
+         * @param queryNumber the position of the query in the batch
+         * @param bestRows the answer of the query
+         * @return the result
+         */
+        NbboResult toResult(int queryNumber, int[] bestRows);
+    }
+
+    private final List<NbboQuery> queries;
+    private final Answerer answerer;
+    private final Executor executor;
+    private final int helpers;
+    private final int[][] bestRows;
+    private final Window[] windows;
+    private int next;
+
+    /**
+     * @param queries the queries of the batch
+     * @param answerer answers the queries
+     * @param executor the executor running the helper tasks
+     * @param helpers the number of helper tasks for each window
+     */
+    NbboBatch(List<NbboQuery> queries, Answerer answerer, Executor executor, int helpers) {
+        this.queries = queries;
+        this.answerer = answerer;
+        this.executor = executor;
+        this.helpers = helpers;
+        this.bestRows = new int[queries.size()][];
+        this.windows = new Window[(queries.size() + WINDOW_SIZE - 1) / WINDOW_SIZE];
+        // start answering the first two windows
+        for (int w = 0; w < Math.min(2, windows.length); w++) {
+            startWindow(w);
+        }
+    }
+
+    private void startWindow(int w) {
+        windows[w] = new Window(w * WINDOW_SIZE, Math.min(queries.size(), (w + 1) * WINDOW_SIZE));
+        Window window = windows[w];
+        for (int i = 0; i < Math.min(helpers, window.symbols.length - 1); i++) {
+            executor.execute(() -> {
+                while (window.claimAndAnswer()) {
+                    // keep claiming symbols until none are left
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next < bestRows.length;
+    }
+
+    @Override
+    public NbboResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int w = next / WINDOW_SIZE;
+        if (next % WINDOW_SIZE == 0 && w > 0) {
+            // the reader moved on to a new window, so the helpers can start the one after it
+            windows[w - 1] = null;
+            if (w + 1 < windows.length) {
+                startWindow(w + 1);
+            }
+        }
+        windows[w].await(next);
+        NbboResult result = answerer.toResult(next, bestRows[next]);
+        // let the answer go as soon as it has been handed out
+        bestRows[next++] = null;
+        return result;
+    }
+
+    /**
+     * A window of consecutive queries grouped by symbol.
+     */
+    private class Window {
+        private final int from;
+        private final String[] symbols;
+        private final int[] groups;
+        private final int[][] groupQueries;
+        private final List<CompletableFuture<Void>> answered;
+        private final AtomicInteger nextClaim = new AtomicInteger();
+
+        Window(int from, int to) {
+            this.from = from;
+            // number the symbols in the order they first appear
+            Map<String, Integer> symbolGroups = new LinkedHashMap<>();
+            groups = new int[to - from];
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = symbolGroups.computeIfAbsent(queries.get(from + i).getSymbol(),
+                        symbol -> symbolGroups.size());
+            }
+            symbols = symbolGroups.keySet().toArray(new String[0]);
+
+            // bucket the query positions by symbol, in query order
+            int[] groupSizes = new int[symbols.length];
+            for (int group : groups) {
+                groupSizes[group]++;
+            }
+            groupQueries = new int[symbols.length][];
+            for (int group = 0; group < symbols.length; group++) {
+                groupQueries[group] = new int[groupSizes[group]];
+                groupSizes[group] = 0;
+            }
+            for (int i = 0; i < groups.length; i++) {
+                groupQueries[groups[i]][groupSizes[groups[i]]++] = from + i;
+            }
+
+            answered = new ArrayList<>(symbols.length);
+            for (int group = 0; group < symbols.length; group++) {
+                answered.add(new CompletableFuture<>());
+            }
+        }
+
+        /**
+         * Answers the next symbol of the window nobody has claimed yet.
+         * @return false when every symbol has been claimed
+         */
+        boolean claimAndAnswer() {
+            int group = nextClaim.getAndIncrement();
+            if (group >= symbols.length) {
+                return false;
+            }
+            try {
+                answerer.answer(symbols[group], groupQueries[group], bestRows);
+                answered.get(group).complete(null);
+            } catch (RuntimeException | Error e) {
+                answered.get(group).completeExceptionally(e);
+            }
+            return true;
+        }
+
+        /**
+         * Waits until a query of the window has been answered, answering symbols
+         * rather than waiting as long as there are some left.
+         */
+        void await(int queryNumber) {
+            CompletableFuture<Void> future = answered.get(groups[queryNumber - from]);
+            while (!future.isDone() && claimAndAnswer()) {
+                // the symbols are claimed in the order the reader needs them
+            }
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.NbboResult;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A cache of NBBO results by symbol, point in time and depth.
+ *
+ * Entries are evicted oldest first once there are more than the maximum, and
+ * expire once they are older than the time to live. When a quote is added to
+ * the book, the symbol's entries for the points in time the quote is live at
+ * are dropped. Each symbol has a version that every new quote bumps, and a
+ * result is only cached if its symbol's version didn't change while it was
+ * computed, so a result computed from the book before a quote arrived is
+ * never cached after the quote's entries were dropped.
+ */
+public class NbboResultCache {
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, SymbolEntries> symbols = new ConcurrentHashMap<>();
+    // in the order the entries were cached, which is also the order they expire in
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    /**
+     * @param maxEntries the most results to keep
+     * @param ttlMillis how long a result is kept in milliseconds, or 0 to keep it until it is evicted
+     */
+    public NbboResultCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttlMillis * 1_000_000L;
+    }
+
+    /**
+     * Gets a cached result, or runs the query and caches its result.
+     * @param symbol the symbol
+     * @param pointInTime the String timestamp of the point in time, as the result holds it
+     * @param timestamp the point in time in nanoseconds since the epoch
+     * @param depth the most quotes for each side
+     * @param query computes the result
+     * @return the result
+     */
+    public NbboResult get(String symbol, String pointInTime, long timestamp, int depth,
+                          Supplier<NbboResult> query) {
+        Key key = new Key(pointInTime, depth);
+        SymbolEntries entries;
+        long version;
+        while (true) {
+            entries = symbols.computeIfAbsent(symbol, SymbolEntries::new);
+            synchronized (entries) {
+                if (entries.removed) {
+                    // the symbol's entries were just dropped, start over with new ones
+                    continue;
+                }
+                Entry entry = entries.entries.get(key);
+                if (entry != null && !isExpired(entry, System.nanoTime())) {
+                    hitCount.increment();
+                    savedNanos.add(entry.queryNanos);
+                    return entry.result;
+                }
+                version = entries.version;
+            }
+            break;
+        }
+        missCount.increment();
+
+        long started = System.nanoTime();
+        NbboResult result = query.get();
+        long finished = System.nanoTime();
+        Entry entry = new Entry(entries, key, timestamp, result, finished - started, finished);
+        boolean added = false;
+        synchronized (entries) {
+            // a quote added while the query ran may not be in its result
+            if (!entries.removed && entries.version == version) {
+                Entry previous = entries.entries.put(key, entry);
+                if (previous == null) {
+                    size.incrementAndGet();
+                }
+                added = true;
+            }
+        }
+        if (added) {
+            queue.add(entry);
+            queued.incrementAndGet();
+            evict(finished);
+        }
+        return result;
+    }
+
+    /**
+     * Drops a symbol's results for the points in time a new quote is live at.
+     * @param symbol the symbol of the quote
+     * @param startTime the start time of the quote
+     * @param endTime the end time of the quote
+     */
+    public void invalidate(String symbol, long startTime, long endTime) {
+        SymbolEntries entries = symbols.get(symbol);
+        if (entries == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.version++;
+            for (Iterator<Entry> it = entries.entries.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.timestamp >= startTime && entry.timestamp <= endTime) {
+                    it.remove();
+                    size.decrementAndGet();
+                    invalidationCount.increment();
+                }
+            }
+            dropIfEmpty(entries);
+        }
+    }
+
+    /**
+     * Drops expired results and the oldest results over the maximum. The queue
+     * still holds the entries that were invalidated or replaced, so it is
+     * trimmed to the maximum too.
+     */
+    private void evict(long now) {
+        while (true) {
+            Entry head = queue.peek();
+            if (head == null || (queued.get() <= maxEntries && !isExpired(head, now))) {
+                return;
+            }
+            Entry entry = queue.poll();
+            if (entry == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            synchronized (entry.entries) {
+                if (entry.entries.entries.remove(entry.key, entry)) {
+                    size.decrementAndGet();
+                    evictionCount.increment();
+                    dropIfEmpty(entry.entries);
+                }
+            }
+        }
+    }
+
+    private void dropIfEmpty(SymbolEntries entries) {
+        // called holding the entries' lock, so no result is cached in them after this
+        if (entries.entries.isEmpty()) {
+            entries.removed = true;
+            symbols.remove(entries.symbol, entries);
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return ttlNanos > 0 && now - entry.cachedAt > ttlNanos;
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * @return the number of queries answered from the cache
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return the number of queries that had to be run
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the share of queries answered from the cache, 0 before the first query
+     */
+    public double getHitRatio() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the time the cached results took to compute, summed over every time they were served
+     */
+    public long getSavedNanos() {
+        return savedNanos.sum();
+    }
+
+    /**
+     * @return the number of results evicted for their age or the size of the cache
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * @return the number of results dropped because a quote was added for their symbol
+     */
+    public long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    /**
+     * One symbol's results, guarded by its own lock.
+     */
+    private static class SymbolEntries {
+        final String symbol;
+        final Map<Key, Entry> entries = new HashMap<>();
+        long version;
+        boolean removed;
+
+        SymbolEntries(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    private static final class Key {
+        final String pointInTime;
+        final int depth;
+
+        Key(String pointInTime, int depth) {
+            this.pointInTime = pointInTime;
+            this.depth = depth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return depth == key.depth && pointInTime.equals(key.pointInTime);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pointInTime, depth);
+        }
+    }
+
+    private static class Entry {
+        final SymbolEntries entries;
+        final Key key;
+        final long timestamp;
+        final NbboResult result;
+        final long queryNanos;
+        final long cachedAt;
+
+        Entry(SymbolEntries entries, Key key, long timestamp, NbboResult result, long queryNanos, long cachedAt) {
+            this.entries = entries;
+            this.key = key;
+            this.timestamp = timestamp;
+            this.result = result;
+            this.queryNanos = queryNanos;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.NbboQuote;
+import com.spotts.orderbook.model.NbboResult;
+import com.spotts.orderbook.model.QuoteIntervalIndex;
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.Side;
+import com.spotts.orderbook.util.OrderBookUtil;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The changes of one symbol's best bids and asks over a time range, computed one
+ * at a time as they are read.
+ *
+ * The series starts with the best quotes at the start of the range, followed by
+ * a result at every time in the range the prices, sizes or market centers of the
+ * best quotes change. It sweeps the symbol's quotes from the start of the range,
+ * so it only ever holds the quotes live at the current time, however long the
+ * range is.
+ */
+class NbboSeries implements Iterator<NbboResult> {
+    private final QuoteStore store;
+    private final String symbol;
+    private final QuoteSweep sweep;
+    private final long to;
+    private final int depth;
+    private int[] bids;
+    private int[] asks;
+    private int[] lastBids;
+    private int[] lastAsks;
+    private int bidCount;
+    private int askCount;
+    private NbboResult next;
+    private long nextTime;
+
+    /**
+     * @param store the store holding the quotes
+     * @param symbol the symbol
+     * @param index the symbol's index, or null when it has no quotes
+     * @param from the start of the range
+     * @param to the end of the range, inclusive
+     * @param depth the most quotes to return for each side
+     */
+    NbboSeries(QuoteStore store, String symbol, QuoteIntervalIndex index, long from, long to, int depth) {
+        this.store = store;
+        this.symbol = symbol;
+        this.sweep = index == null ? null : new QuoteSweep(store, index, from);
+        this.to = to;
+        this.depth = depth;
+        this.bids = new int[depth];
+        this.asks = new int[depth];
+        this.lastBids = new int[depth];
+        this.lastAsks = new int[depth];
+        // the series always starts with the best quotes at the start of the range
+        if (sweep != null) {
+            bidCount = sweep.getLiveBook().best(Side.BID, depth, bids);
+            askCount = sweep.getLiveBook().best(Side.ASK, depth, asks);
+        }
+        next = toResult(from);
+        nextTime = from;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public NbboResult next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        NbboResult result = next;
+        next = nextChange();
+        return result;
+    }
+
+    /**
+     * @return the time of the result next returns, while there is one
+     */
+    long nextTime() {
+        return nextTime;
+    }
+
+    /**
+     * Sweeps to the next time in the range the best quotes change.
+     * @return the best quotes at that time, or null when they don't change again
+     */
+    private NbboResult nextChange() {
+        if (sweep == null) {
+            return null;
+        }
+        for (long time = sweep.nextEventTime(); time <= to; time = sweep.nextEventTime()) {
+            sweep.advanceTo(time);
+            // keep the previous best quotes to compare against
+            int[] swap = lastBids;
+            lastBids = bids;
+            bids = swap;
+            swap = lastAsks;
+            lastAsks = asks;
+            asks = swap;
+            int lastBidCount = bidCount;
+            int lastAskCount = askCount;
+            bidCount = sweep.getLiveBook().best(Side.BID, depth, bids);
+            askCount = sweep.getLiveBook().best(Side.ASK, depth, asks);
+            if (!sameQuotes(Side.BID, bids, bidCount, lastBids, lastBidCount)
+                    || !sameQuotes(Side.ASK, asks, askCount, lastAsks, lastAskCount)) {
+                nextTime = time;
+                return toResult(time);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares what a client sees of two lists of best quotes, so a quote replaced
+     * by another one with the same price, size and market center isn't a change.
+     */
+    private boolean sameQuotes(Side side, int[] rows, int count, int[] otherRows, int otherCount) {
+        if (count != otherCount) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            int otherRow = otherRows[i];
+            if (row != otherRow && (side.price(store, row) != side.price(store, otherRow)
+                    || side.quantity(store, row) != side.quantity(store, otherRow)
+                    || store.getMarketCenterId(row) != store.getMarketCenterId(otherRow))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private NbboResult toResult(long time) {
+        return new NbboResult(symbol, OrderBookUtil.formatEpochNanos(time),
+                toNbboQuotes(Side.BID, bids, bidCount), toNbboQuotes(Side.ASK, asks, askCount));
+    }
+
+    private List<NbboQuote> toNbboQuotes(Side side, int[] rows, int count) {
+        List<NbboQuote> quotes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            quotes.add(NbboQuote.of(store, side, rows[i]));
+        }
+        return quotes;
+    }
+}
@@ -5,11 +5,21 @@ import com.spotts.orderbook.model.Quote;
 import java.util.Comparator;
 
 /**
- * Comparator for comparing the askPrice between two Quotes.
+ * Comparator for comparing the askPrice between two Quotes. The best (lowest)
+ * price comes first, and ties go to the earlier startTime, then the lower sipFeedSeq.
  */
 public class NboQuoteComparator implements Comparator<Quote> {
+
     @Override
     public int compare(Quote firstQuote, Quote secondQuote) {
-        return firstQuote.getAskPrice().compareTo(secondQuote.getAskPrice());
+        int result = firstQuote.getAskPrice().compareTo(secondQuote.getAskPrice());
+        if (result == 0) {
+            result = firstQuote.getStartTime().compareTo(secondQuote.getStartTime());
+        }
+        if (result == 0) {
+            result = Long.compare(Long.parseLong(firstQuote.getSipFeedSeq()),
+                    Long.parseLong(secondQuote.getSipFeedSeq()));
+        }
+        return result;
     }
 }
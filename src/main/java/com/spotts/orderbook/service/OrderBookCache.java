@@ -0,0 +1,174 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.OrderBook;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A size-bounded cache of order books that are loaded on first use.
+ *
+ * A book is loaded by the first thread asking for it, while any others asking
+ * for the same key wait for it. Once more books or more bytes than the budget are
+ * loaded, the least recently used books are evicted. A caller keeps the book it
+ * was given, so evicting a book never affects the queries already running
+ * against it.
+ * @param <K> the type of the keys
+ */
+public class OrderBookCache<K> {
+
+    /**
+     * Loads the order book of a key.
+     * @param <K> the type of the keys
+     */
+    public interface Loader<K> {
+        /**
+         * @param key the key
+         * @return the order book of the key
+         * @throws IOException thrown when there is an issue reading the quotes
+         * @throws ParseException thrown when there is an issue parsing the quotes
+         */
+        OrderBook load(K key) throws IOException, ParseException;
+    }
+
+    private final Loader<K> loader;
+    private final int maxEntries;
+    private final long maxBytes;
+    // in least recently used order
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long loadedBytes;
+    private long hitCount;
+    private long missCount;
+    private long loadCount;
+    private long evictionCount;
+
+    /**
+     * @param loader loads the book of a key
+     * @param maxEntries the most books to keep loaded
+     * @param maxBytes the most bytes of books to keep loaded, or 0 for no limit
+     */
+    public OrderBookCache(Loader<K> loader, int maxEntries, long maxBytes) {
+        this.loader = loader;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the book of a key, loading it if it isn't loaded.
+     * @param key the key
+     * @return the book
+     * @throws IllegalStateException thrown when the book can't be loaded
+     */
+    public OrderBook get(K key) {
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(key, entry);
+                missCount++;
+                load = true;
+            } else {
+                hitCount++;
+            }
+        }
+        if (load) {
+            load(key, entry);
+        }
+        try {
+            return entry.book.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Could not load the quotes of " + key, e.getCause());
+        }
+    }
+
+    private void load(K key, Entry entry) {
+        try {
+            OrderBook book = loader.load(key);
+            synchronized (this) {
+                entry.bytes = book.estimatedBytes();
+                loadedBytes += entry.bytes;
+                loadCount++;
+                entry.book.complete(book);
+                evict();
+            }
+        } catch (IOException | ParseException | RuntimeException e) {
+            // forget the failed book so the next caller tries again
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+            entry.book.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Evicts the least recently used books until the loaded ones fit the budget,
+     * always keeping the most recently used one.
+     */
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        int remaining = entries.size();
+        while (remaining > 1 && (entries.size() > maxEntries || (maxBytes > 0 && loadedBytes > maxBytes))) {
+            Entry entry = it.next();
+            remaining--;
+            // a book that is still loading has nothing to free yet
+            if (entry.book.isDone()) {
+                it.remove();
+                loadedBytes -= entry.bytes;
+                evictionCount++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of books loaded or being loaded
+     */
+    public synchronized int getLoadedCount() {
+        return entries.size();
+    }
+
+    /**
+     * @return the approximate heap size of the loaded books in bytes
+     */
+    public synchronized long getLoadedBytes() {
+        return loadedBytes;
+    }
+
+    /**
+     * @return the number of times a book was asked for and already loaded or being loaded
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of times a book was asked for and had to be loaded
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of books loaded so far
+     */
+    public synchronized long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * @return the number of books evicted so far
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private static class Entry {
+        final CompletableFuture<OrderBook> book = new CompletableFuture<>();
+        long bytes;
+    }
+}
@@ -0,0 +1,34 @@
+package com.spotts.orderbook.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the order book as down until it has been built on startup, and with
+ * the reason when building it failed. It is part of the readiness group, so a
+ * load balancer only sends queries once the book can answer them.
+ */
+@Component
+public class OrderBookHealthIndicator implements HealthIndicator {
+    private final OrderBookService orderBookService;
+
+    public OrderBookHealthIndicator(OrderBookService orderBookService) {
+        this.orderBookService = orderBookService;
+    }
+
+    @Override
+    public Health health() {
+        if (orderBookService.isReady()) {
+            return Health.up()
+                    .withDetail("quotes", orderBookService.orderBook.getQuoteStore().size())
+                    .withDetail("symbols", orderBookService.orderBook.getSymbolIndex().size())
+                    .build();
+        }
+        Exception failure = orderBookService.getBuildFailure();
+        if (failure != null) {
+            return Health.down(failure).build();
+        }
+        return Health.down().withDetail("status", "building").build();
+    }
+}
@@ -0,0 +1,282 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.OrderBook;
+import com.spotts.orderbook.model.SymbolQuoteIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import java.util.stream.LongStream;
+
+/**
+ * The meters of the order book: ingest throughput and parse failures, the size
+ * of the book, query latencies and live set sizes, the caches, and the replays.
+ *
+ * The query meters are created once, so recording on the query path is a few
+ * atomic adds and never a registry lookup. The latency and live set histograms
+ * have fixed buckets sized for the queries; the latency buckets run from 1 µs to 50 ms.
+ */
+public class OrderBookMetrics {
+    // queries take microseconds, far below the 1 ms the default timer histogram starts at,
+    // and a few fixed buckets cost much less to record into than the default ones
+    private static final Duration[] LATENCY_BUCKETS = LongStream.of(1, 2, 5, 10, 20, 50, 100, 200, 500,
+            1_000, 2_000, 5_000, 10_000, 50_000).mapToObj(micros -> Duration.ofNanos(micros * 1_000))
+            .toArray(Duration[]::new);
+    // a replay at real time holds events back for as long as the subscribers take to read them
+    private static final Duration[] DELIVERY_BUCKETS = LongStream.of(10, 100, 1_000, 10_000, 100_000, 1_000_000)
+            .mapToObj(micros -> Duration.ofNanos(micros * 1_000)).toArray(Duration[]::new);
+    private static final double[] LIVE_SET_BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000};
+
+    private final MeterRegistry registry;
+    private final Counter rowsParsed;
+    private final AtomicLong buildRowsPerSecond = new AtomicLong();
+    private final Timer liveQuotesLatency;
+    private final Timer pointInTimeLatency;
+    private final Timer nbboLatency;
+    private final Timer depthLatency;
+    private final DistributionSummary liveSetSize;
+    private final ReplayEngine.Listener replayListener;
+    private final Set<String> watchedSymbols = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param registry the registry the meters are added to
+     */
+    public OrderBookMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        rowsParsed = Counter.builder("orderbook.ingest.rows")
+                .description("Quotes parsed from the quotes file or stream")
+                .register(registry);
+        Gauge.builder("orderbook.ingest.build.rows.per.second", buildRowsPerSecond, AtomicLong::get)
+                .description("Quotes parsed per second by the last bulk load")
+                .register(registry);
+        liveQuotesLatency = queryTimer("getLiveQuotes");
+        pointInTimeLatency = queryTimer("pointInTimeResults");
+        nbboLatency = queryTimer("nbbo");
+        depthLatency = queryTimer("depth");
+        liveSetSize = DistributionSummary.builder("orderbook.query.live.quotes")
+                .description("Quotes live for the symbol at the point in time of a query")
+                .serviceLevelObjectives(LIVE_SET_BUCKETS)
+                .register(registry);
+        replayListener = replayListener();
+    }
+
+    private ReplayEngine.Listener replayListener() {
+        Counter published = replayEvents("published");
+        Counter delivered = replayEvents("delivered");
+        Counter dropped = replayEvents("dropped");
+        Counter disconnects = Counter.builder("orderbook.replay.disconnects")
+                .description("Replay subscribers disconnected before the end of the replay")
+                .register(registry);
+        Timer latency = Timer.builder("orderbook.replay.delivery.latency")
+                .description("Time from publishing a replayed event to sending it to a subscriber")
+                .serviceLevelObjectives(DELIVERY_BUCKETS)
+                .register(registry);
+        return new ReplayEngine.Listener() {
+            @Override
+            public void eventPublished() {
+                published.increment();
+            }
+
+            @Override
+            public void eventDelivered(long latencyNanos) {
+                delivered.increment();
+                latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void eventDropped() {
+                dropped.increment();
+            }
+
+            @Override
+            public void subscriberDisconnected() {
+                disconnects.increment();
+            }
+        };
+    }
+
+    private Counter replayEvents(String outcome) {
+        return Counter.builder("orderbook.replay.events")
+                .description("Replayed events published, sent to subscribers or dropped for slow subscribers")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private Timer queryTimer(String query) {
+        return Timer.builder("orderbook.query.latency")
+                .description("Latency of the point in time queries")
+                .tag("query", query)
+                .serviceLevelObjectives(LATENCY_BUCKETS)
+                .register(registry);
+    }
+
+    /**
+     * Records a bulk load of quotes.
+     * @param rows the number of quotes parsed
+     * @param nanos how long parsing them took
+     */
+    void rowsParsed(long rows, long nanos) {
+        rowsParsed.increment(rows);
+        buildRowsPerSecond.set(nanos > 0 ? rows * 1_000_000_000L / nanos : 0);
+    }
+
+    /**
+     * Records a quote ingested from the stream, and watches the size of its symbol.
+     * @param book the book the quote was added to
+     * @param symbol the symbol of the quote
+     */
+    void quoteIngested(OrderBook book, String symbol) {
+        rowsParsed.increment();
+        watchSymbol(book, symbol);
+    }
+
+    /**
+     * @param field the quote field that couldn't be parsed
+     */
+    void parseFailure(String field) {
+        registry.counter("orderbook.ingest.parse.failures", "field", field).increment();
+    }
+
+    /**
+     * Watches the number of quotes on a book, in total and for each of its symbols.
+     * @param book the book
+     */
+    void watchBook(OrderBook book) {
+        Gauge.builder("orderbook.book.quotes", book, b -> b.getQuoteStore().size())
+                .description("Quotes on the book")
+                .register(registry);
+        for (String symbol : book.getSymbolIndex().keySet()) {
+            watchSymbol(book, symbol);
+        }
+    }
+
+    private void watchSymbol(OrderBook book, String symbol) {
+        if (watchedSymbols.add(symbol)) {
+            Gauge.builder("orderbook.book.symbol.quotes", book, b -> symbolSize(b, symbol))
+                    .description("Quotes on the book for a symbol")
+                    .tag("symbol", symbol)
+                    .register(registry);
+        }
+    }
+
+    private static double symbolSize(OrderBook book, String symbol) {
+        SymbolQuoteIndex index = book.getSymbolIndex().get(symbol);
+        return index == null ? 0 : index.size();
+    }
+
+    /**
+     * Watches the counters of the NBBO result cache.
+     * @param cache the cache
+     */
+    void watchResultCache(NbboResultCache cache) {
+        String name = "results";
+        cacheCounter("orderbook.cache.hits", name, cache, NbboResultCache::getHitCount);
+        cacheCounter("orderbook.cache.misses", name, cache, NbboResultCache::getMissCount);
+        cacheCounter("orderbook.cache.evictions", name, cache, NbboResultCache::getEvictionCount);
+        cacheCounter("orderbook.cache.invalidations", name, cache, NbboResultCache::getInvalidationCount);
+        Gauge.builder("orderbook.cache.size", cache, NbboResultCache::getSize)
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("orderbook.cache.hit.ratio", cache, NbboResultCache::getHitRatio)
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("orderbook.cache.saved", cache, c -> c.getSavedNanos() / 1e9)
+                .description("Query time the cached results saved")
+                .baseUnit("seconds")
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    /**
+     * Watches the counters of a cache of order books.
+     * @param name the name of the cache, e.g. partitions or symbols
+     * @param cache the cache
+     */
+    void watchBookCache(String name, OrderBookCache<?> cache) {
+        cacheCounter("orderbook.cache.hits", name, cache, OrderBookCache::getHitCount);
+        cacheCounter("orderbook.cache.misses", name, cache, OrderBookCache::getMissCount);
+        cacheCounter("orderbook.cache.evictions", name, cache, OrderBookCache::getEvictionCount);
+        Gauge.builder("orderbook.cache.size", cache, OrderBookCache::getLoadedCount)
+                .tag("cache", name)
+                .register(registry);
+        Gauge.builder("orderbook.cache.bytes", cache, OrderBookCache::getLoadedBytes)
+                .baseUnit("bytes")
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    /**
+     * Watches how the price level queries were answered.
+     * @param cursors the symbols' price level sweeps
+     */
+    void watchPriceLevels(PriceLevelCursors cursors) {
+        FunctionCounter.builder("orderbook.depth.sweeps", cursors, PriceLevelCursors::getAdvanceCount)
+                .description("Price level queries answered by advancing or restarting the symbol's sweep")
+                .tag("sweep", "advanced")
+                .register(registry);
+        FunctionCounter.builder("orderbook.depth.sweeps", cursors, PriceLevelCursors::getRestartCount)
+                .description("Price level queries answered by advancing or restarting the symbol's sweep")
+                .tag("sweep", "restarted")
+                .register(registry);
+        Gauge.builder("orderbook.depth.symbols", cursors, PriceLevelCursors::getSize)
+                .description("Symbols with a price level sweep")
+                .register(registry);
+    }
+
+    private <T> void cacheCounter(String meter, String name, T cache, ToLongFunction<T> count) {
+        FunctionCounter.builder(meter, cache, c -> count.applyAsLong(c))
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    /**
+     * @param started the System.nanoTime() the query started at
+     */
+    void liveQuotesDone(long started) {
+        liveQuotesLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param started the System.nanoTime() the query started at
+     */
+    void pointInTimeDone(long started) {
+        pointInTimeLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param started the System.nanoTime() the query started at
+     */
+    void nbboDone(long started) {
+        nbboLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param started the System.nanoTime() the query started at
+     */
+    void depthDone(long started) {
+        depthLatency.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the listener recording the events of the replays
+     */
+    ReplayEngine.Listener getReplayListener() {
+        return replayListener;
+    }
+
+    /**
+     * @return the summary of the live set sizes of the queries
+     */
+    DistributionSummary getLiveSetSize() {
+        return liveSetSize;
+    }
+}
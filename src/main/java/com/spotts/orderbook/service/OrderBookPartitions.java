@@ -0,0 +1,116 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.ingest.CompressedQuoteLoader;
+import com.spotts.orderbook.model.OrderBook;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The order books of a directory of daily quotes files, one partition for each
+ * day. The day of a file is the yyyy-MM-dd date in its name, e.g.
+ * quotes_2021-02-18.csv, and a point in time belongs to the partition of its
+ * UTC date. A file may be compressed, e.g. quotes_2021-02-18.csv.gz, see
+ * {@link CompressedQuoteLoader}.
+ *
+ * A partition is loaded the first time a query asks for its day, and the least
+ * recently used partitions are evicted once more partitions or more bytes than
+ * the budget are loaded. See {@link OrderBookCache}.
+ */
+public class OrderBookPartitions {
+    private static final Pattern DATE = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})");
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+
+    private final Map<Long, Path> files;
+    private final OrderBookCache<Path> books;
+
+    /**
+     * @param files the quotes file of each partition, by the epoch day of the partition
+     * @param loader builds the order book of a partition from its quotes file
+     * @param maxPartitions the most partitions to keep loaded
+     * @param maxBytes the most bytes of partitions to keep loaded, or 0 for no limit
+     */
+    public OrderBookPartitions(Map<Long, Path> files, OrderBookCache.Loader<Path> loader, int maxPartitions,
+                               long maxBytes) {
+        this.files = Collections.unmodifiableMap(new HashMap<>(files));
+        this.books = new OrderBookCache<>(loader, maxPartitions, maxBytes);
+    }
+
+    /**
+     * Finds the daily quotes files in a directory. Files without a date in their
+     * name are skipped.
+     * @param directory the directory
+     * @return the quotes file of each day, by epoch day
+     * @throws IOException thrown when the directory can't be listed
+     * @throws IllegalArgumentException thrown when two files have the same date
+     */
+    public static Map<Long, Path> scan(Path directory) throws IOException {
+        Map<Long, Path> files = new HashMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Iterator<Path> it = paths.iterator(); it.hasNext(); ) {
+                Path file = it.next();
+                String name = file.getFileName().toString();
+                Matcher matcher = DATE.matcher(name);
+                boolean quotesFile = name.endsWith(".csv") || name.endsWith(".csv.gz") || name.endsWith(".csv.zst");
+                if (!quotesFile || !Files.isRegularFile(file) || !matcher.find()) {
+                    continue;
+                }
+                try {
+                    long day = LocalDate.parse(matcher.group(1)).toEpochDay();
+                    Path previous = files.put(day, file);
+                    if (previous != null) {
+                        throw new IllegalArgumentException("Both " + previous + " and " + file
+                                + " hold the quotes of " + matcher.group(1));
+                    }
+                } catch (DateTimeParseException e) {
+                    // a name like quotes_2021-02-30.csv isn't a partition
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * @param pointInTime nanoseconds since the epoch
+     * @return the epoch day of the partition the point in time belongs to
+     */
+    public static long epochDay(long pointInTime) {
+        return Math.floorDiv(pointInTime, NANOS_PER_DAY);
+    }
+
+    /**
+     * Gets the order book of the partition a point in time belongs to, loading it
+     * if it isn't loaded.
+     * @param pointInTime nanoseconds since the epoch
+     * @return the order book, or null when there is no quotes file for the day
+     * @throws IllegalStateException thrown when the quotes file can't be loaded
+     */
+    public OrderBook get(long pointInTime) {
+        Path file = files.get(epochDay(pointInTime));
+        return file == null ? null : books.get(file);
+    }
+
+    /**
+     * @return the number of days with a quotes file
+     */
+    public int getPartitionCount() {
+        return files.size();
+    }
+
+    /**
+     * @return the cache of the loaded partitions, with its counters
+     */
+    public OrderBookCache<Path> getBooks() {
+        return books;
+    }
+}
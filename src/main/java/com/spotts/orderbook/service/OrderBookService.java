@@ -1,85 +1,531 @@
 package com.spotts.orderbook.service;
 
 import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.ingest.CompressedQuoteLoader;
+import com.spotts.orderbook.ingest.FileTailQuoteSource;
+import com.spotts.orderbook.ingest.ParallelQuoteLoader;
+import com.spotts.orderbook.ingest.QuoteParseException;
+import com.spotts.orderbook.ingest.QuoteSource;
+import com.spotts.orderbook.ingest.QuoteStreamIngestor;
+import com.spotts.orderbook.ingest.SymbolRanges;
+import com.spotts.orderbook.model.DepthResult;
+import com.spotts.orderbook.model.MarketQuality;
+import com.spotts.orderbook.model.NbboQuery;
+import com.spotts.orderbook.model.NbboQuote;
+import com.spotts.orderbook.model.NbboResult;
+import com.spotts.orderbook.model.NbboTimeline;
 import com.spotts.orderbook.model.OrderBook;
+import com.spotts.orderbook.model.PriceLevel;
 import com.spotts.orderbook.model.Quote;
+import com.spotts.orderbook.model.QuoteIntervalIndex;
+import com.spotts.orderbook.model.QuoteSnapshot;
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.ReplayStatus;
+import com.spotts.orderbook.model.Side;
+import com.spotts.orderbook.model.SymbolQuoteIndex;
 import com.spotts.orderbook.util.OrderBookUtil;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVRecord;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.io.FileReader;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.io.Reader;
-import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.sql.Timestamp;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
  * The OrderBookService.
  */
+@Slf4j
 @Component
 public class OrderBookService {
-    private final OrderBookUtil bookUtil = new OrderBookUtil();
+    private static final int SWEEP_MAX_QUOTES_PER_QUERY = 4;
     public final OrderBook orderBook = new OrderBook();
     private final String filePath;
     private final int resultLimit;
+    private final int maxDepth;
+    private final int ingestThreads;
+    private final OrderBookContext.QueryMode queryMode;
+    private final String streamFilePath;
+    private final String snapshotPath;
+    private final String directoryPath;
+    private final int maxPartitions;
+    private final long partitionBudgetBytes;
+    private final boolean lazySymbols;
+    private final int maxCachedSymbols;
+    private final long symbolCacheBytes;
+    private final NbboResultCache resultCache;
+    private final PriceLevelCursors priceLevels;
+    private final int replayQueueCapacity;
+    private final ReplayEngine.SlowConsumerPolicy replaySlowConsumerPolicy;
+    private final int replayDeliveryThreads;
+    private final OrderBookMetrics metrics;
+    private volatile boolean ready;
+    private volatile Exception buildFailure;
+    private volatile OrderBookPartitions partitions;
+    private volatile SymbolRanges symbolRanges;
+    private volatile OrderBookCache<String> symbolCache;
+    private QuoteStreamIngestor streamIngestor;
+    private QuoteSource streamSource;
+    private ReplayEngine replay;
+    private ExecutorService replayDelivery;
+    private ExecutorService bookLoaders;
 
     public OrderBookService(OrderBookContext context) {
+        this(context, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public OrderBookService(OrderBookContext context, MeterRegistry registry) {
         filePath = context.getFilePath();
         resultLimit = context.getResultLimit();
+        // the default depth is always allowed
+        maxDepth = Math.max(context.getMaxDepth(), resultLimit);
+        ingestThreads = context.getIngestThreads();
+        queryMode = context.getQueryMode();
+        streamFilePath = context.getStreamFilePath();
+        snapshotPath = context.getSnapshotPath();
+        directoryPath = context.getDirectoryPath();
+        maxPartitions = context.getMaxPartitions();
+        partitionBudgetBytes = context.getPartitionBudgetBytes();
+        lazySymbols = context.isLazySymbols();
+        maxCachedSymbols = context.getMaxCachedSymbols();
+        symbolCacheBytes = context.getSymbolCacheBytes();
+        resultCache = context.getResultCacheSize() > 0
+                ? new NbboResultCache(context.getResultCacheSize(), context.getResultCacheTtlMillis()) : null;
+        priceLevels = new PriceLevelCursors(context.getMaxDepthSymbols());
+        replayQueueCapacity = context.getReplayQueueCapacity();
+        replaySlowConsumerPolicy = context.getReplaySlowConsumerPolicy();
+        replayDeliveryThreads = Math.max(1, context.getReplayDeliveryThreads());
+        metrics = new OrderBookMetrics(registry);
+        if (resultCache != null) {
+            metrics.watchResultCache(resultCache);
+        }
+        metrics.watchPriceLevels(priceLevels);
     }
 
     @PostConstruct
     public void setUp() {
         try {
             // build the order book
-            buildOrderBook();
-        } catch(Exception e) {
-            e.printStackTrace();
+            if (filePath != null) {
+                buildOrderBook();
+            }
+            // load the days of the quotes directory as they are queried
+            if (directoryPath != null) {
+                openPartitions();
+            }
+            // keep adding the quotes appended to the stream file
+            if (streamFilePath != null) {
+                startStreaming(new FileTailQuoteSource(Paths.get(streamFilePath)));
+            }
+            ready = true;
+        } catch (Exception e) {
+            // the service keeps running so the failure shows on the health endpoint, but it never gets ready
+            buildFailure = e;
+            LOG.error("Could not build the order book", e);
+        }
+    }
+
+    /**
+     * @return true once the book has been built on startup and queries can be served
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * @return what stopped the book from being built on startup, or null
+     */
+    public Exception getBuildFailure() {
+        return buildFailure;
+    }
+
+    /**
+     * @return the most quotes or levels returned for each side by default
+     */
+    public int getResultLimit() {
+        return resultLimit;
+    }
+
+    /**
+     * @return the meters of the book
+     */
+    public OrderBookMetrics getMetrics() {
+        return metrics;
+    }
+
+    @PreDestroy
+    public void tearDown() throws IOException {
+        stopStreaming();
+        synchronized (this) {
+            stopReplay();
+            if (replayDelivery != null) {
+                replayDelivery.shutdownNow();
+                replayDelivery = null;
+            }
+            if (bookLoaders != null) {
+                bookLoaders.shutdownNow();
+                bookLoaders = null;
+            }
+        }
+    }
+
+    /**
+     * Starts replaying the quotes on the book in start time order on a background
+     * thread, publishing every change of a symbol's best bids and asks to the
+     * replay's subscribers. A replay that finished is replaced by the new one.
+     * See {@link ReplayEngine}.
+     * @param speed how many times faster than real time to replay, or 0 to replay as fast as possible
+     * @param depth the most quotes for each side of a change, at most book.maxDepth
+     * @return the replay
+     */
+    public synchronized ReplayEngine startReplay(double speed, int depth) {
+        if (speed < 0 || Double.isNaN(speed) || Double.isInfinite(speed)) {
+            throw new BadRequestException("The speed must be 0 or more: " + speed);
+        }
+        checkDepth(depth);
+        if (lazySymbols) {
+            throw new ReplayConflictException("Replays need the full order book, not lazily loaded symbols");
+        }
+        if (replay != null && !replay.isFinished()) {
+            throw new ReplayConflictException("The book is already being replayed");
+        }
+        if (replayDelivery == null) {
+            replayDelivery = Executors.newFixedThreadPool(replayDeliveryThreads, runnable -> {
+                Thread thread = new Thread(runnable, "replay-delivery");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        // the replay sweeps the book as it is now, quotes streamed in later aren't replayed
+        ReplayEngine engine = new ReplayEngine(orderBook.getQuoteStore(), orderBook.getSymbolIndex(), depth, speed,
+                replayDelivery, metrics.getReplayListener());
+        replay = engine;
+        Thread thread = new Thread(engine, "quote-replay");
+        thread.setDaemon(true);
+        thread.start();
+        return engine;
+    }
+
+    /**
+     * Subscribes to the changes the current replay publishes from now on, with a
+     * queue of replayQueueCapacity events and the replaySlowConsumerPolicy.
+     * @param sink where the events are sent
+     * @param symbol the only symbol to send the changes of, or null for every symbol
+     * @return the subscription
+     */
+    public synchronized ReplayEngine.Subscription subscribeReplay(ReplayEngine.Sink sink, String symbol) {
+        if (replay == null) {
+            throw new ReplayConflictException("The book isn't being replayed");
+        }
+        return replay.subscribe(sink, symbol, replayQueueCapacity, replaySlowConsumerPolicy);
+    }
+
+    /**
+     * Stops the current replay, if there is one.
+     */
+    public synchronized void stopReplay() {
+        if (replay != null) {
+            replay.stop();
+        }
+    }
+
+    /**
+     * @return the progress of the current or last replay
+     */
+    public synchronized ReplayStatus replayStatus() {
+        if (replay == null) {
+            throw new ReplayConflictException("The book hasn't been replayed");
+        }
+        return new ReplayStatus(!replay.isFinished(), replay.getSpeed(), replay.getPublishedCount(),
+                replay.getPublishedPerSecond(), replay.getDeliveredCount(), replay.getDroppedCount(),
+                replay.getDisconnectedCount(), replay.getSubscriberCount());
+    }
+
+    /**
+     * Starts adding the quotes of a stream to the book on a background thread.
+     * Queries keep running against the book while quotes arrive.
+     * @param source the stream of quotes
+     * @return the ingestor feeding the book
+     * @throws ParseException thrown when the ingestor can't be set up
+     */
+    public synchronized QuoteStreamIngestor startStreaming(QuoteSource source) throws ParseException {
+        if (streamIngestor != null) {
+            throw new IllegalStateException("The book is already ingesting a quote stream");
+        }
+        if (lazySymbols) {
+            throw new LazySymbolsException("Streaming needs the full order book, not lazily loaded symbols");
+        }
+        streamIngestor = new QuoteStreamIngestor(source, orderBook, new QuoteStreamIngestor.Listener() {
+            @Override
+            public void quoteAdded(String symbol, long startTime, long endTime) {
+                // new quotes drop the cached results they change
+                if (resultCache != null) {
+                    resultCache.invalidate(symbol, startTime, endTime);
+                }
+                metrics.quoteIngested(orderBook, symbol);
+            }
+
+            @Override
+            public void quoteSkipped(String field) {
+                metrics.parseFailure(field);
+            }
+        });
+        streamSource = source;
+        Thread thread = new Thread(streamIngestor, "quote-ingest");
+        thread.setDaemon(true);
+        thread.start();
+        return streamIngestor;
+    }
+
+    /**
+     * Stops adding quotes from the stream and closes it.
+     * @throws IOException thrown when there is an issue closing the stream
+     */
+    public synchronized void stopStreaming() throws IOException {
+        if (streamIngestor != null) {
+            streamIngestor.stop();
+            streamSource.close();
+            streamIngestor = null;
+            streamSource = null;
         }
     }
 
     /**
      * Builds the full order book by parsing the quote input data and
-     * adding it to the book.
+     * adding it to the book. When a snapshot path is set, the quotes are read
+     * from the snapshot of the quotes file if there is an up to date one, and a
+     * snapshot is written after the quotes file has been parsed otherwise. A
+     * quotes file ending with .gz or .zst is decompressed as it is parsed, see
+     * {@link CompressedQuoteLoader}.
+     *
+     * With lazy symbols, the quotes file is only scanned for where each symbol's
+     * lines are, and a symbol's quotes are parsed the first time a query asks for
+     * the symbol. See {@link SymbolRanges} and {@link OrderBookCache}.
      * @throws IOException thrown when there is an issue parsing the input data.
      * @throws ParseException thrown when there is an issue parsing the timestamp String
      */
     public void buildOrderBook() throws IOException, ParseException {
-        List<Quote> quoteList = new ArrayList<>();
-        // set up the reader to iterate through csv records with a header in the file
-        Reader fileReader = new FileReader(filePath);
-        Iterable<CSVRecord> records = CSVFormat.DEFAULT
-                .withHeader(OrderBookContext.HEADERS)
-                .withFirstRecordAsHeader()
-                .parse(fileReader);
-
-        for (CSVRecord record : records) {
-            // set all the attributes of the new quote from the record
-            Quote newQuote = new Quote();
-            newQuote.setSymbol(record.get("symbol"));
-            newQuote.setMarketCenter(record.get("marketCenter"));
-            newQuote.setBidQuantity(new BigInteger(record.get("bidQuantity")));
-            newQuote.setAskQuantity(new BigInteger(record.get("askQuantity")));
-            newQuote.setBidPrice(new BigDecimal(record.get("bidPrice")));
-            newQuote.setAskPrice(new BigDecimal(record.get("askPrice")));
-            newQuote.setStartTime(bookUtil.formatTimestamp(record.get("startTime")));
-            newQuote.setEndTime(bookUtil.formatTimestamp(record.get("endTime")));
-            newQuote.setQuoteConditions(record.get("quoteConditions"));
-            newQuote.setSipFeedSeq(record.get("sipfeedSeq"));
-            newQuote.setSipFeed(record.get("sipfeed"));
-
-            // add the new quote to the quote list
-            quoteList.add(newQuote);
-        }
-        // put the quote list on the full order book
-        orderBook.setFullOrderBook(quoteList);
+        if (lazySymbols) {
+            scanSymbols(Paths.get(filePath));
+        } else {
+            buildOrderBook(orderBook, Paths.get(filePath), snapshotPath);
+            metrics.watchBook(orderBook);
+        }
+    }
+
+    private void scanSymbols(Path source) throws IOException, ParseException {
+        if (CompressedQuoteLoader.isCompressed(source)) {
+            throw new IllegalArgumentException("Lazy symbols need an uncompressed quotes file, not " + source);
+        }
+        long started = System.nanoTime();
+        SymbolRanges ranges = SymbolRanges.scan(source);
+        symbolRanges = ranges;
+        symbolCache = new OrderBookCache<>(symbol -> {
+            long loading = System.nanoTime();
+            OrderBook book = new OrderBook();
+            indexBook(book, ranges.load(symbol));
+            metrics.rowsParsed(book.getQuoteStore().size(), System.nanoTime() - loading);
+            LOG.debug("Loaded the {} quotes of {} in {} ms", book.getQuoteStore().size(), symbol,
+                    millisSince(loading));
+            return book;
+        }, maxCachedSymbols, symbolCacheBytes);
+        metrics.watchBookCache("symbols", symbolCache);
+        LOG.info("Scanned the {} symbols of {} in {} ms", ranges.getSymbols().size(), source, millisSince(started));
+    }
+
+    /**
+     * @return the cache of the lazily loaded symbols, or null when the symbols aren't loaded lazily
+     */
+    public OrderBookCache<String> getSymbolCache() {
+        return symbolCache;
+    }
+
+    /**
+     * Finds the daily quotes files in the quotes directory. Each file becomes a
+     * partition of the book that is loaded the first time a query asks for its day,
+     * and queries for days without a file keep using the full order book. See
+     * {@link OrderBookPartitions}.
+     * @throws IOException thrown when the directory can't be listed
+     */
+    public void openPartitions() throws IOException {
+        Map<Long, Path> files = OrderBookPartitions.scan(Paths.get(directoryPath));
+        partitions = new OrderBookPartitions(files, file -> {
+            OrderBook book = new OrderBook();
+            buildOrderBook(book, file, null);
+            return book;
+        }, maxPartitions, partitionBudgetBytes);
+        metrics.watchBookCache("partitions", partitions.getBooks());
+        LOG.info("Found {} daily quotes files in {}", files.size(), directoryPath);
+    }
+
+    /**
+     * @return the partitions of the quotes directory, or null when there is no quotes directory
+     */
+    public OrderBookPartitions getPartitions() {
+        return partitions;
+    }
+
+    private void buildOrderBook(OrderBook book, Path source, String snapshotPath)
+            throws IOException, ParseException {
+        long started = System.nanoTime();
+        QuoteStore quoteStore = snapshotPath == null ? null : readSnapshot(source, snapshotPath);
+        if (quoteStore == null) {
+            // parse the quotes file in parallel chunks, keeping the file order
+            long parsing = System.nanoTime();
+            try {
+                quoteStore = CompressedQuoteLoader.isCompressed(source)
+                        ? new CompressedQuoteLoader(ingestThreads).load(source)
+                        : new ParallelQuoteLoader(ingestThreads).load(source);
+            } catch (QuoteParseException e) {
+                metrics.parseFailure(e.getField());
+                throw e;
+            }
+            metrics.rowsParsed(quoteStore.size(), System.nanoTime() - parsing);
+            LOG.info("Parsed {} quotes from {} in {} ms", quoteStore.size(), source, millisSince(started));
+            if (snapshotPath != null) {
+                writeSnapshot(quoteStore, source, snapshotPath);
+            }
+        }
+        long loaded = System.nanoTime();
+        indexBook(book, quoteStore);
+        LOG.info("Built the order book in {} ms, {} ms of it indexing", millisSince(started), millisSince(loaded));
+    }
+
+    private void indexBook(OrderBook book, QuoteStore quoteStore) {
+        // put the quote store on the book
+        book.setQuoteStore(quoteStore);
+        // index each symbol's quotes by time so lookups don't scan the whole book
+        book.setSymbolIndex(buildSymbolIndex(quoteStore));
+        if (queryMode == OrderBookContext.QueryMode.TIMELINE) {
+            // precompute each symbol's best quotes over time
+            book.setTimelines(buildTimelines(quoteStore, book.getSymbolIndex()));
+        }
+    }
+
+    /**
+     * Reads the quotes from the snapshot of the quotes file.
+     * @return the quotes, or null when there is no snapshot or it can't be used
+     */
+    private static QuoteStore readSnapshot(Path source, String snapshotPath) {
+        long started = System.nanoTime();
+        try {
+            QuoteStore quoteStore = QuoteSnapshot.read(Paths.get(snapshotPath), source);
+            LOG.info("Read {} quotes from the snapshot {} in {} ms", quoteStore.size(), snapshotPath,
+                    millisSince(started));
+            return quoteStore;
+        } catch (NoSuchFileException e) {
+            LOG.info("There is no snapshot at {} yet", snapshotPath);
+        } catch (IOException | RuntimeException e) {
+            // a stale or corrupt snapshot is replaced once the quotes file is parsed
+            LOG.warn("Not using the snapshot: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private static void writeSnapshot(QuoteStore quoteStore, Path source, String snapshotPath) {
+        long started = System.nanoTime();
+        try {
+            QuoteSnapshot.write(quoteStore, Paths.get(snapshotPath), source);
+            LOG.info("Wrote the snapshot {} in {} ms", snapshotPath, millisSince(started));
+        } catch (IOException e) {
+            // the book is still usable, the next start just parses the quotes file again
+            LOG.warn("Could not write the snapshot {}", snapshotPath, e);
+        }
+    }
+
+    private static long millisSince(long nanoTime) {
+        return (System.nanoTime() - nanoTime) / 1_000_000;
+    }
+
+    /**
+     * Builds an interval index of start and end times for each symbol's quotes.
+     * @param quoteStore the quotes on the full order book
+     * @return the index for each symbol
+     */
+    private Map<String, SymbolQuoteIndex> buildSymbolIndex(QuoteStore quoteStore) {
+        // count the quotes for each symbol, then bucket the rows by symbol in book order
+        int symbolCount = quoteStore.getSymbols().size();
+        int[] counts = new int[symbolCount];
+        for (int row = 0; row < quoteStore.size(); row++) {
+            counts[quoteStore.getSymbolId(row)]++;
+        }
+        int[][] symbolRows = new int[symbolCount][];
+        for (int id = 0; id < symbolCount; id++) {
+            symbolRows[id] = new int[counts[id]];
+            counts[id] = 0;
+        }
+        for (int row = 0; row < quoteStore.size(); row++) {
+            int id = quoteStore.getSymbolId(row);
+            symbolRows[id][counts[id]++] = row;
+        }
+
+        Map<String, SymbolQuoteIndex> symbolIndex = new ConcurrentHashMap<>();
+        for (int id = 0; id < symbolCount; id++) {
+            int[] rows = symbolRows[id];
+            long[] starts = new long[rows.length];
+            long[] ends = new long[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                starts[i] = quoteStore.getStartTime(rows[i]);
+                ends[i] = quoteStore.getEndTime(rows[i]);
+            }
+            symbolIndex.put(quoteStore.getSymbols().decode(id),
+                    new SymbolQuoteIndex(new QuoteIntervalIndex(rows, starts, ends, rows.length)));
+        }
+        return symbolIndex;
+    }
+
+    /**
+     * Builds the timeline of best bids and asks for each symbol, one symbol per task.
+     * @param quoteStore the quotes on the full order book
+     * @param symbolIndex the index for each symbol
+     * @return the timeline for each symbol
+     */
+    private Map<String, NbboTimeline> buildTimelines(QuoteStore quoteStore,
+                                                     Map<String, SymbolQuoteIndex> symbolIndex) {
+        return symbolIndex.entrySet()
+                .parallelStream()
+                .collect(Collectors.toConcurrentMap(Map.Entry::getKey,
+                        e -> buildTimeline(quoteStore, e.getValue().compacted())));
+    }
+
+    /**
+     * Sweeps one symbol's quotes in time order and records a change point every
+     * time its best resultLimit bids or asks change.
+     */
+    private NbboTimeline buildTimeline(QuoteStore quoteStore, QuoteIntervalIndex index) {
+        NbboTimeline.Builder builder = new NbboTimeline.Builder(resultLimit);
+        QuoteSweep sweep = new QuoteSweep(quoteStore, index);
+        int[] bids = new int[resultLimit];
+        int[] asks = new int[resultLimit];
+        for (long time = sweep.nextEventTime(); time != Long.MAX_VALUE; time = sweep.nextEventTime()) {
+            sweep.advanceTo(time);
+            int bidCount = sweep.getLiveBook().best(Side.BID, resultLimit, bids);
+            int askCount = sweep.getLiveBook().best(Side.ASK, resultLimit, asks);
+            builder.add(time, bids, bidCount, asks, askCount);
+        }
+        return builder.build();
     }
 
     /**
@@ -92,15 +538,30 @@ public class OrderBookService {
      * @throws ParseException thrown when there is an issue parsing the timestamp String
      */
     public List<Quote> getLiveQuotes(String symbol, String timestampString) throws ParseException {
-        // create a timestamp from the input string
-        Timestamp pointInTime = bookUtil.formatTimestamp(timestampString);
-        // return live quotes on the book for the given symbol and time period
-        return orderBook.getFullOrderBook()
-                .stream()
-                .filter(q -> symbol.equals(q.getSymbol())
-                        && (pointInTime.equals(q.getStartTime()) || pointInTime.after(q.getStartTime()))
-                        && (pointInTime.equals(q.getEndTime()) || pointInTime.before(q.getEndTime())))
-                .collect(Collectors.toList());
+        long started = System.nanoTime();
+        try {
+            // create a timestamp from the input string
+            long pointInTime = OrderBookUtil.parseEpochNanos(timestampString);
+            List<Quote> liveQuotes = new ArrayList<>();
+            OrderBook book = bookFor(pointInTime, symbol);
+            SymbolQuoteIndex index = book.getSymbolIndex().get(symbol);
+            if (index == null) {
+                metrics.getLiveSetSize().record(0);
+                return liveQuotes;
+            }
+
+            // find the live quotes for the given symbol and time period, returned in book order
+            List<Integer> liveRows = new ArrayList<>();
+            index.collectLive(pointInTime, liveRows);
+            metrics.getLiveSetSize().record(liveRows.size());
+            Collections.sort(liveRows);
+            for (int row : liveRows) {
+                liveQuotes.add(book.getQuoteStore().toQuote(row));
+            }
+            return liveQuotes;
+        } finally {
+            metrics.liveQuotesDone(started);
+        }
     }
 
     /**
@@ -108,17 +569,15 @@ public class OrderBookService {
      * symbol and point in time.
      * @param symbol The symbol
      * @param pointInTime The String timestamp of the point in time.
+     * @return the live quotes with the best (highest) bids first
      * @throws ParseException thrown when there is an issue parsing the pointInTime
      */
-    public void captureNbbQuotes(String symbol, String pointInTime) throws ParseException {
-        NbbQuoteComparator comparator = new NbbQuoteComparator();
+    public List<Quote> captureNbbQuotes(String symbol, String pointInTime) throws ParseException {
         List<Quote> nbbLiveQuotes = getLiveQuotes(symbol, pointInTime);
 
         // sort the quotes with best (highest) bids first
-        if (nbbLiveQuotes != null) {
-            nbbLiveQuotes.sort(comparator.reversed());
-        }
-        orderBook.setNbbQuotes(nbbLiveQuotes);
+        nbbLiveQuotes.sort(new NbbQuoteComparator());
+        return nbbLiveQuotes;
     }
 
     /**
@@ -126,60 +585,524 @@ public class OrderBookService {
      * symbol and point in time.
      * @param symbol The symbol
      * @param pointInTime The String timestamp of the point in time.
+     * @return the live quotes with the best (lowest) asks first
      * @throws ParseException thrown when there is an issue parsing the pointInTime
      */
-    public void captureNboQuotes(String symbol, String pointInTime) throws ParseException {
-        NboQuoteComparator comparator = new NboQuoteComparator();
+    public List<Quote> captureNboQuotes(String symbol, String pointInTime) throws ParseException {
         List<Quote> nboLiveQuotes = getLiveQuotes(symbol, pointInTime);
 
         // sort the quotes with best (lowest) asks first
-        if (nboLiveQuotes != null) {
-            nboLiveQuotes.sort(comparator);
-        }
-        orderBook.setNboQuotes(nboLiveQuotes);
+        nboLiveQuotes.sort(new NboQuoteComparator());
+        return nboLiveQuotes;
     }
 
     /**
      * Gets the point in time best bids and asks for a given timestamp and symbol.
+     * At most resultLimit quotes are returned for each side, fewer when fewer are live.
      * @param symbol The symbol
      * @param pointInTime The String timestamp of the point in time.
      * @return The formatted String with the input data and best bids and asks
      * @throws ParseException thrown when there is an issue parsing
      */
     public String pointInTimeResults(String symbol, String pointInTime) throws ParseException {
-        // get the top nbb quotes from the ordered list
-        captureNbbQuotes(symbol, pointInTime);
-        List<Quote> topNbbQuotes = orderBook.getNbbQuotes().subList(0, resultLimit);
+        long started = System.nanoTime();
+        try {
+            // return the formatted output String
+            return formatOutputString(nbbo(symbol, pointInTime, resultLimit));
+        } finally {
+            metrics.pointInTimeDone(started);
+        }
+    }
+
+    /**
+     * Gets the best resultLimit bids and asks for a symbol at a point in time.
+     * @param symbol The symbol
+     * @param pointInTime The String timestamp of the point in time.
+     * @return the best bids and asks, best first
+     * @throws ParseException thrown when there is an issue parsing the pointInTime
+     */
+    public NbboResult nbbo(String symbol, String pointInTime) throws ParseException {
+        return nbbo(symbol, pointInTime, resultLimit);
+    }
 
-        // get the top nbo quotes from the ordered list
-        captureNboQuotes(symbol, pointInTime);
-        List<Quote> topNboQuotes = orderBook.getNboQuotes().subList(0, resultLimit);
+    /**
+     * Gets the best bids and asks for a symbol at a point in time. The query
+     * only reads the book, so any number of threads can run it at once. When
+     * the result cache is on, repeated queries are answered from it.
+     * @param symbol The symbol
+     * @param pointInTime The String timestamp of the point in time.
+     * @param depth the most quotes to return for each side, at most book.maxDepth
+     * @return the best bids and asks, best first, fewer than depth when fewer are live
+     * @throws ParseException thrown when there is an issue parsing the pointInTime
+     */
+    public NbboResult nbbo(String symbol, String pointInTime, int depth) throws ParseException {
+        checkDepth(depth);
+        long started = System.nanoTime();
+        try {
+            long timestamp = OrderBookUtil.parseEpochNanos(pointInTime);
+            if (resultCache != null) {
+                return resultCache.get(symbol, pointInTime, timestamp, depth,
+                        () -> queryNbbo(symbol, pointInTime, timestamp, depth));
+            }
+            return queryNbbo(symbol, pointInTime, timestamp, depth);
+        } finally {
+            metrics.nbboDone(started);
+        }
+    }
+
+    /**
+     * Gets the point in time best price levels for a given timestamp and symbol.
+     * At most resultLimit levels are returned for each side.
+     * @param symbol The symbol
+     * @param pointInTime The String timestamp of the point in time.
+     * @return The formatted String with the input data and best bid and ask levels
+     * @throws ParseException thrown when there is an issue parsing
+     */
+    public String pointInTimeLevels(String symbol, String pointInTime) throws ParseException {
+        return formatOutputString(depth(symbol, pointInTime, resultLimit));
+    }
+
+    /**
+     * Gets the best resultLimit price levels for a symbol at a point in time.
+     * @param symbol The symbol
+     * @param pointInTime The String timestamp of the point in time.
+     * @return the best bid and ask levels, best first
+     * @throws ParseException thrown when there is an issue parsing the pointInTime
+     */
+    public DepthResult depth(String symbol, String pointInTime) throws ParseException {
+        return depth(symbol, pointInTime, resultLimit);
+    }
+
+    /**
+     * Gets the best price levels for a symbol at a point in time. The live quotes
+     * at the same price are collapsed into one level with their total size and the
+     * size of each market center. Each symbol's levels are kept by a sweep that
+     * later queries advance, see {@link PriceLevelCursors}.
+     * @param symbol The symbol
+     * @param pointInTime The String timestamp of the point in time.
+     * @param levels the most levels to return for each side
+     * @return the best bid and ask levels, best first, fewer than levels when there are fewer
+     * @throws ParseException thrown when there is an issue parsing the pointInTime
+     */
+    public DepthResult depth(String symbol, String pointInTime, int levels) throws ParseException {
+        if (levels < 0) {
+            throw new BadRequestException("The number of levels must not be negative: " + levels);
+        }
+        long started = System.nanoTime();
+        try {
+            long timestamp = OrderBookUtil.parseEpochNanos(pointInTime);
+            OrderBook book = bookFor(timestamp, symbol);
+            SymbolQuoteIndex index = book.getSymbolIndex().get(symbol);
+            if (index == null) {
+                return new DepthResult(symbol, pointInTime, List.of(), List.of());
+            }
+            return priceLevels.read(symbol, book.getQuoteStore(), index.compacted(), timestamp,
+                    levelBook -> new DepthResult(symbol, pointInTime,
+                            levelBook.best(Side.BID, levels), levelBook.best(Side.ASK, levels)));
+        } finally {
+            metrics.depthDone(started);
+        }
+    }
 
-        // return the formatted output String
-        return formatOutputString(symbol, pointInTime, topNbbQuotes, topNboQuotes);
+    /**
+     * @return the symbols' price level sweeps
+     */
+    public PriceLevelCursors getPriceLevels() {
+        return priceLevels;
+    }
+
+    /**
+     * Computes the market quality of every symbol on the full order book: the time
+     * weighted average spread, the time each market center spent at the NBB and NBO,
+     * the quote counts by quote condition and the locked and crossed times. Each
+     * symbol's quotes are swept once, and the symbols are swept in parallel on the
+     * common fork-join pool. See {@link MarketQualitySweep}.
+     * @return the market quality of each symbol, by symbol
+     */
+    public List<MarketQuality> marketQuality() {
+        requireFullBook();
+        long started = System.nanoTime();
+        // read the store once so every symbol is swept against the same book
+        QuoteStore quoteStore = orderBook.getQuoteStore();
+        List<MarketQuality> results = new TreeMap<>(orderBook.getSymbolIndex()).entrySet()
+                .parallelStream()
+                .map(e -> new MarketQualitySweep(quoteStore, e.getKey(), e.getValue().compacted()).run())
+                .collect(Collectors.toList());
+        LOG.info("Computed the market quality of {} symbols in {} ms", results.size(), millisSince(started));
+        return results;
+    }
+
+    /**
+     * Computes the market quality of one symbol on the full order book, see
+     * {@link #marketQuality()}.
+     * @param symbol the symbol
+     * @return the market quality of the symbol, with no times when it has no quotes
+     */
+    public MarketQuality marketQuality(String symbol) {
+        requireFullBook();
+        QuoteStore quoteStore = orderBook.getQuoteStore();
+        SymbolQuoteIndex index = orderBook.getSymbolIndex().getOrDefault(symbol, new SymbolQuoteIndex());
+        return new MarketQualitySweep(quoteStore, symbol, index.compacted()).run();
+    }
+
+    private void requireFullBook() {
+        if (lazySymbols) {
+            throw new LazySymbolsException("Market quality needs the full order book, not lazily loaded symbols");
+        }
+    }
+
+    /**
+     * @return the cache of NBBO results, or null when results aren't cached
+     */
+    public NbboResultCache getResultCache() {
+        return resultCache;
+    }
+
+    private NbboResult queryNbbo(String symbol, String pointInTime, long timestamp, int depth) {
+        OrderBook book = bookFor(timestamp, symbol);
+        // read the store once so the rows and their fields come from the same book
+        QuoteStore quoteStore = book.getQuoteStore();
+        NbboTimeline timeline = book.getTimelines().get(symbol);
+        int[] bestBids;
+        int[] bestAsks;
+        if (timeline != null && timeline.getDepth() >= depth) {
+            // look the best quotes up in the precomputed timeline
+            bestBids = new int[timeline.getDepth()];
+            bestAsks = new int[timeline.getDepth()];
+            long counts = timeline.lookup(timestamp, bestBids, bestAsks);
+            bestBids = Arrays.copyOf(bestBids, Math.min(depth, (int) (counts >>> 32)));
+            bestAsks = Arrays.copyOf(bestAsks, Math.min(depth, (int) counts));
+        } else {
+            int[][] bestRows = bestLiveRows(book, quoteStore, symbol, timestamp, depth, metrics.getLiveSetSize());
+            bestBids = bestRows[0];
+            bestAsks = bestRows[1];
+        }
+        return new NbboResult(symbol, pointInTime,
+                toNbboQuotes(quoteStore, Side.BID, bestBids), toNbboQuotes(quoteStore, Side.ASK, bestAsks));
+    }
+
+    /**
+     * Checks the depth a client asked for. The best quotes are kept in arrays of
+     * the depth, so it is capped at maxDepth.
+     */
+    private void checkDepth(int depth) {
+        if (depth < 0) {
+            throw new BadRequestException("The depth must not be negative: " + depth);
+        }
+        if (depth > maxDepth) {
+            throw new BadRequestException("The depth must be at most " + maxDepth + ": " + depth);
+        }
+    }
+
+    /**
+     * Answers a batch of NBBO queries with the best resultLimit bids and asks.
+     * @param queries the symbols and points in time
+     * @return the results in the order of the queries
+     * @throws ParseException thrown when the point in time of a query can't be parsed
+     */
+    public Iterator<NbboResult> nbboBatch(List<NbboQuery> queries) throws ParseException {
+        return nbboBatch(queries, resultLimit);
     }
 
-    private String formatOutputString(String symbol, String pointInTime,
-                                      List<Quote> topNbbQuotes, List<Quote> topNboQuotes) {
+    /**
+     * Answers a batch of NBBO queries. Windows of consecutive queries are grouped
+     * by symbol, a symbol's queries in time order are answered in one sweep over
+     * its quotes, and the symbols are answered in parallel. The results come back
+     * in the order of the queries, each as soon as its symbol has been answered.
+     * With partitions or lazy symbols, answering a symbol can load a day or the
+     * symbol from its file, so the symbols are answered on the book loader threads
+     * rather than the common fork-join pool. See {@link NbboBatch}.
+     * @param queries the symbols and points in time
+     * @param depth the most quotes to return for each side, at most book.maxDepth
+     * @return the results in the order of the queries
+     * @throws ParseException thrown when the point in time of a query can't be parsed
+     */
+    public Iterator<NbboResult> nbboBatch(List<NbboQuery> queries, int depth) throws ParseException {
+        checkDepth(depth);
+        // parse every point in time before starting, so a bad query fails the whole batch
+        long[] times = new long[queries.size()];
+        for (int i = 0; i < times.length; i++) {
+            try {
+                times[i] = OrderBookUtil.parseEpochNanos(queries.get(i).getTs());
+            } catch (ParseException e) {
+                throw new ParseException("Query " + i + ": " + e.getMessage(), e.getErrorOffset());
+            }
+        }
+
+        // answer the symbols on helper tasks while the caller reads the results
+        boolean oneBook = partitions == null && symbolCache == null;
+        QuoteStore quoteStore = orderBook.getQuoteStore();
+        // with partitions or lazy symbols, each query remembers the store of the book that answered it
+        QuoteStore[] queryStores = oneBook ? null : new QuoteStore[queries.size()];
+        int helpers = Runtime.getRuntime().availableProcessors() - 1;
+        NbboBatch batch = new NbboBatch(queries, new NbboBatch.Answerer() {
+            @Override
+            public void answer(String symbol, int[] queryNumbers, int[][] bestRows) {
+                if (oneBook) {
+                    answerSymbol(orderBook, quoteStore, symbol, queryNumbers, times, depth, bestRows);
+                    return;
+                }
+                // a symbol's queries can fall on different days, answer each day from its own book
+                Map<OrderBook, List<Integer>> bookQueries = new IdentityHashMap<>();
+                for (int i : queryNumbers) {
+                    bookQueries.computeIfAbsent(bookFor(times[i], symbol), book -> new ArrayList<>()).add(i);
+                }
+                for (Map.Entry<OrderBook, List<Integer>> entry : bookQueries.entrySet()) {
+                    int[] dayQueries = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+                    QuoteStore dayStore = entry.getKey().getQuoteStore();
+                    answerSymbol(entry.getKey(), dayStore, symbol, dayQueries, times, depth, bestRows);
+                    for (int i : dayQueries) {
+                        queryStores[i] = dayStore;
+                    }
+                }
+            }
+
+            @Override
+            public NbboResult toResult(int queryNumber, int[] bestRows) {
+                NbboQuery query = queries.get(queryNumber);
+                QuoteStore store = queryStores == null ? quoteStore : queryStores[queryNumber];
+                if (queryStores != null) {
+                    queryStores[queryNumber] = null;
+                }
+                int bidCount = bestRows[0];
+                return new NbboResult(query.getSymbol(), query.getTs(),
+                        toNbboQuotes(store, Side.BID, Arrays.copyOfRange(bestRows, 1, 1 + bidCount)),
+                        toNbboQuotes(store, Side.ASK, Arrays.copyOfRange(bestRows, 1 + bidCount,
+                                bestRows.length)));
+            }
+        }, oneBook ? ForkJoinPool.commonPool() : bookLoaders(), helpers);
+        return batch;
+    }
+
+    /**
+     * @return the threads answering batch queries that may block reading a quotes
+     * file, so the reads don't hold up the tasks sharing the common pool
+     */
+    private synchronized ExecutorService bookLoaders() {
+        if (bookLoaders == null) {
+            bookLoaders = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "book-loader");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return bookLoaders;
+    }
+
+    /**
+     * Gets the changes of a symbol's best resultLimit bids and asks over a time range.
+     * @param symbol The symbol
+     * @param from The String timestamp of the start of the range.
+     * @param to The String timestamp of the end of the range, inclusive.
+     * @return the best bids and asks at the start of the range and at every change after it
+     * @throws ParseException thrown when there is an issue parsing the timestamps
+     */
+    public Iterator<NbboResult> nbboSeries(String symbol, String from, String to) throws ParseException {
+        return nbboSeries(symbol, from, to, resultLimit);
+    }
+
+    /**
+     * Gets the changes of a symbol's best bids and asks over a time range. The
+     * changes are computed as the results are read, by sweeping the symbol's quotes
+     * from the start of the range, so only the quotes live at the current time are
+     * held however long the range is. With a quotes directory, the range must be
+     * within one day. See {@link NbboSeries}.
+     * @param symbol The symbol
+     * @param from The String timestamp of the start of the range.
+     * @param to The String timestamp of the end of the range, inclusive.
+     * @param depth the most quotes to return for each side, at most book.maxDepth
+     * @return the best bids and asks at the start of the range and at every change after it
+     * @throws ParseException thrown when there is an issue parsing the timestamps
+     */
+    public Iterator<NbboResult> nbboSeries(String symbol, String from, String to, int depth)
+            throws ParseException {
+        checkDepth(depth);
+        long fromTime = OrderBookUtil.parseEpochNanos(from);
+        long toTime = OrderBookUtil.parseEpochNanos(to);
+        if (toTime < fromTime) {
+            throw new BadRequestException("The range ends before it starts: " + from + " to " + to);
+        }
+        if (partitions != null && OrderBookPartitions.epochDay(fromTime) != OrderBookPartitions.epochDay(toTime)) {
+            throw new BadRequestException("The range must start and end on the same day: " + from + " to " + to);
+        }
+        // read the store and the symbol's snapshot once so the series sees a consistent book
+        OrderBook book = bookFor(fromTime, symbol);
+        QuoteStore quoteStore = book.getQuoteStore();
+        SymbolQuoteIndex index = book.getSymbolIndex().get(symbol);
+        return new NbboSeries(quoteStore, symbol, index == null ? null : index.compacted(),
+                fromTime, toTime, depth);
+    }
+
+    /**
+     * Answers one symbol's queries: from its timeline when it has one deep enough,
+     * with a single sweep over its quotes when the queries come in time order and
+     * are dense enough, and otherwise with an index lookup for each query.
+     */
+    private void answerSymbol(OrderBook book, QuoteStore quoteStore, String symbol, int[] queryNumbers,
+                              long[] times, int depth, int[][] bestRows) {
+        SymbolQuoteIndex index = book.getSymbolIndex().get(symbol);
+        NbboTimeline timeline = book.getTimelines().get(symbol);
+        boolean useTimeline = timeline != null && timeline.getDepth() >= depth;
+        QueryTimeSweep sweep = null;
+        if (!useTimeline && index != null && inTimeOrder(queryNumbers, times)) {
+            // a sweep reads every quote starting between the first and last query, while
+            // a lookup only reads a few index nodes, so it only pays off when the queries
+            // are dense; sorting them costs more than the lookups it saves
+            QuoteIntervalIndex compacted = index.compacted();
+            long first = times[queryNumbers[0]];
+            long last = times[queryNumbers[queryNumbers.length - 1]];
+            long spanned = compacted.countStartedBy(last) - compacted.countStartedBy(first);
+            if (spanned <= (long) queryNumbers.length * SWEEP_MAX_QUOTES_PER_QUERY) {
+                sweep = new QueryTimeSweep(quoteStore, compacted, first);
+            }
+        }
+        int[] bids = new int[useTimeline ? timeline.getDepth() : 0];
+        int[] asks = new int[bids.length];
+
+        for (int i : queryNumbers) {
+            int bidCount = 0;
+            int askCount = 0;
+            if (useTimeline) {
+                long counts = timeline.lookup(times[i], bids, asks);
+                bidCount = Math.min(depth, (int) (counts >>> 32));
+                askCount = Math.min(depth, (int) counts);
+            } else if (sweep != null) {
+                BestQuoteHeap bestBids = new BestQuoteHeap(quoteStore, Side.BID, depth);
+                BestQuoteHeap bestAsks = new BestQuoteHeap(quoteStore, Side.ASK, depth);
+                sweep.forEachLive(times[i], row -> {
+                    bestBids.offer(row);
+                    bestAsks.offer(row);
+                });
+                bids = bestBids.toSortedRows();
+                asks = bestAsks.toSortedRows();
+                bidCount = bids.length;
+                askCount = asks.length;
+            } else if (index != null) {
+                int[][] bestLiveRows = bestLiveRows(book, quoteStore, symbol, times[i], depth, null);
+                bids = bestLiveRows[0];
+                asks = bestLiveRows[1];
+                bidCount = bids.length;
+                askCount = asks.length;
+            }
+            // keep the bid count and the rows, the result is only created when it is handed out
+            int[] best = new int[1 + bidCount + askCount];
+            best[0] = bidCount;
+            System.arraycopy(bids, 0, best, 1, bidCount);
+            System.arraycopy(asks, 0, best, 1 + bidCount, askCount);
+            bestRows[i] = best;
+        }
+    }
+
+    /**
+     * Gets the book a symbol at a point in time is looked up in: the partition of
+     * its day when there is a quotes file for that day, the symbol's own book when
+     * symbols are loaded lazily, and the full order book otherwise.
+     */
+    private OrderBook bookFor(long pointInTime, String symbol) {
+        OrderBookPartitions partitions = this.partitions;
+        OrderBook partition = partitions == null ? null : partitions.get(pointInTime);
+        if (partition != null) {
+            return partition;
+        }
+        // a symbol without quotes isn't cached, the empty full order book answers it
+        OrderBookCache<String> symbolCache = this.symbolCache;
+        if (symbolCache != null && symbolRanges.getRangeCount(symbol) > 0) {
+            return symbolCache.get(symbol);
+        }
+        return orderBook;
+    }
+
+    private static boolean inTimeOrder(int[] queryNumbers, long[] times) {
+        for (int i = 1; i < queryNumbers.length; i++) {
+            if (times[queryNumbers[i - 1]] > times[queryNumbers[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Selects the best live bids and asks from the symbol's interval index.
+     * @param liveSetSize records the number of live quotes, or null
+     * @return the best bid rows and the best ask rows, best first
+     */
+    private static int[][] bestLiveRows(OrderBook book, QuoteStore quoteStore, String symbol, long pointInTime,
+                                        int depth, DistributionSummary liveSetSize) {
+        BestQuoteHeap bestBids = new BestQuoteHeap(quoteStore, Side.BID, depth);
+        BestQuoteHeap bestAsks = new BestQuoteHeap(quoteStore, Side.ASK, depth);
+
+        // offer every live quote to both sides in a single pass
+        SymbolQuoteIndex index = book.getSymbolIndex().get(symbol);
+        if (index != null && depth > 0) {
+            index.forEachLive(pointInTime, row -> {
+                bestBids.offer(row);
+                bestAsks.offer(row);
+            });
+        }
+        if (liveSetSize != null) {
+            liveSetSize.record(bestBids.offeredCount());
+        }
+        return new int[][]{bestBids.toSortedRows(), bestAsks.toSortedRows()};
+    }
+
+    private static List<NbboQuote> toNbboQuotes(QuoteStore quoteStore, Side side, int[] rows) {
+        List<NbboQuote> quotes = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            quotes.add(NbboQuote.of(quoteStore, side, row));
+        }
+        return quotes;
+    }
+
+    private String formatOutputString(NbboResult result) {
         StringBuilder strBuilder = new StringBuilder();
 
         // append the symbol and time pieces to the string builder
-        strBuilder.append("$").append(symbol).append(" (").append(pointInTime).append(")").append("<br />\n");
+        strBuilder.append("$").append(result.getSymbol()).append(" (").append(result.getPointInTime()).append(")")
+                .append("<br />\n");
         // append the best bids
         strBuilder.append("Best Bids: ");
 
         // append the top nbb quotes to the output string
-        for (Quote quote : topNbbQuotes) {
-            strBuilder.append(quote.getBidPrice()).append("(").append(quote.getBidQuantity()).append("); ");
+        for (NbboQuote quote : result.getBids()) {
+            strBuilder.append(quote.getPrice()).append("(").append(quote.getSize()).append("); ");
         }
 
         // append the best asks
         strBuilder.append("<br />\n").append("Best Asks: ");
 
         // append the top nbo quotes to the output string
-        for (Quote quote : topNboQuotes) {
-            strBuilder.append(quote.getAskPrice()).append("(").append(quote.getAskQuantity()).append("); ");
+        for (NbboQuote quote : result.getAsks()) {
+            strBuilder.append(quote.getPrice()).append("(").append(quote.getSize()).append("); ");
         }
         return strBuilder.toString();
     }
+
+    private String formatOutputString(DepthResult result) {
+        StringBuilder strBuilder = new StringBuilder();
+
+        // append the symbol and time pieces to the string builder
+        strBuilder.append("$").append(result.getSymbol()).append(" (").append(result.getPointInTime()).append(")")
+                .append("<br />\n");
+        // append the best bid levels, each with the size of every market center at the price
+        strBuilder.append("Best Bids: ");
+        appendLevels(strBuilder, result.getBids());
+
+        // append the best ask levels
+        strBuilder.append("<br />\n").append("Best Asks: ");
+        appendLevels(strBuilder, result.getAsks());
+        return strBuilder.toString();
+    }
+
+    private static void appendLevels(StringBuilder strBuilder, List<PriceLevel> levels) {
+        for (PriceLevel level : levels) {
+            strBuilder.append(level.getPrice()).append("(").append(level.getSize());
+            String separator = ": ";
+            for (Map.Entry<String, BigInteger> marketCenter : level.getMarketCenters().entrySet()) {
+                strBuilder.append(separator).append(marketCenter.getKey()).append(" ").append(marketCenter.getValue());
+                separator = ", ";
+            }
+            strBuilder.append("); ");
+        }
+    }
 }
@@ -0,0 +1,139 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.PriceLevel;
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.Side;
+import com.spotts.orderbook.model.StringDictionary;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link LiveBook} that also keeps the live quotes collapsed into price levels
+ * on both sides. A level is updated as each quote is added or removed, so the
+ * best levels are read off the front of each side without looking at the quotes.
+ */
+public class PriceLevelBook extends LiveBook {
+    private final QuoteStore store;
+    private final TreeMap<Long, Level> bids;
+    private final TreeMap<Long, Level> asks;
+
+    /**
+     * @param store the store holding the quotes
+     */
+    public PriceLevelBook(QuoteStore store) {
+        super(store);
+        this.store = store;
+        bids = new TreeMap<>(Side.BID::comparePrices);
+        asks = new TreeMap<>(Side.ASK::comparePrices);
+    }
+
+    @Override
+    public void add(int row) {
+        super.add(row);
+        int marketCenterId = store.getMarketCenterId(row);
+        bids.computeIfAbsent(Side.BID.price(store, row), price -> new Level())
+                .add(marketCenterId, Side.BID.quantity(store, row));
+        asks.computeIfAbsent(Side.ASK.price(store, row), price -> new Level())
+                .add(marketCenterId, Side.ASK.quantity(store, row));
+    }
+
+    @Override
+    public void remove(int row) {
+        super.remove(row);
+        remove(bids, Side.BID, row);
+        remove(asks, Side.ASK, row);
+    }
+
+    private void remove(TreeMap<Long, Level> levels, Side side, int row) {
+        long price = side.price(store, row);
+        Level level = levels.get(price);
+        // the last quote at a price takes its level with it
+        if (level.remove(store.getMarketCenterId(row), side.quantity(store, row)) == 0) {
+            levels.remove(price);
+        }
+    }
+
+    /**
+     * @param side the side of the book
+     * @return the number of price levels on the side
+     */
+    public int levelCount(Side side) {
+        return (side == Side.BID ? bids : asks).size();
+    }
+
+    /**
+     * Gets the best price levels on one side.
+     * @param side the side of the book
+     * @param limit the most levels to return
+     * @return the levels, best first
+     */
+    public List<PriceLevel> best(Side side, int limit) {
+        TreeMap<Long, Level> levels = side == Side.BID ? bids : asks;
+        List<PriceLevel> result = new ArrayList<>(Math.min(limit, levels.size()));
+        for (Map.Entry<Long, Level> entry : levels.entrySet()) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(entry.getValue().toPriceLevel(entry.getKey(), store.getMarketCenters()));
+        }
+        return result;
+    }
+
+    /**
+     * The quotes at one price: their total size and number, and the size and
+     * number of quotes of each market center, indexed by market center id.
+     */
+    private static class Level {
+        long size;
+        int quoteCount;
+        long[] marketCenterSizes = new long[4];
+        int[] marketCenterQuotes = new int[4];
+
+        void add(int marketCenterId, int quantity) {
+            if (marketCenterId >= marketCenterQuotes.length) {
+                // a market center first seen on the stream
+                int length = Math.max(marketCenterId + 1, marketCenterQuotes.length * 2);
+                marketCenterSizes = Arrays.copyOf(marketCenterSizes, length);
+                marketCenterQuotes = Arrays.copyOf(marketCenterQuotes, length);
+            }
+            size += quantity;
+            quoteCount++;
+            marketCenterSizes[marketCenterId] += quantity;
+            marketCenterQuotes[marketCenterId]++;
+        }
+
+        /**
+         * @return the number of quotes left at the price
+         */
+        int remove(int marketCenterId, int quantity) {
+            size -= quantity;
+            marketCenterSizes[marketCenterId] -= quantity;
+            marketCenterQuotes[marketCenterId]--;
+            return --quoteCount;
+        }
+
+        PriceLevel toPriceLevel(long price, StringDictionary marketCenters) {
+            // list the market centers quoting the price, largest size first
+            List<Integer> ids = new ArrayList<>();
+            for (int id = 0; id < marketCenterQuotes.length; id++) {
+                if (marketCenterQuotes[id] > 0) {
+                    ids.add(id);
+                }
+            }
+            ids.sort(Comparator.<Integer>comparingLong(id -> -marketCenterSizes[id])
+                    .thenComparing(marketCenters::decode));
+            Map<String, BigInteger> sizes = new LinkedHashMap<>();
+            for (int id : ids) {
+                sizes.put(marketCenters.decode(id), BigInteger.valueOf(marketCenterSizes[id]));
+            }
+            return new PriceLevel(QuoteStore.toPrice(price), BigInteger.valueOf(size), quoteCount, sizes);
+        }
+    }
+}
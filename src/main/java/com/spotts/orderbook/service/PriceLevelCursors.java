@@ -0,0 +1,119 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.QuoteIntervalIndex;
+import com.spotts.orderbook.model.QuoteStore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Keeps a {@link PriceLevelBook} for each of the symbols queried most recently,
+ * swept to the point in time of the symbol's last query. A query at or after
+ * that point advances the sweep, adding and removing only the quotes that
+ * started or ended in between, so the levels are kept up to date incrementally
+ * instead of being rebuilt from the live quotes for every query.
+ *
+ * A symbol's sweep starts over from the quotes live at the point in time of a
+ * query when the query goes back in time, when more quotes started since the last
+ * query than are live on the book, or when the symbol's index changed because
+ * quotes were streamed in or its book was loaded again.
+ */
+public class PriceLevelCursors {
+    // advancing over a few quotes is always cheaper than finding the live ones again
+    private static final int MIN_ADVANCE_QUOTES = 64;
+
+    private final Map<String, Cursor> cursors;
+    private final LongAdder advanceCount = new LongAdder();
+    private final LongAdder restartCount = new LongAdder();
+
+    /**
+     * @param maxSymbols the most symbols to keep a sweep for, the least recently queried are dropped
+     */
+    public PriceLevelCursors(int maxSymbols) {
+        int max = Math.max(1, maxSymbols);
+        cursors = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cursor> eldest) {
+                return size() > max;
+            }
+        };
+    }
+
+    /**
+     * Sweeps a symbol's price levels to a point in time and reads them. Queries
+     * for the same symbol wait for each other, other symbols are read in parallel.
+     * @param symbol the symbol
+     * @param store the store holding the symbol's quotes
+     * @param index the symbol's index, which gives its quotes in start time order
+     * @param pointInTime the point in time
+     * @param reader reads the levels, while no other query can change them
+     * @param <R> the type of what is read
+     * @return what the reader read
+     */
+    public <R> R read(String symbol, QuoteStore store, QuoteIntervalIndex index, long pointInTime,
+                      Function<PriceLevelBook, R> reader) {
+        Cursor cursor;
+        synchronized (cursors) {
+            cursor = cursors.computeIfAbsent(symbol, s -> new Cursor());
+        }
+        synchronized (cursor) {
+            QuoteSweep sweep = cursor.sweep;
+            if (sweep == null || cursor.store != store || cursor.index != index
+                    || !isWorthAdvancing(index, sweep, pointInTime)) {
+                // find the quotes live at the point in time and sweep on from there
+                cursor.store = store;
+                cursor.index = index;
+                cursor.levels = new PriceLevelBook(store);
+                cursor.sweep = new QuoteSweep(store, index, pointInTime, cursor.levels);
+                restartCount.increment();
+            } else {
+                sweep.advanceTo(pointInTime);
+                advanceCount.increment();
+            }
+            return reader.apply(cursor.levels);
+        }
+    }
+
+    private static boolean isWorthAdvancing(QuoteIntervalIndex index, QuoteSweep sweep, long pointInTime) {
+        if (pointInTime < sweep.getTime()) {
+            return false;
+        }
+        long started = (long) index.countStartedBy(pointInTime) - index.countStartedBy(sweep.getTime());
+        return started <= Math.max(MIN_ADVANCE_QUOTES, sweep.getLiveBook().size());
+    }
+
+    /**
+     * @return the number of symbols with a sweep
+     */
+    public int getSize() {
+        synchronized (cursors) {
+            return cursors.size();
+        }
+    }
+
+    /**
+     * @return the number of queries answered by advancing a sweep
+     */
+    public long getAdvanceCount() {
+        return advanceCount.sum();
+    }
+
+    /**
+     * @return the number of queries that started a sweep over
+     */
+    public long getRestartCount() {
+        return restartCount.sum();
+    }
+
+    /**
+     * One symbol's sweep, guarded by its own lock.
+     */
+    private static class Cursor {
+        QuoteStore store;
+        QuoteIntervalIndex index;
+        PriceLevelBook levels;
+        QuoteSweep sweep;
+    }
+}
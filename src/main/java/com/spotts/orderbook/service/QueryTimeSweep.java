@@ -0,0 +1,78 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.QuoteIntervalIndex;
+import com.spotts.orderbook.model.QuoteStore;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Sweeps one symbol's quotes forward through a series of increasing query times.
+ *
+ * Unlike {@link QuoteSweep}, which keeps the live quotes sorted at every change,
+ * this sweep only visits the quotes at the query times. It starts with the quotes
+ * the index finds live at the first query time, adds a quote when a query reaches
+ * its start time, and drops it the first time a query finds it has ended. A quote
+ * that starts and ends between two queries is skipped, so a series of queries
+ * costs one index lookup, one pass over the quotes starting during the series,
+ * and the quotes live at each query.
+ */
+public class QueryTimeSweep {
+    private final QuoteIntervalIndex index;
+    private int[] active = new int[64];
+    private long[] activeEnds = new long[64];
+    private int activeCount;
+    private int next;
+    private long time;
+
+    /**
+     * @param store the store holding the quotes
+     * @param index the symbol's index, which gives its quotes in start time order
+     * @param from the first query time
+     */
+    public QueryTimeSweep(QuoteStore store, QuoteIntervalIndex index, long from) {
+        this.index = index;
+        index.forEachLive(from, row -> add(row, store.getEndTime(row)));
+        next = index.countStartedBy(from);
+        time = from;
+    }
+
+    /**
+     * Advances the sweep to a point in time and visits the quotes live then.
+     * @param pointInTime the point in time, not before the last one
+     * @param consumer called with the row of each live quote, in no particular order
+     */
+    public void forEachLive(long pointInTime, IntConsumer consumer) {
+        if (pointInTime < time) {
+            throw new IllegalArgumentException("The sweep can't go back in time");
+        }
+        time = pointInTime;
+        // add the quotes that started since the last query and haven't ended,
+        // reading the times from the index so the skipped quotes are never looked up
+        while (next < index.size() && index.startAt(next) <= pointInTime) {
+            if (index.endAt(next) >= pointInTime) {
+                add(index.rowAt(next), index.endAt(next));
+            }
+            next++;
+        }
+        // visit the live quotes, dropping the ones that have ended for good
+        int kept = 0;
+        for (int i = 0; i < activeCount; i++) {
+            if (activeEnds[i] >= pointInTime) {
+                active[kept] = active[i];
+                activeEnds[kept++] = activeEnds[i];
+                consumer.accept(active[i]);
+            }
+        }
+        activeCount = kept;
+    }
+
+    private void add(int row, long end) {
+        if (activeCount == active.length) {
+            active = Arrays.copyOf(active, activeCount * 2);
+            activeEnds = Arrays.copyOf(activeEnds, activeCount * 2);
+        }
+        active[activeCount] = row;
+        activeEnds[activeCount++] = end;
+    }
+}
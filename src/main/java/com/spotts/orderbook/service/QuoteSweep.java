@@ -0,0 +1,114 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.QuoteIntervalIndex;
+import com.spotts.orderbook.model.QuoteStore;
+
+import java.util.PriorityQueue;
+
+/**
+ * Sweeps one symbol's quotes in time order, keeping a {@link LiveBook} of the
+ * quotes live at the current time. A quote is added at its start time and removed
+ * one nanosecond after its end time, since both ends are inclusive.
+ */
+public class QuoteSweep {
+    private final QuoteStore store;
+    private final QuoteIntervalIndex index;
+    private final LiveBook liveBook;
+    private final PriorityQueue<Integer> byEndTime;
+    private int next;
+    private long time = Long.MIN_VALUE;
+
+    /**
+     * @param store the store holding the quotes
+     * @param index the symbol's index, which gives its quotes in start time order
+     */
+    public QuoteSweep(QuoteStore store, QuoteIntervalIndex index) {
+        this(store, index, new LiveBook(store));
+    }
+
+    /**
+     * @param store the store holding the quotes
+     * @param index the symbol's index, which gives its quotes in start time order
+     * @param liveBook the empty book the live quotes are kept on
+     */
+    public QuoteSweep(QuoteStore store, QuoteIntervalIndex index, LiveBook liveBook) {
+        this.store = store;
+        this.index = index;
+        this.liveBook = liveBook;
+        this.byEndTime = new PriorityQueue<>((first, second) ->
+                Long.compare(store.getEndTime(first), store.getEndTime(second)));
+    }
+
+    /**
+     * Starts a sweep at a point in time, with the quotes live at that time already
+     * on the book, rather than sweeping from the symbol's first quote.
+     * @param store the store holding the quotes
+     * @param index the symbol's index, which gives its quotes in start time order
+     * @param from the point in time the sweep starts at
+     */
+    public QuoteSweep(QuoteStore store, QuoteIntervalIndex index, long from) {
+        this(store, index, from, new LiveBook(store));
+    }
+
+    /**
+     * Starts a sweep at a point in time, keeping the live quotes on the given book.
+     * @param store the store holding the quotes
+     * @param index the symbol's index, which gives its quotes in start time order
+     * @param from the point in time the sweep starts at
+     * @param liveBook the empty book the live quotes are kept on
+     */
+    public QuoteSweep(QuoteStore store, QuoteIntervalIndex index, long from, LiveBook liveBook) {
+        this(store, index, liveBook);
+        index.forEachLive(from, row -> {
+            liveBook.add(row);
+            byEndTime.add(row);
+        });
+        next = index.countStartedBy(from);
+        time = from;
+    }
+
+    /**
+     * @return the book of quotes live at the current time
+     */
+    public LiveBook getLiveBook() {
+        return liveBook;
+    }
+
+    /**
+     * @return the time the sweep has advanced to
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the next time after the current time at which a quote is added or
+     * removed, or Long.MAX_VALUE when there are none left
+     */
+    public long nextEventTime() {
+        long nextStart = next < index.size() ? index.startAt(next) : Long.MAX_VALUE;
+        long nextRemoval = byEndTime.isEmpty() ? Long.MAX_VALUE : store.getEndTime(byEndTime.peek()) + 1;
+        return Math.min(nextStart, nextRemoval);
+    }
+
+    /**
+     * Advances the sweep so the live book holds the quotes live at a point in time.
+     * @param pointInTime the point in time, not before the current time
+     */
+    public void advanceTo(long pointInTime) {
+        // remove the quotes that ended before the point in time
+        while (!byEndTime.isEmpty() && store.getEndTime(byEndTime.peek()) < pointInTime) {
+            liveBook.remove(byEndTime.poll());
+        }
+        // add the quotes that started at or before the point in time
+        while (next < index.size() && index.startAt(next) <= pointInTime) {
+            int row = index.rowAt(next++);
+            // a quote that ends before the point in time was never live at a swept time
+            if (store.getEndTime(row) >= pointInTime) {
+                liveBook.add(row);
+                byEndTime.add(row);
+            }
+        }
+        time = pointInTime;
+    }
+}
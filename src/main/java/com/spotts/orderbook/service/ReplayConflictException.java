@@ -0,0 +1,14 @@
+package com.spotts.orderbook.service;
+
+/**
+ * A replay request that conflicts with the state of the replays: starting one
+ * while another is running, or following one when there is none.
+ */
+public class ReplayConflictException extends IllegalStateException {
+    /**
+     * @param message the detail message
+     */
+    public ReplayConflictException(String message) {
+        super(message);
+    }
+}
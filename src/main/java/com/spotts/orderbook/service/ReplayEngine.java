@@ -0,0 +1,413 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.model.NbboResult;
+import com.spotts.orderbook.model.QuoteIntervalIndex;
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.ReplayEvent;
+import com.spotts.orderbook.model.SymbolQuoteIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays the quotes on a book in start time order and publishes every change of
+ * each symbol's best bids and asks to the subscribers, in time order across the
+ * symbols.
+ *
+ * Each symbol's changes come from an {@link NbboSeries} over its quotes, and the
+ * series are merged by the time of their next change. The replay runs at a speed
+ * relative to the times of the quotes, 1 for real time and 10 for ten times as
+ * fast, or as fast as it can when the speed is 0.
+ *
+ * The replay thread never waits for a subscriber. Each subscriber has a bounded
+ * queue, and a task on the delivery executor drains the queue into the
+ * subscriber's sink while it has events. When a queue is full, the subscriber's
+ * {@link SlowConsumerPolicy} either drops its oldest event or disconnects it.
+ */
+@Slf4j
+public class ReplayEngine implements Runnable {
+    private final List<NbboSeries> series;
+    private final double speed;
+    private final Executor deliveryExecutor;
+    private final Listener listener;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder disconnectedCount = new LongAdder();
+    private volatile long publishedCount;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile boolean finished;
+    private volatile boolean stopped;
+    private volatile Thread replayThread;
+
+    /**
+     * How a subscriber whose queue is full is treated.
+     */
+    public enum SlowConsumerPolicy {
+        /** Drop the subscriber's oldest queued event to make room for the new one. */
+        DROP_OLDEST,
+        /** Disconnect the subscriber. */
+        DISCONNECT
+    }
+
+    /**
+     * Where a subscriber's events are sent.
+     */
+    public interface Sink {
+        /**
+         * Sends an event to the subscriber. Only one event is sent at a time.
+         * @param event the event
+         * @throws IOException thrown when the subscriber has gone, which disconnects it
+         */
+        void send(ReplayEvent event) throws IOException;
+
+        /**
+         * Called once, after the last event was sent, when the replay finished or the
+         * subscriber was disconnected.
+         * @param disconnected true when the subscriber was disconnected before the end of the replay
+         */
+        void close(boolean disconnected);
+    }
+
+    /**
+     * Told about what happens to the events of the replay, on the thread it happens on.
+     */
+    public interface Listener {
+        /**
+         * Called when an event was published to the subscribers.
+         */
+        default void eventPublished() {
+        }
+
+        /**
+         * Called when an event was sent to a subscriber.
+         * @param latencyNanos the time from publishing the event to sending it
+         */
+        default void eventDelivered(long latencyNanos) {
+        }
+
+        /**
+         * Called when an event was dropped from the queue of a slow subscriber.
+         */
+        default void eventDropped() {
+        }
+
+        /**
+         * Called when a subscriber was disconnected before the end of the replay.
+         */
+        default void subscriberDisconnected() {
+        }
+    }
+
+    /**
+     * @param store the store holding the quotes
+     * @param symbolIndex the index of each symbol's quotes
+     * @param depth the most quotes for each side of a change
+     * @param speed how many times faster than real time to replay, or 0 to replay as fast as possible
+     * @param deliveryExecutor runs the tasks sending the events to the subscribers
+     * @param listener told about what happens to the events
+     */
+    public ReplayEngine(QuoteStore store, Map<String, SymbolQuoteIndex> symbolIndex, int depth, double speed,
+                        Executor deliveryExecutor, Listener listener) {
+        if (speed < 0 || Double.isNaN(speed) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException("The speed must be 0 or more: " + speed);
+        }
+        if (depth < 0) {
+            throw new IllegalArgumentException("The depth must not be negative: " + depth);
+        }
+        this.speed = speed;
+        this.deliveryExecutor = deliveryExecutor;
+        this.listener = listener;
+        // each symbol's series starts at its first quote, so it never starts with an empty book
+        this.series = new CopyOnWriteArrayList<>();
+        for (Map.Entry<String, SymbolQuoteIndex> entry : symbolIndex.entrySet()) {
+            QuoteIntervalIndex index = entry.getValue().compacted();
+            if (index.size() > 0) {
+                series.add(new NbboSeries(store, entry.getKey(), index, index.startAt(0), Long.MAX_VALUE - 1,
+                        depth));
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        Queue<NbboSeries> byTime = new PriorityQueue<>(Math.max(1, series.size()),
+                Comparator.comparingLong(NbboSeries::nextTime));
+        byTime.addAll(series);
+        series.clear();
+        replayThread = Thread.currentThread();
+        startedNanos = System.nanoTime();
+        long firstTime = byTime.isEmpty() ? 0 : byTime.peek().nextTime();
+        long sequence = 0;
+        try {
+            while (!byTime.isEmpty() && !stopped) {
+                NbboSeries next = byTime.poll();
+                long time = next.nextTime();
+                NbboResult result = next.next();
+                if (speed > 0 && !waitUntil(startedNanos + (long) ((time - firstTime) / speed))) {
+                    break;
+                }
+                publish(new ReplayEvent(sequence++, result, System.nanoTime()));
+                if (next.hasNext()) {
+                    byTime.add(next);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.error("The replay failed after {} events", sequence, e);
+        } finally {
+            finishedNanos = System.nanoTime();
+            finished = true;
+            for (Subscription subscription : subscriptions) {
+                subscription.schedule();
+            }
+            done.countDown();
+            LOG.info("Replayed {} events in {} ms", sequence, (finishedNanos - startedNanos) / 1_000_000);
+        }
+    }
+
+    /**
+     * Waits until a System.nanoTime(), unless the replay is stopped first.
+     * @return false when the replay was stopped
+     */
+    private boolean waitUntil(long nanoTime) {
+        for (long wait = nanoTime - System.nanoTime(); wait > 0; wait = nanoTime - System.nanoTime()) {
+            LockSupport.parkNanos(this, wait);
+            if (stopped) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void publish(ReplayEvent event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+        // only the replay thread writes the count
+        publishedCount = publishedCount + 1;
+        listener.eventPublished();
+    }
+
+    /**
+     * Subscribes to the changes published from now on.
+     * @param sink where the events are sent
+     * @param symbol the only symbol to send the changes of, or null for every symbol
+     * @param capacity the most events queued for the subscriber
+     * @param policy what happens when the queue is full
+     * @return the subscription
+     */
+    public Subscription subscribe(Sink sink, String symbol, int capacity, SlowConsumerPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be at least 1: " + capacity);
+        }
+        Subscription subscription = new Subscription(sink, symbol, capacity, policy);
+        subscriptions.add(subscription);
+        // a replay that already finished completes the subscription straight away
+        if (finished) {
+            subscription.schedule();
+        }
+        return subscription;
+    }
+
+    /**
+     * Stops the replay. The subscribers are sent the events already queued for them.
+     */
+    public void stop() {
+        stopped = true;
+        // wake the replay if it is waiting for the time of its next event
+        Thread thread = replayThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Waits for the replay to publish its last event.
+     * @param timeout the most time to wait
+     * @param unit the unit of the timeout
+     * @return true when the replay finished in time
+     * @throws InterruptedException thrown when the thread is interrupted while waiting
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * @return true once the replay published its last event or was stopped
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return how many times faster than real time the quotes are replayed, 0 for as fast as possible
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return the number of events published
+     */
+    public long getPublishedCount() {
+        return publishedCount;
+    }
+
+    /**
+     * @return the number of events published per second since the replay started
+     */
+    public double getPublishedPerSecond() {
+        long started = startedNanos;
+        if (started == 0) {
+            return 0;
+        }
+        long elapsed = (finished ? finishedNanos : System.nanoTime()) - started;
+        return elapsed > 0 ? publishedCount * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * @return the number of events sent to subscribers
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.sum();
+    }
+
+    /**
+     * @return the number of events dropped from the queues of slow subscribers
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return the number of subscribers disconnected before the end of the replay
+     */
+    public long getDisconnectedCount() {
+        return disconnectedCount.sum();
+    }
+
+    /**
+     * @return the number of subscribers still receiving events
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * One subscriber's queue of events. The replay thread adds the events and a
+     * task on the delivery executor sends them, with at most one task scheduled
+     * for the subscriber at a time.
+     */
+    public class Subscription implements Runnable {
+        private final Sink sink;
+        private final String symbol;
+        private final ArrayBlockingQueue<ReplayEvent> queue;
+        private final SlowConsumerPolicy policy;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean disconnected;
+
+        private Subscription(Sink sink, String symbol, int capacity, SlowConsumerPolicy policy) {
+            this.sink = sink;
+            this.symbol = symbol;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.policy = policy;
+        }
+
+        private void offer(ReplayEvent event) {
+            if (disconnected || (symbol != null && !symbol.equals(event.getNbbo().getSymbol()))) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                if (policy == SlowConsumerPolicy.DISCONNECT) {
+                    disconnect();
+                    return;
+                }
+                // only this thread adds events, so there is room once one is taken
+                if (queue.poll() != null) {
+                    droppedCount.increment();
+                    listener.eventDropped();
+                }
+                queue.offer(event);
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                deliveryExecutor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            do {
+                ReplayEvent event;
+                while (!disconnected && (event = queue.poll()) != null) {
+                    try {
+                        sink.send(event);
+                    } catch (IOException | RuntimeException e) {
+                        LOG.debug("Disconnecting a replay subscriber: {}", e.getMessage());
+                        disconnect();
+                        break;
+                    }
+                    deliveredCount.increment();
+                    listener.eventDelivered(System.nanoTime() - event.getPublishedNanos());
+                }
+                if (disconnected || (finished && queue.isEmpty())) {
+                    close();
+                }
+                scheduled.set(false);
+                // an event added after the queue was found empty is sent by this task
+            } while ((!queue.isEmpty() || (finished && !closed.get())) && scheduled.compareAndSet(false, true));
+        }
+
+        /**
+         * Disconnects the subscriber: it isn't sent any more events.
+         */
+        public void disconnect() {
+            synchronized (this) {
+                if (disconnected) {
+                    return;
+                }
+                disconnected = true;
+            }
+            // a subscriber that goes once the replay finished isn't a disconnect
+            if (!finished) {
+                disconnectedCount.increment();
+                listener.subscriberDisconnected();
+            }
+            queue.clear();
+            schedule();
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+                sink.close(disconnected);
+            }
+        }
+
+        /**
+         * @return true once the subscriber was disconnected
+         */
+        public boolean isDisconnected() {
+            return disconnected;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.spotts.orderbook.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable CharSequence view over a range of ASCII bytes, so byte buffers
+ * from the quotes file can be handed to the CharSequence parsers in
+ * {@link OrderBookUtil} without creating a String per field.
+ *
+ * A view is not thread-safe; each parsing thread uses its own.
+ */
+public class AsciiSequence implements CharSequence {
+    private byte[] bytes;
+    private int offset;
+    private int length;
+
+    /**
+     * Points the view at a new range of bytes.
+     * @param bytes the bytes
+     * @param offset the start of the range
+     * @param length the length of the range
+     * @return this view
+     */
+    public AsciiSequence set(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes[offset + index] & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new AsciiSequence().set(bytes, offset + start, end - start);
+    }
+
+    /**
+     * @return true when the view holds the same characters as the value
+     */
+    public boolean contentEquals(String value) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != (char) (bytes[offset + i] & 0xff)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the same hash code as {@link String#hashCode()} for the characters in the view
+     */
+    public int contentHash() {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + (bytes[offset + i] & 0xff);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -1,8 +1,12 @@
 package com.spotts.orderbook.util;
 
+import com.spotts.orderbook.model.QuoteStore;
+
 import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Date;
 
 /**
@@ -13,7 +17,8 @@ public class OrderBookUtil {
     private static final String outputTsPattern = "yyyy-MM-dd HH:mm:ss.SSS";
 
     /**
-     * Formats the timestamp String from the quotes file into a Timestamp object
+     * Formats the timestamp String from the quotes file into a Timestamp object.
+     * Kept for compatibility, the book itself uses {@link #parseEpochNanos(CharSequence)}.
      * @param timestampString the timestamp String
      * @return a Timestamp object created from the timestampString
      * @throws ParseException thrown when there is an issue parsing the timestampString
@@ -25,4 +30,196 @@ public class OrderBookUtil {
         String formattedTime = outputFormat.format(parsedDate);
         return Timestamp.valueOf(formattedTime);
     }
+
+    /**
+     * Parses a timestamp String in the "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'" layout into
+     * nanoseconds since the epoch (UTC). The fraction may also have micro (6) or
+     * nano (9) second precision. Nothing is allocated unless the input is
+     * malformed, and the method is safe to call from any thread.
+     * @param timestampString the timestamp String, e.g. "2021-02-18T09:58:59.262Z"
+     * @return the nanoseconds since the epoch
+     * @throws ParseException thrown when the timestampString does not match the layout
+     * or holds an out of range field
+     */
+    public static long parseEpochNanos(CharSequence timestampString) throws ParseException {
+        int length = timestampString.length();
+        // the fraction must be 3, 6 or 9 digits long
+        int fractionDigits = length - 21;
+        if (fractionDigits != 3 && fractionDigits != 6 && fractionDigits != 9) {
+            throw timestampError(timestampString, Math.min(length, 20));
+        }
+        expect(timestampString, 4, '-');
+        expect(timestampString, 7, '-');
+        expect(timestampString, 10, 'T');
+        expect(timestampString, 13, ':');
+        expect(timestampString, 16, ':');
+        expect(timestampString, 19, '.');
+        expect(timestampString, length - 1, 'Z');
+
+        int year = digits(timestampString, 0, 4);
+        int month = digits(timestampString, 5, 2);
+        int day = digits(timestampString, 8, 2);
+        int hour = digits(timestampString, 11, 2);
+        int minute = digits(timestampString, 14, 2);
+        int second = digits(timestampString, 17, 2);
+        long nanos = digits(timestampString, 20, fractionDigits);
+        for (int i = fractionDigits; i < 9; i++) {
+            nanos *= 10;
+        }
+
+        if (month < 1 || month > 12) {
+            throw timestampError(timestampString, 5);
+        }
+        if (day < 1 || day > daysInMonth(year, month)) {
+            throw timestampError(timestampString, 8);
+        }
+        if (hour > 23) {
+            throw timestampError(timestampString, 11);
+        }
+        if (minute > 59) {
+            throw timestampError(timestampString, 14);
+        }
+        if (second > 59) {
+            throw timestampError(timestampString, 17);
+        }
+        long epochSecond = epochDay(year, month, day) * 86_400L + hour * 3_600L + minute * 60L + second;
+        return epochSecond * 1_000_000_000L + nanos;
+    }
+
+    /**
+     * Converts nanoseconds since the epoch back into the Timestamp that
+     * {@link #formatTimestamp(String)} returns for the same timestamp String.
+     * @param epochNanos the nanoseconds since the epoch
+     * @return the Timestamp
+     */
+    public static Timestamp toTimestamp(long epochNanos) {
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                (int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC));
+    }
+
+    /**
+     * Formats nanoseconds since the epoch as a timestamp String that
+     * {@link #parseEpochNanos(CharSequence)} reads back, with a millisecond fraction
+     * unless the time has finer precision, e.g. "2021-02-18T09:58:59.262Z".
+     * @param epochNanos the nanoseconds since the epoch
+     * @return the timestamp String
+     */
+    public static String formatEpochNanos(long epochNanos) {
+        LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                (int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC);
+        StringBuilder builder = new StringBuilder(30);
+        pad(builder, time.getYear(), 4).append('-');
+        pad(builder, time.getMonthValue(), 2).append('-');
+        pad(builder, time.getDayOfMonth(), 2).append('T');
+        pad(builder, time.getHour(), 2).append(':');
+        pad(builder, time.getMinute(), 2).append(':');
+        pad(builder, time.getSecond(), 2).append('.');
+        int nanos = time.getNano();
+        if (nanos % 1_000_000 == 0) {
+            pad(builder, nanos / 1_000_000, 3);
+        } else {
+            pad(builder, nanos, 9);
+        }
+        return builder.append('Z').toString();
+    }
+
+    private static StringBuilder pad(StringBuilder builder, int value, int width) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            builder.append('0');
+        }
+        return builder.append(digits);
+    }
+
+    private static void expect(CharSequence timestampString, int pos, char expected) throws ParseException {
+        if (timestampString.charAt(pos) != expected) {
+            throw timestampError(timestampString, pos);
+        }
+    }
+
+    private static int digits(CharSequence timestampString, int pos, int count) throws ParseException {
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            int digit = timestampString.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw timestampError(timestampString, i);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leapYear ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Days since 1970-01-01 for a date in the proleptic Gregorian calendar.
+     */
+    private static long epochDay(int year, int month, int day) {
+        // count years from March so the leap day is the last day of the year
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468L;
+    }
+
+    private static ParseException timestampError(CharSequence timestampString, int pos) {
+        return new ParseException("Unparseable timestamp: \"" + timestampString
+                + "\" (expected " + inputTsPattern + ") at position " + pos, pos);
+    }
+
+    /**
+     * Parses a decimal price String into fixed-point price ticks with
+     * {@link QuoteStore#PRICE_SCALE} decimal places, without creating a BigDecimal.
+     * @param price the price String, e.g. "129.46"
+     * @return the price in ticks, e.g. 129460000
+     * @throws ParseException thrown when the price is not a decimal number or has
+     * non-zero digits past the price scale, or is too large for a long of ticks
+     */
+    public static long parsePriceTicks(CharSequence price) throws ParseException {
+        int length = price.length();
+        int pos = 0;
+        boolean negative = length > 0 && price.charAt(0) == '-';
+        if (negative) {
+            pos++;
+        }
+        long ticks = 0;
+        int fractionDigits = -1;
+        boolean digits = false;
+        try {
+            for (; pos < length; pos++) {
+                char c = price.charAt(pos);
+                if (c == '.' && fractionDigits < 0) {
+                    fractionDigits = 0;
+                } else if (c == '0' && fractionDigits >= QuoteStore.PRICE_SCALE) {
+                    // zeros past the price scale don't change the price
+                    continue;
+                } else if (c >= '0' && c <= '9' && fractionDigits < QuoteStore.PRICE_SCALE) {
+                    ticks = Math.addExact(Math.multiplyExact(ticks, 10), c - '0');
+                    digits = true;
+                    if (fractionDigits >= 0) {
+                        fractionDigits++;
+                    }
+                } else {
+                    throw new ParseException("Unparseable price: \"" + price + "\"", pos);
+                }
+            }
+            if (!digits) {
+                throw new ParseException("Unparseable price: \"" + price + "\"", pos);
+            }
+            for (int i = Math.max(fractionDigits, 0); i < QuoteStore.PRICE_SCALE; i++) {
+                ticks = Math.multiplyExact(ticks, 10);
+            }
+        } catch (ArithmeticException e) {
+            throw new ParseException("Price out of range: \"" + price + "\"", pos);
+        }
+        return negative ? -ticks : ticks;
+    }
 }
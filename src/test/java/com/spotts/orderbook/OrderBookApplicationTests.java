@@ -1,13 +1,39 @@
 package com.spotts.orderbook;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 class OrderBookApplicationTests {
 
+	@Autowired
+	ThreadPoolTaskExecutor applicationTaskExecutor;
+
+	@Autowired
+	RequestMappingHandlerAdapter handlerAdapter;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void streamedResponsesUseBoundedExecutorTest() {
+		// the streamed responses run on a bounded pool, not a new thread per request
+		assertSame(applicationTaskExecutor, ReflectionTestUtils.getField(handlerAdapter, "taskExecutor"));
+		assertEquals(32, applicationTaskExecutor.getMaxPoolSize());
+		ThreadPoolExecutor executor = applicationTaskExecutor.getThreadPoolExecutor();
+		assertEquals(100, executor.getQueue().remainingCapacity());
+		assertTrue(executor.getRejectedExecutionHandler() instanceof ThreadPoolExecutor.CallerRunsPolicy);
+	}
+
 }
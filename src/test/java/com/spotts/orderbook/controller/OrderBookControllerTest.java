@@ -0,0 +1,274 @@
+package com.spotts.orderbook.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.MarketQuality;
+import com.spotts.orderbook.service.OrderBookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.util.NestedServletException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class OrderBookControllerTest {
+    private MockMvc mockMvc;
+    private OrderBookController controller;
+
+    @BeforeEach
+    public void init() throws Exception {
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath("src/test/resources/quotes_subset.csv");
+        context.setResultLimit(2);
+        controller = new OrderBookController();
+        controller.orderBookService = new OrderBookService(context);
+        controller.orderBookService.buildOrderBook();
+        controller.objectMapper = new ObjectMapper();
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void nbboTest() throws Exception {
+        mockMvc.perform(get("/nbbo").param("symbol", "AAPL").param("ts", "2021-02-18T09:58:59.298Z")
+                        .param("depth", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.symbol").value("AAPL"))
+                .andExpect(jsonPath("$.bids.length()").value(3))
+                .andExpect(jsonPath("$.bids[0].price").value(129.5))
+                .andExpect(jsonPath("$.bids[0].size").value(200))
+                .andExpect(jsonPath("$.bids[0].marketCenter").value("Q"))
+                .andExpect(jsonPath("$.asks[0].price").value(129.51));
+    }
+
+    @Test
+    public void nbboDefaultDepthTest() throws Exception {
+        mockMvc.perform(get("/nbbo").param("symbol", "AAPL").param("ts", "2021-02-18T09:58:59.298Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bids.length()").value(2))
+                .andExpect(jsonPath("$.asks.length()").value(2));
+    }
+
+    @Test
+    public void nbboBadRequestTest() throws Exception {
+        mockMvc.perform(get("/nbbo").param("symbol", "AAPL").param("ts", "yesterday"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/nbbo").param("symbol", "AAPL").param("ts", "2021-02-18T09:58:59.298Z")
+                        .param("depth", "-1"))
+                .andExpect(status().isBadRequest());
+        // a depth past book.maxDepth is refused before anything is sized by it
+        mockMvc.perform(get("/nbbo").param("symbol", "AAPL").param("ts", "2021-02-18T09:58:59.298Z")
+                        .param("depth", Integer.toString(Integer.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void depthTest() throws Exception {
+        // the three Q quotes at 129.5 are one level
+        mockMvc.perform(get("/depth").param("symbol", "AAPL").param("ts", "2021-02-18T09:58:59.298Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bids.length()").value(2))
+                .andExpect(jsonPath("$.bids[0].price").value(129.5))
+                .andExpect(jsonPath("$.bids[0].size").value(600))
+                .andExpect(jsonPath("$.bids[0].quoteCount").value(3))
+                .andExpect(jsonPath("$.bids[0].marketCenters.Q").value(600))
+                .andExpect(jsonPath("$.bids[1].marketCenters.K").value(2600))
+                .andExpect(jsonPath("$.asks[0].price").value(129.51));
+        mockMvc.perform(get("/depth").param("symbol", "AAPL").param("ts", "2021-02-18T09:58:59.298Z")
+                        .param("levels", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/").param("view", "book"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void marketQualityTest() throws Exception {
+        mockMvc.perform(get("/quality").param("symbol", "AAPL"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].symbol").value("AAPL"))
+                .andExpect(jsonPath("$[0].nbbNanos.Q").exists());
+        MvcResult result = mockMvc.perform(get("/quality")).andExpect(status().isOk()).andReturn();
+        JsonNode symbols = new ObjectMapper().readTree(result.getResponse().getContentAsString());
+        assertEquals(controller.orderBookService.orderBook.getSymbolIndex().size(), symbols.size());
+    }
+
+    @Test
+    public void loadFailureIsServerErrorTest() throws Exception {
+        Path file = Files.createTempFile("quotes", ".csv");
+        Files.copy(Paths.get("src/test/resources/quotes_subset.csv"), file, StandardCopyOption.REPLACE_EXISTING);
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(file.toString());
+        context.setLazySymbols(true);
+        controller.orderBookService = new OrderBookService(context);
+        controller.orderBookService.buildOrderBook();
+        // the symbol's quotes can't be loaded once the scanned file is gone
+        Files.delete(file);
+        NestedServletException e = assertThrows(NestedServletException.class, () -> mockMvc.perform(
+                get("/nbbo").param("symbol", "AAPL").param("ts", "2021-02-18T09:58:59.298Z")));
+        assertTrue(e.getCause() instanceof IllegalStateException, e.getCause().toString());
+    }
+
+    @Test
+    public void lazySymbolsConflictTest() throws Exception {
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath("src/test/resources/quotes_subset.csv");
+        context.setLazySymbols(true);
+        controller.orderBookService = new OrderBookService(context);
+        controller.orderBookService.buildOrderBook();
+        mockMvc.perform(get("/quality"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void internalErrorIsNotBadRequestTest() throws Exception {
+        // an IllegalArgumentException that isn't about the request is a server error
+        controller.orderBookService = new OrderBookService(new OrderBookContext()) {
+            @Override
+            public List<MarketQuality> marketQuality() {
+                throw new IllegalArgumentException("internal detail");
+            }
+        };
+        NestedServletException e = assertThrows(NestedServletException.class,
+                () -> mockMvc.perform(get("/quality")));
+        assertTrue(e.getCause() instanceof IllegalArgumentException, e.getCause().toString());
+    }
+
+    @Test
+    public void replayEventsTest() throws Exception {
+        mockMvc.perform(get("/replay"))
+                .andExpect(status().isConflict());
+        // a replay that is held back by its speed has the subscriber in place before its first event
+        mockMvc.perform(post("/replay").param("speed", "0.01").param("depth", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.running").value(true));
+        mockMvc.perform(post("/replay"))
+                .andExpect(status().isConflict());
+        MvcResult result = mockMvc.perform(get("/replay/events").param("symbol", "AAPL"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(delete("/replay"))
+                .andExpect(status().isOk());
+        // the events never time out, so wait for the stream to end before dispatching
+        result.getAsyncResult(10_000);
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/replay").param("speed", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/replay").param("depth", Integer.toString(Integer.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
+
+        // the events of a full replay
+        controller.orderBookService.startReplay(5, 1);
+        result = mockMvc.perform(get("/replay/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(10_000);
+        String events = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        // the subscriber gets every event from the one it joined at to the end
+        assertTrue(events.contains("event:nbbo\ndata:{\"symbol\":\"AAPL\""), events);
+        long first = Long.parseLong(events.substring("id:".length(), events.indexOf('\n')));
+        assertEquals(controller.orderBookService.replayStatus().getPublished() - first,
+                events.split("event:nbbo").length - 1);
+    }
+
+    @Test
+    public void nbboBatchTest() throws Exception {
+        MvcResult result = mockMvc.perform(post("/nbbo/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"depth\": 1, \"queries\": ["
+                                + "{\"symbol\": \"AAPL\", \"ts\": \"2021-02-18T09:58:59.298Z\"},"
+                                + "{\"symbol\": \"MSFT\", \"ts\": \"2021-02-18T09:58:59.298Z\"},"
+                                + "{\"symbol\": \"AAPL\", \"ts\": \"2021-02-18T09:58:59.262Z\"}]}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // the results come back in the order of the queries
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].bids[0].price").value(129.5))
+                .andExpect(jsonPath("$[1].symbol").value("MSFT"))
+                .andExpect(jsonPath("$[1].bids.length()").value(0))
+                .andExpect(jsonPath("$[2].bids[0].price").value(129.46))
+                .andExpect(jsonPath("$[2].pointInTime").value("2021-02-18T09:58:59.262Z"));
+    }
+
+    @Test
+    public void nbboBatchBadRequestTest() throws Exception {
+        mockMvc.perform(post("/nbbo/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"queries\": [{\"symbol\": \"AAPL\", \"ts\": \"yesterday\"}]}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/nbbo/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"depth\": 1000000000, \"queries\": "
+                                + "[{\"symbol\": \"AAPL\", \"ts\": \"2021-02-18T09:58:59.298Z\"}]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void nbboSeriesTest() throws Exception {
+        MvcResult result = mockMvc.perform(get("/nbbo/series").param("symbol", "AAPL")
+                        .param("from", "2021-02-18T09:58:59.262Z").param("to", "2021-02-18T09:58:59.298Z"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        // one result per line, starting with the best quotes at the start of the range
+        String[] lines = body.split("\n");
+        assertTrue(lines.length > 1);
+        JsonNode first = new ObjectMapper().readTree(lines[0]);
+        assertEquals("2021-02-18T09:58:59.262Z", first.get("pointInTime").asText());
+        assertEquals(129.46, first.get("bids").get(0).get("price").asDouble());
+    }
+
+    @Test
+    public void nbboSeriesCsvTest() throws Exception {
+        MvcResult result = mockMvc.perform(get("/nbbo/series").param("symbol", "AAPL")
+                        .param("from", "2021-02-18T09:58:59.262Z").param("to", "2021-02-18T09:58:59.298Z")
+                        .param("depth", "1").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals("symbol,pointInTime,level,bidPrice,bidSize,bidMarketCenter,askPrice,askSize,askMarketCenter",
+                lines[0]);
+        assertTrue(lines[1].startsWith("AAPL,2021-02-18T09:58:59.262Z,1,129.46,"), lines[1]);
+    }
+
+    @Test
+    public void nbboSeriesBadRequestTest() throws Exception {
+        mockMvc.perform(get("/nbbo/series").param("symbol", "AAPL")
+                        .param("from", "2021-02-18T09:58:59.298Z").param("to", "2021-02-18T09:58:59.262Z"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/nbbo/series").param("symbol", "AAPL")
+                        .param("from", "2021-02-18T09:58:59.262Z").param("to", "2021-02-18T09:58:59.298Z")
+                        .param("format", "xml"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/nbbo/series").param("symbol", "AAPL")
+                        .param("from", "2021-02-18T09:58:59.262Z").param("to", "2021-02-18T09:58:59.298Z")
+                        .param("depth", Integer.toString(Integer.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,170 @@
+package com.spotts.orderbook.ingest;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import com.spotts.orderbook.model.QuoteStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressedQuoteLoaderTest {
+    private static final Path QUOTES = Paths.get("src/test/resources/quotes_subset.csv");
+
+    private static Path compress(byte[] bytes, String suffix) throws IOException {
+        Path file = Files.createTempFile("quotes", suffix);
+        try (OutputStream out = suffix.endsWith(".zst")
+                ? new ZstdOutputStream(Files.newOutputStream(file))
+                : new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(bytes);
+        }
+        return file;
+    }
+
+    @Test
+    public void gzipAndZstdMatchCsvTest() throws IOException, ParseException {
+        QuoteStore expected = new ParallelQuoteLoader(1).load(QUOTES);
+        for (String suffix : new String[]{".csv.gz", ".csv.zst"}) {
+            Path file = compress(Files.readAllBytes(QUOTES), suffix);
+            try {
+                assertTrue(CompressedQuoteLoader.isCompressed(file));
+                // blocks of a few lines each, and of less than a line so the blocks have to grow
+                for (int blockSize : new int[]{200, 16}) {
+                    QuoteStore actual = new CompressedQuoteLoader(4, blockSize).load(file);
+                    assertEquals(expected.size(), actual.size());
+                    for (int row = 0; row < expected.size(); row++) {
+                        assertEquals(expected.toQuote(row), actual.toQuote(row));
+                    }
+                }
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * @return the quotes of the test resource repeated, so they fill many small blocks
+     */
+    private static byte[] repeatedQuotes(int times) throws IOException {
+        List<String> lines = Files.readAllLines(QUOTES);
+        StringBuilder quotes = new StringBuilder(lines.get(0)).append('\n');
+        for (int i = 0; i < times; i++) {
+            lines.subList(1, lines.size()).forEach(line -> quotes.append(line).append('\n'));
+        }
+        return quotes.toString().getBytes();
+    }
+
+    @Test
+    public void slowParserHoldsBackDecompressorTest() throws IOException, ParseException {
+        Path file = compress(repeatedQuotes(50), ".csv.gz");
+        AtomicInteger parsed = new AtomicInteger();
+        AtomicInteger parsedWhileStalled = new AtomicInteger(-1);
+        try {
+            // the first block takes a long time, so the later blocks are parsed ahead of it
+            QuoteStore store = new CompressedQuoteLoader(2, 1_000, columnFields -> new QuoteLineParser(columnFields) {
+                @Override
+                public int parseLines(byte[] bytes, int from, int to, QuoteStore chunk, long fileOffset)
+                        throws QuoteParseException {
+                    if (parsed.getAndIncrement() == 0) {
+                        sleep(300);
+                        parsedWhileStalled.set(parsed.get() - 1);
+                    }
+                    return super.parseLines(bytes, from, to, chunk, fileOffset);
+                }
+            }).load(file);
+            assertEquals(50 * 19, store.size());
+            assertEquals(new ParallelQuoteLoader(1).load(QUOTES).toQuote(0), store.toQuote(0));
+            // the blocks parsed ahead wait for the first one rather than piling up
+            assertTrue(parsedWhileStalled.get() <= 2 + 2, "parsed " + parsedWhileStalled.get() + " blocks ahead");
+            assertTrue(parsed.get() > 50, "parsed " + parsed.get() + " blocks");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void failingParserStopsLoadTest() throws IOException {
+        Path file = compress(repeatedQuotes(50), ".csv.zst");
+        AtomicInteger parsed = new AtomicInteger();
+        IllegalArgumentException failure = new IllegalArgumentException("parser failed");
+        try {
+            // a bug rather than a malformed line, in one of the parsers part way through the file
+            CompressedQuoteLoader loader = new CompressedQuoteLoader(3, 500, columnFields -> new QuoteLineParser(columnFields) {
+                @Override
+                public int parseLines(byte[] bytes, int from, int to, QuoteStore chunk, long fileOffset)
+                        throws QuoteParseException {
+                    if (parsed.incrementAndGet() == 20) {
+                        throw failure;
+                    }
+                    return super.parseLines(bytes, from, to, chunk, fileOffset);
+                }
+            });
+            IllegalStateException e = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> assertThrows(IllegalStateException.class, () -> loader.load(file)));
+            assertSame(failure, e.getCause());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void crlfAndBlankLinesTest() throws IOException, ParseException {
+        String lines = new String(Files.readAllBytes(QUOTES)).replace("\n", "\r\n\r\n");
+        Path file = compress(lines.getBytes(), ".csv.gz");
+        try {
+            QuoteStore store = new CompressedQuoteLoader(2, 100).load(file);
+            assertEquals(19, store.size());
+            assertEquals("UQDF1", store.toQuote(18).getSipFeed());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void malformedLineTest() throws IOException {
+        Path file = compress(("symbol,marketCenter,bidQuantity,askQuantity,bidPrice,askPrice,startTime,"
+                + "endTime,quoteConditions,sipfeedSeq,sipfeed\n"
+                + "AAPL,H,100,100,129.46,130.16,2021-02-18T09:58:59.262Z,2021-02-18T09:59:00.202Z,R,10000129,UQDF1\n"
+                + "AAPL,H,1x0,100,129.46,130.16,2021-02-18T09:58:59.262Z,2021-02-18T09:59:00.202Z,R,10000130,UQDF1\n")
+                .getBytes(), ".csv.zst");
+        try {
+            ParseException e = assertThrows(ParseException.class, () -> new CompressedQuoteLoader(2, 64).load(file));
+            assertTrue(e.getMessage().contains("bidQuantity"), e.getMessage());
+            // the offset is in the decompressed file
+            assertTrue(e.getMessage().contains("byte offset 211"), e.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void emptyFileTest() throws IOException, ParseException {
+        Path file = compress(new byte[0], ".csv.gz");
+        try {
+            assertEquals(0, new CompressedQuoteLoader(2).load(file).size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.spotts.orderbook.ingest;
+
+import com.spotts.orderbook.model.QuoteStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelQuoteLoaderTest {
+    private static final Path QUOTES = Paths.get("src/test/resources/quotes_subset.csv");
+
+    @Test
+    public void smallChunksKeepFileOrderTest() throws IOException, ParseException {
+        QuoteStore expected = new ParallelQuoteLoader(1, Integer.MAX_VALUE).load(QUOTES);
+        // chunks of a few lines each, parsed on several threads
+        QuoteStore actual = new ParallelQuoteLoader(4, 200).load(QUOTES);
+
+        assertEquals(19, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.toQuote(row), actual.toQuote(row));
+        }
+    }
+
+    @Test
+    public void crlfAndBlankLinesTest() throws IOException, ParseException {
+        Path file = Files.createTempFile("quotes", ".csv");
+        try {
+            String lines = new String(Files.readAllBytes(QUOTES)).replace("\n", "\r\n\r\n");
+            Files.write(file, lines.getBytes());
+            QuoteStore store = new ParallelQuoteLoader(2, 100).load(file);
+            assertEquals(19, store.size());
+            assertEquals("UQDF1", store.toQuote(18).getSipFeed());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void malformedLineTest() throws IOException {
+        Path file = Files.createTempFile("quotes", ".csv");
+        try {
+            Files.write(file, ("symbol,marketCenter,bidQuantity,askQuantity,bidPrice,askPrice,startTime,"
+                    + "endTime,quoteConditions,sipfeedSeq,sipfeed\n"
+                    + "AAPL,H,100,100,129.46,130.16,2021-02-18T09:58:59.262Z,2021-02-18T09:59:00.202Z,R,10000129,UQDF1\n"
+                    + "AAPL,H,1x0,100,129.46,130.16,2021-02-18T09:58:59.262Z,2021-02-18T09:59:00.202Z,R,10000130,UQDF1\n")
+                    .getBytes());
+            ParseException e = assertThrows(ParseException.class, () -> new ParallelQuoteLoader(2).load(file));
+            assertTrue(e.getMessage().contains("bidQuantity"), e.getMessage());
+            assertTrue(e.getMessage().contains("byte offset 211"), e.getMessage());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void slowParserHoldsBackChunksTest() throws IOException, ParseException {
+        Path file = repeatedQuotes(50);
+        AtomicInteger parsed = new AtomicInteger();
+        AtomicInteger parsedWhileStalled = new AtomicInteger(-1);
+        try {
+            // the first chunk takes a long time, so the later chunks are parsed ahead of it
+            QuoteStore store = new ParallelQuoteLoader(2, 1_000, columnFields -> new QuoteLineParser(columnFields) {
+                @Override
+                public int parseLines(byte[] bytes, int from, int to, QuoteStore chunk, long fileOffset)
+                        throws QuoteParseException {
+                    if (parsed.getAndIncrement() == 0) {
+                        sleep(300);
+                        parsedWhileStalled.set(parsed.get() - 1);
+                    }
+                    return super.parseLines(bytes, from, to, chunk, fileOffset);
+                }
+            }).load(file);
+            assertEquals(50 * 19, store.size());
+            assertEquals(new ParallelQuoteLoader(1).load(QUOTES).toQuote(0), store.toQuote(0));
+            // the chunks parsed ahead wait for the first one rather than piling up
+            assertTrue(parsedWhileStalled.get() <= 2 + 2, "parsed " + parsedWhileStalled.get() + " chunks ahead");
+            assertTrue(parsed.get() > 50, "parsed " + parsed.get() + " chunks");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void failingParserStopsLoadTest() throws IOException {
+        Path file = repeatedQuotes(50);
+        AtomicInteger parsed = new AtomicInteger();
+        IllegalArgumentException failure = new IllegalArgumentException("parser failed");
+        try {
+            // a bug rather than a malformed line, in one of the parsers part way through the file
+            ParallelQuoteLoader loader = new ParallelQuoteLoader(3, 500, columnFields -> new QuoteLineParser(columnFields) {
+                @Override
+                public int parseLines(byte[] bytes, int from, int to, QuoteStore chunk, long fileOffset)
+                        throws QuoteParseException {
+                    if (parsed.incrementAndGet() == 20) {
+                        throw failure;
+                    }
+                    return super.parseLines(bytes, from, to, chunk, fileOffset);
+                }
+            });
+            IllegalStateException e = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> assertThrows(IllegalStateException.class, () -> loader.load(file)));
+            assertSame(failure, e.getCause());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * @return a temporary file with the header of the test quotes followed by their lines repeated
+     */
+    private static Path repeatedQuotes(int times) throws IOException {
+        List<String> lines = Files.readAllLines(QUOTES);
+        StringBuilder quotes = new StringBuilder(lines.get(0)).append('\n');
+        for (int i = 0; i < times; i++) {
+            lines.subList(1, lines.size()).forEach(line -> quotes.append(line).append('\n'));
+        }
+        Path file = Files.createTempFile("quotes", ".csv");
+        Files.write(file, quotes.toString().getBytes());
+        return file;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.spotts.orderbook.ingest;
+
+import com.spotts.orderbook.model.Quote;
+import com.spotts.orderbook.model.QuoteStore;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.text.ParseException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QuoteLineParserTest {
+    private static final String HEADER = "symbol,marketCenter,bidQuantity,askQuantity,bidPrice,askPrice,startTime,"
+            + "endTime,quoteConditions,sipfeedSeq,sipfeed";
+
+    private static Quote parse(String header, String line) throws ParseException {
+        QuoteStore store = new QuoteStore();
+        return store.toQuote(new QuoteLineParser(QuoteLineParser.readHeader(header)).parseLine(line, store));
+    }
+
+    @Test
+    public void quotedFieldsTest() throws ParseException {
+        Quote quote = parse(HEADER, "\"AAPL\",H,100,\"200\",129.46,130.16,2021-02-18T09:58:59.262Z,"
+                + "2021-02-18T09:59:00.202Z,\"R,O\",10000129,\"UQDF \"\"1\"\"\"");
+        assertEquals("AAPL", quote.getSymbol());
+        assertEquals(BigInteger.valueOf(200), quote.getAskQuantity());
+        // the comma and the doubled quotes are part of their fields
+        assertEquals("R,O", quote.getQuoteConditions());
+        assertEquals("UQDF \"1\"", quote.getSipFeed());
+        assertEquals("10000129", quote.getSipFeedSeq());
+    }
+
+    @Test
+    public void quotedHeaderAndOtherColumnsTest() throws ParseException {
+        // a column the book doesn't use can hold commas without shifting the quote fields
+        Quote quote = parse("\"note, free text\"," + HEADER,
+                "\"a, b \"\"and\"\" c\",AAPL,H,100,100,129.46,130.16,2021-02-18T09:58:59.262Z,"
+                        + "2021-02-18T09:59:00.202Z,R,10000129,UQDF1");
+        assertEquals("AAPL", quote.getSymbol());
+        assertEquals("UQDF1", quote.getSipFeed());
+    }
+
+    @Test
+    public void numbersOutOfRangeTest() throws ParseException {
+        QuoteLineParser parser = new QuoteLineParser(QuoteLineParser.readHeader(HEADER));
+        QuoteParseException quantity = assertThrows(QuoteParseException.class, () -> parser.parseLine(
+                "AAPL,H,100,2147483648,129.46,130.16,2021-02-18T09:58:59.262Z,2021-02-18T09:59:00.202Z,R,1,UQDF1",
+                new QuoteStore()));
+        assertEquals("askQuantity", quantity.getField());
+        QuoteParseException price = assertThrows(QuoteParseException.class, () -> parser.parseLine(
+                "AAPL,H,100,100,99999999999999.46,130.16,2021-02-18T09:58:59.262Z,2021-02-18T09:59:00.202Z,R,1,UQDF1",
+                new QuoteStore()));
+        assertEquals("bidPrice", price.getField());
+    }
+
+    @Test
+    public void malformedQuotesTest() throws ParseException {
+        QuoteLineParser parser = new QuoteLineParser(QuoteLineParser.readHeader(HEADER));
+        QuoteParseException unclosed = assertThrows(QuoteParseException.class, () -> parser.parseLine(
+                "\"AAPL,H,100,100,129.46,130.16,2021-02-18T09:58:59.262Z,2021-02-18T09:59:00.202Z,R,1,UQDF1",
+                new QuoteStore()));
+        assertEquals(QuoteParseException.COLUMNS, unclosed.getField());
+        QuoteParseException trailing = assertThrows(QuoteParseException.class, () -> parser.parseLine(
+                "\"AAPL\"X,H,100,100,129.46,130.16,2021-02-18T09:58:59.262Z,2021-02-18T09:59:00.202Z,R,1,UQDF1",
+                new QuoteStore()));
+        assertEquals(QuoteParseException.COLUMNS, trailing.getField());
+    }
+}
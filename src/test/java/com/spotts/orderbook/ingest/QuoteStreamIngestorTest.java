@@ -0,0 +1,97 @@
+package com.spotts.orderbook.ingest;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.service.OrderBookService;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QuoteStreamIngestorTest {
+    private static final Path QUOTES = Paths.get("src/test/resources/quotes_subset.csv");
+
+    @Test
+    public void replayMatchesFileBuildTest() throws Exception {
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(QUOTES.toString());
+        context.setResultLimit(2);
+        OrderBookService fileService = new OrderBookService(context);
+        fileService.buildOrderBook();
+
+        // replay the same file through an in-process queue into an empty book
+        OrderBookService streamService = new OrderBookService(new OrderBookContext());
+        QueueQuoteSource source = new QueueQuoteSource(4);
+        QuoteStreamIngestor ingestor = streamService.startStreaming(source);
+
+        // a reader queries while the quotes arrive and only ever sees more live quotes
+        AtomicReference<Throwable> readerError = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            int lastSize = 0;
+            try {
+                while (!source.isExhausted()) {
+                    int size = streamService.getLiveQuotes("AAPL", "2021-02-18T09:58:59.298Z").size();
+                    assertTrue(size >= lastSize);
+                    lastSize = size;
+                }
+            } catch (Throwable t) {
+                readerError.set(t);
+            }
+        });
+        reader.start();
+        new Thread(new CsvReplay(QUOTES, source)).start();
+
+        assertTrue(ingestor.awaitCompletion(10, TimeUnit.SECONDS));
+        reader.join();
+        assertNull(readerError.get());
+        assertEquals(19, ingestor.getQuoteCount());
+
+        for (int millis = 255; millis <= 320; millis++) {
+            String pointInTime = String.format("2021-02-18T09:58:59.%03dZ", millis);
+            assertEquals(fileService.getLiveQuotes("AAPL", pointInTime),
+                    streamService.getLiveQuotes("AAPL", pointInTime), pointInTime);
+        }
+    }
+
+    @Test
+    public void fileTailTest() throws IOException, InterruptedException, ParseException {
+        Path file = Files.createTempFile("quotes", ".csv");
+        List<String> lines = Files.readAllLines(QUOTES);
+        try (FileTailQuoteSource source = new FileTailQuoteSource(file)) {
+            OrderBookService streamService = new OrderBookService(new OrderBookContext());
+            QuoteStreamIngestor ingestor = streamService.startStreaming(source);
+
+            // the header and first quote, then a partly written line
+            Files.write(file, (lines.get(0) + "\n" + lines.get(1) + "\n" + lines.get(2).substring(0, 10))
+                    .getBytes(), StandardOpenOption.APPEND);
+            waitForQuotes(ingestor, 1);
+            assertEquals(1, streamService.getLiveQuotes("AAPL", "2021-02-18T09:58:59.262Z").size());
+
+            // finishing the line adds the second quote
+            Files.write(file, (lines.get(2).substring(10) + "\n").getBytes(), StandardOpenOption.APPEND);
+            waitForQuotes(ingestor, 2);
+            assertEquals(2, streamService.getLiveQuotes("AAPL", "2021-02-18T09:58:59.266Z").size());
+            streamService.stopStreaming();
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void waitForQuotes(QuoteStreamIngestor ingestor, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (ingestor.getQuoteCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, ingestor.getQuoteCount());
+    }
+}
@@ -0,0 +1,111 @@
+package com.spotts.orderbook.model;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.ingest.ParallelQuoteLoader;
+import com.spotts.orderbook.service.OrderBookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QuoteSnapshotTest {
+    private Path directory;
+    private Path quotes;
+    private Path snapshot;
+
+    @BeforeEach
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+        quotes = directory.resolve("quotes.csv");
+        Files.copy(Paths.get("src/test/resources/quotes_subset.csv"), quotes);
+        snapshot = directory.resolve("quotes.snapshot");
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void roundTripTest() throws IOException, ParseException {
+        QuoteStore expected = new ParallelQuoteLoader(1).load(quotes);
+        QuoteSnapshot.write(expected, snapshot, quotes);
+        QuoteStore actual = QuoteSnapshot.read(snapshot, quotes);
+
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.toQuote(row), actual.toQuote(row));
+        }
+        // the dictionaries keep their ids, so new quotes can still be added
+        assertEquals(expected.getSymbols().lookup("MSFT"), actual.getSymbols().lookup("MSFT"));
+        int row = actual.add(actual.getSymbols().encode("IBM"), 0, 100, 100, 1, 2, 3, 4, 0, 5, 0);
+        assertEquals("IBM", actual.toQuote(row).getSymbol());
+    }
+
+    @Test
+    public void staleSnapshotTest() throws IOException, ParseException {
+        QuoteSnapshot.write(new ParallelQuoteLoader(1).load(quotes), snapshot, quotes);
+        Files.setLastModifiedTime(quotes, FileTime.fromMillis(Files.getLastModifiedTime(quotes).toMillis() + 1000));
+        IOException e = assertThrows(IOException.class, () -> QuoteSnapshot.read(snapshot, quotes));
+        assertTrue(e.getMessage().contains("stale"), e.getMessage());
+    }
+
+    @Test
+    public void corruptSnapshotTest() throws IOException, ParseException {
+        QuoteSnapshot.write(new ParallelQuoteLoader(1).load(quotes), snapshot, quotes);
+        byte[] bytes = Files.readAllBytes(snapshot);
+
+        // a flipped bit in the last column
+        bytes[bytes.length - 12] ^= 1;
+        Files.write(snapshot, bytes);
+        IOException e = assertThrows(IOException.class, () -> QuoteSnapshot.read(snapshot, quotes));
+        assertTrue(e.getMessage().contains("checksum"), e.getMessage());
+
+        // a snapshot cut short
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length / 2));
+        e = assertThrows(IOException.class, () -> QuoteSnapshot.read(snapshot, quotes));
+        assertTrue(e.getMessage().contains("corrupt"), e.getMessage());
+    }
+
+    @Test
+    public void serviceFallsBackToCsvTest() throws IOException, ParseException {
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotes.toString());
+        context.setResultLimit(5);
+        context.setSnapshotPath(snapshot.toString());
+
+        // the first build parses the csv and writes the snapshot, the second reads it
+        OrderBookService parsed = new OrderBookService(context);
+        parsed.buildOrderBook();
+        assertTrue(Files.exists(snapshot));
+        OrderBookService restored = new OrderBookService(context);
+        restored.buildOrderBook();
+        String pointInTime = "2021-02-18T09:58:59.298Z";
+        assertEquals(parsed.pointInTimeResults("AAPL", pointInTime), restored.pointInTimeResults("AAPL", pointInTime));
+
+        // a corrupt snapshot is replaced by a new one written from the csv
+        byte[] bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(snapshot, bytes);
+        OrderBookService rebuilt = new OrderBookService(context);
+        rebuilt.buildOrderBook();
+        assertEquals(parsed.pointInTimeResults("AAPL", pointInTime), rebuilt.pointInTimeResults("AAPL", pointInTime));
+        assertNotEquals(bytes[bytes.length - 1], Files.readAllBytes(snapshot)[bytes.length - 1]);
+    }
+}
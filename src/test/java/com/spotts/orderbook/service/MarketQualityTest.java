@@ -0,0 +1,192 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.MarketQuality;
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.model.SymbolQuoteIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MarketQualityTest {
+    private Path quotesFile;
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        if (quotesFile != null) {
+            Files.delete(quotesFile);
+        }
+    }
+
+    private OrderBookService bookService(List<String> lines, boolean lazySymbols)
+            throws IOException, ParseException {
+        quotesFile = Files.createTempFile("quotes", ".csv");
+        List<String> file = new ArrayList<>();
+        file.add(String.join(",", OrderBookContext.HEADERS));
+        file.addAll(lines);
+        Files.write(quotesFile, file);
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotesFile.toString());
+        context.setLazySymbols(lazySymbols);
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        return bookService;
+    }
+
+    private static String quote(String marketCenter, String bid, String ask, int startMillis, int endMillis,
+                                String condition) {
+        return String.join(",", "AAPL", marketCenter, "100", "100", bid, ask,
+                SyntheticQuotes.timestamp(startMillis), SyntheticQuotes.timestamp(endMillis), condition,
+                Integer.toString(startMillis), "UQDF1");
+    }
+
+    @Test
+    public void marketQualityTest() throws IOException, ParseException {
+        // K locks the market from 1000 ms, and P crosses it from 1200 to 1299 ms
+        OrderBookService bookService = bookService(List.of(
+                quote("Q", "10.00", "10.05", 0, 999, "R"),
+                quote("K", "10.00", "10.02", 500, 1499, "R"),
+                quote("Z", "10.02", "10.03", 1000, 1999, "A"),
+                quote("P", "10.04", "10.06", 1200, 1299, "A")), false);
+
+        MarketQuality quality = bookService.marketQuality("AAPL");
+        assertEquals("2021-02-18T09:00:00.000Z", quality.getFrom());
+        assertEquals("2021-02-18T09:00:01.999Z", quality.getTo());
+        assertEquals(4, quality.getQuoteCount());
+        // both ends of a quote are inclusive, so the quotes last a nanosecond past their end
+        assertEquals(1_999_000_001L, quality.getTwoSidedNanos());
+        assertEquals(400_000_000L, quality.getLockedNanos());
+        assertEquals(99_000_001L, quality.getCrossedNanos());
+        assertEquals(0, new BigDecimal("0.01902").compareTo(quality.getAverageSpread()));
+        assertEquals(List.of("Q=999000001", "Z=900000000", "K=500000000", "P=99000001"),
+                entries(quality.getNbbNanos()));
+        assertEquals(List.of("K=999000001", "Q=500000000", "Z=500000000"), entries(quality.getNboNanos()));
+        assertEquals(List.of("A=2", "R=2"), entries(quality.getQuoteConditions()));
+
+        assertEquals(List.of(quality), bookService.marketQuality());
+
+        MarketQuality unknown = bookService.marketQuality("MSFT");
+        assertEquals(0, unknown.getQuoteCount());
+        assertNull(unknown.getFrom());
+        assertNull(unknown.getAverageSpread());
+        assertEquals(Map.of(), unknown.getNbbNanos());
+    }
+
+    @Test
+    public void sweepMatchesBruteForceTest() throws IOException, ParseException {
+        quotesFile = Files.createTempFile("quotes", ".csv");
+        SyntheticQuotes.write(quotesFile, 2_000, new Random(5));
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotesFile.toString());
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+
+        List<MarketQuality> results = bookService.marketQuality();
+        assertEquals(SyntheticQuotes.SYMBOLS.length, results.size());
+        QuoteStore store = bookService.orderBook.getQuoteStore();
+        for (MarketQuality quality : results) {
+            SymbolQuoteIndex index = bookService.orderBook.getSymbolIndex().get(quality.getSymbol());
+            assertEquals(bruteForce(store, index), List.of(quality.getTwoSidedNanos(), quality.getLockedNanos(),
+                    quality.getCrossedNanos(), quality.getAverageSpread(), entries(quality.getNbbNanos()),
+                    entries(quality.getNboNanos())));
+            assertEquals(Map.of("R", (long) index.size()), quality.getQuoteConditions());
+        }
+    }
+
+    @Test
+    public void lazySymbolsTest() throws IOException, ParseException {
+        OrderBookService bookService = bookService(List.of(quote("Q", "10.00", "10.05", 0, 999, "R")), true);
+        assertThrows(IllegalStateException.class, bookService::marketQuality);
+    }
+
+    private static List<String> entries(Map<String, Long> map) {
+        List<String> entries = new ArrayList<>();
+        map.forEach((key, value) -> entries.add(key + "=" + value));
+        return entries;
+    }
+
+    /**
+     * Works the market quality out the slow way, finding the live quotes of every
+     * stretch between two quotes starting or ending by scanning all of them.
+     */
+    private static List<Object> bruteForce(QuoteStore store, SymbolQuoteIndex index) {
+        List<Integer> rows = new ArrayList<>();
+        TreeSet<Long> times = new TreeSet<>();
+        for (int i = 0; i < index.size(); i++) {
+            int row = index.compacted().rowAt(i);
+            rows.add(row);
+            times.add(store.getStartTime(row));
+            times.add(store.getEndTime(row) + 1);
+        }
+        long twoSided = 0;
+        long locked = 0;
+        long crossed = 0;
+        BigDecimal weightedSpread = BigDecimal.ZERO;
+        Map<String, Long> nbb = new TreeMap<>();
+        Map<String, Long> nbo = new TreeMap<>();
+        Long[] bounds = times.toArray(new Long[0]);
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            long time = bounds[i];
+            long nanos = bounds[i + 1] - time;
+            long bestBid = Long.MIN_VALUE;
+            long bestAsk = Long.MAX_VALUE;
+            for (int row : rows) {
+                if (store.getStartTime(row) <= time && time <= store.getEndTime(row)) {
+                    bestBid = Math.max(bestBid, store.getBidPrice(row));
+                    bestAsk = Math.min(bestAsk, store.getAskPrice(row));
+                }
+            }
+            TreeSet<String> nbbCenters = new TreeSet<>();
+            TreeSet<String> nboCenters = new TreeSet<>();
+            for (int row : rows) {
+                if (store.getStartTime(row) <= time && time <= store.getEndTime(row)) {
+                    String marketCenter = store.getMarketCenters().decode(store.getMarketCenterId(row));
+                    if (store.getBidPrice(row) == bestBid) {
+                        nbbCenters.add(marketCenter);
+                    }
+                    if (store.getAskPrice(row) == bestAsk) {
+                        nboCenters.add(marketCenter);
+                    }
+                }
+            }
+            nbbCenters.forEach(marketCenter -> nbb.merge(marketCenter, nanos, Long::sum));
+            nboCenters.forEach(marketCenter -> nbo.merge(marketCenter, nanos, Long::sum));
+            if (!nbbCenters.isEmpty()) {
+                twoSided += nanos;
+                long spread = bestAsk - bestBid;
+                weightedSpread = weightedSpread.add(BigDecimal.valueOf(spread * nanos));
+                locked += spread == 0 ? nanos : 0;
+                crossed += spread < 0 ? nanos : 0;
+            }
+        }
+        BigDecimal averageSpread = QuoteStore.toPrice(weightedSpread
+                .divide(BigDecimal.valueOf(twoSided), 0, RoundingMode.HALF_UP).longValue());
+        return List.of(twoSided, locked, crossed, averageSpread, entries(largestFirst(nbb)),
+                entries(largestFirst(nbo)));
+    }
+
+    private static Map<String, Long> largestFirst(Map<String, Long> totals) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        totals.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(e -> result.put(e.getKey(), e.getValue()));
+        return result;
+    }
+}
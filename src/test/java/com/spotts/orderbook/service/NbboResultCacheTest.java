@@ -0,0 +1,106 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.ingest.QueueQuoteSource;
+import com.spotts.orderbook.ingest.QuoteStreamIngestor;
+import com.spotts.orderbook.model.NbboResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NbboResultCacheTest {
+    private static final String QUOTES = "src/test/resources/quotes_subset.csv";
+    private static final String POINT_IN_TIME = "2021-02-18T09:58:59.298Z";
+
+    private static OrderBookContext context(int resultCacheSize) {
+        OrderBookContext context = new OrderBookContext();
+        context.setResultLimit(5);
+        context.setResultCacheSize(resultCacheSize);
+        return context;
+    }
+
+    @Test
+    public void repeatedQueriesAreCachedTest() throws IOException, ParseException {
+        OrderBookContext context = context(2);
+        context.setFilePath(QUOTES);
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        NbboResultCache cache = bookService.getResultCache();
+
+        NbboResult first = bookService.nbbo("AAPL", POINT_IN_TIME);
+        assertSame(first, bookService.nbbo("AAPL", POINT_IN_TIME));
+        assertEquals(first, bookService.nbbo("AAPL", POINT_IN_TIME, 5));
+        // another depth is another result
+        assertEquals(1, bookService.nbbo("AAPL", POINT_IN_TIME, 1).getBids().size());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio());
+        assertTrue(cache.getSavedNanos() > 0);
+
+        // the oldest result is evicted past the maximum
+        bookService.nbbo("AAPL", "2021-02-18T09:58:59.300Z");
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        bookService.nbbo("AAPL", POINT_IN_TIME);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void expiredResultsAreQueriedAgainTest() throws InterruptedException {
+        NbboResultCache cache = new NbboResultCache(10, 1);
+        AtomicInteger queries = new AtomicInteger();
+        NbboResult result = new NbboResult("AAPL", POINT_IN_TIME, List.of(), List.of());
+        cache.get("AAPL", POINT_IN_TIME, 0, 5, () -> {
+            queries.incrementAndGet();
+            return result;
+        });
+        Thread.sleep(5);
+        cache.get("AAPL", POINT_IN_TIME, 0, 5, () -> {
+            queries.incrementAndGet();
+            return result;
+        });
+        assertEquals(2, queries.get());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void streamedQuotesInvalidateResultsTest() throws Exception {
+        OrderBookContext fileContext = context(0);
+        fileContext.setFilePath(QUOTES);
+        OrderBookService fileService = new OrderBookService(fileContext);
+        fileService.buildOrderBook();
+
+        OrderBookService streamService = new OrderBookService(context(1_000));
+        QueueQuoteSource source = new QueueQuoteSource(4);
+        QuoteStreamIngestor ingestor = streamService.startStreaming(source);
+        List<String> lines = Files.readAllLines(Paths.get(QUOTES));
+        for (int i = 1; i < lines.size(); i++) {
+            // cache every point in time, then add a quote that changes some of them
+            for (int millis = 255; millis <= 320; millis++) {
+                streamService.nbbo("AAPL", String.format("2021-02-18T09:58:59.%03dZ", millis));
+            }
+            source.publish(lines.get(i));
+            while (ingestor.getQuoteCount() < i) {
+                Thread.sleep(1);
+            }
+        }
+        source.close();
+
+        for (int millis = 255; millis <= 320; millis++) {
+            String pointInTime = String.format("2021-02-18T09:58:59.%03dZ", millis);
+            assertEquals(fileService.nbbo("AAPL", pointInTime), streamService.nbbo("AAPL", pointInTime));
+        }
+        assertTrue(streamService.getResultCache().getInvalidationCount() > 0);
+        assertTrue(streamService.getResultCache().getHitCount() > 0);
+        streamService.stopStreaming();
+    }
+}
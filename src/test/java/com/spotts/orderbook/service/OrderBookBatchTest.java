@@ -0,0 +1,87 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.NbboQuery;
+import com.spotts.orderbook.model.NbboResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderBookBatchTest {
+    private static final int QUOTE_COUNT = 40_000;
+    private static final int QUERY_COUNT = 20_000;
+
+    private static Path quotesFile;
+    private static OrderBookContext context;
+    private static List<NbboQuery> queries;
+
+    @BeforeAll
+    public static void init() throws IOException {
+        quotesFile = Files.createTempFile("quotes", ".csv");
+        SyntheticQuotes.write(quotesFile, QUOTE_COUNT, new Random(42));
+        context = new OrderBookContext();
+        context.setFilePath(quotesFile.toString());
+        context.setResultLimit(5);
+
+        // queries in random order, including an unknown symbol and repeated times
+        Random random = new Random(7);
+        queries = new ArrayList<>();
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            String symbol = i % 100 == 0 ? "IBM"
+                    : SyntheticQuotes.SYMBOLS[random.nextInt(SyntheticQuotes.SYMBOLS.length)];
+            queries.add(new NbboQuery(symbol, SyntheticQuotes.timestamp(random.nextInt(QUOTE_COUNT * 10))));
+        }
+    }
+
+    @AfterAll
+    public static void cleanUp() throws IOException {
+        Files.delete(quotesFile);
+    }
+
+    @Test
+    public void batchMatchesSingleQueriesTest() throws IOException, ParseException {
+        // queries in time order are answered with sweeps, the others with lookups
+        List<NbboQuery> timeOrdered = new ArrayList<>(queries);
+        timeOrdered.sort(Comparator.comparing(NbboQuery::getTs));
+        for (OrderBookContext.QueryMode queryMode : OrderBookContext.QueryMode.values()) {
+            context.setQueryMode(queryMode);
+            OrderBookService bookService = new OrderBookService(context);
+            bookService.buildOrderBook();
+            for (List<NbboQuery> batch : List.of(queries, timeOrdered)) {
+                for (int depth : new int[]{1, 5, 8}) {
+                    Iterator<NbboResult> results = bookService.nbboBatch(batch, depth);
+                    for (NbboQuery query : batch) {
+                        assertEquals(bookService.nbbo(query.getSymbol(), query.getTs(), depth), results.next());
+                    }
+                    assertFalse(results.hasNext());
+                }
+            }
+        }
+        context.setQueryMode(OrderBookContext.QueryMode.INDEX);
+    }
+
+    @Test
+    public void badTimestampFailsBatchTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        List<NbboQuery> badQueries = List.of(new NbboQuery("AAPL", "2021-02-18T09:00:01.000Z"),
+                new NbboQuery("AAPL", "2021-02-18 09:00:02"));
+        ParseException e = assertThrows(ParseException.class, () -> bookService.nbboBatch(badQueries, 5));
+        assertTrue(e.getMessage().startsWith("Query 1"), e.getMessage());
+    }
+}
@@ -0,0 +1,89 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.NbboResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs many NBBO queries at once against one book to check that concurrent
+ * callers always get their own correct results. ConcurrentQueryBenchmark in
+ * order-book-benchmarks measures how the throughput grows with the threads.
+ */
+public class OrderBookConcurrencyTest {
+    private static final int QUOTE_COUNT = 40_000;
+    private static final int QUERY_COUNT = 2_000;
+
+    private static Path quotesFile;
+    private static OrderBookService bookService;
+    private static String[] symbols;
+    private static String[] pointsInTime;
+    private static int[] depths;
+    private static NbboResult[] expected;
+
+    @BeforeAll
+    public static void init() throws IOException, ParseException {
+        quotesFile = Files.createTempFile("quotes", ".csv");
+        SyntheticQuotes.write(quotesFile, QUOTE_COUNT, new Random(42));
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotesFile.toString());
+        bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+
+        // the expected result of every query, answered one at a time
+        Random random = new Random(7);
+        symbols = new String[QUERY_COUNT];
+        pointsInTime = new String[QUERY_COUNT];
+        depths = new int[QUERY_COUNT];
+        expected = new NbboResult[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            symbols[i] = SyntheticQuotes.SYMBOLS[random.nextInt(SyntheticQuotes.SYMBOLS.length)];
+            pointsInTime[i] = SyntheticQuotes.timestamp(random.nextInt(QUOTE_COUNT * 10));
+            depths[i] = 1 + random.nextInt(10);
+            expected[i] = bookService.nbbo(symbols[i], pointsInTime[i], depths[i]);
+        }
+    }
+
+    @AfterAll
+    public static void cleanUp() throws IOException {
+        Files.delete(quotesFile);
+    }
+
+    @Test
+    public void concurrentQueriesTest() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            // every thread runs every query, starting at a different query
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                int offset = t * QUERY_COUNT / 16;
+                futures.add(pool.submit(() -> {
+                    for (int n = 0; n < QUERY_COUNT; n++) {
+                        int i = (offset + n) % QUERY_COUNT;
+                        assertEquals(expected[i], bookService.nbbo(symbols[i], pointsInTime[i], depths[i]));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.ingest.QueueQuoteSource;
+import com.spotts.orderbook.ingest.QuoteStreamIngestor;
+import com.spotts.orderbook.model.DepthResult;
+import com.spotts.orderbook.model.PriceLevel;
+import com.spotts.orderbook.model.Quote;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderBookDepthTest {
+    private static final int QUOTE_COUNT = 4_000;
+
+    private static Path quotesFile;
+    private static OrderBookService bookService;
+
+    @BeforeAll
+    public static void init() throws IOException, ParseException {
+        quotesFile = Files.createTempFile("quotes", ".csv");
+        SyntheticQuotes.write(quotesFile, QUOTE_COUNT, new Random(11));
+        bookService = new OrderBookService(context());
+        bookService.buildOrderBook();
+    }
+
+    @AfterAll
+    public static void cleanUp() throws IOException {
+        Files.delete(quotesFile);
+    }
+
+    private static OrderBookContext context() {
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotesFile.toString());
+        context.setResultLimit(3);
+        return context;
+    }
+
+    /**
+     * Collapses the live quotes at each price into a level the slow way, for
+     * checking the levels the service keeps.
+     */
+    private static List<String> expectedLevels(List<Quote> liveQuotes, boolean bids, int limit) {
+        Function<Quote, BigDecimal> price = bids ? Quote::getBidPrice : Quote::getAskPrice;
+        Function<Quote, BigInteger> size = bids ? Quote::getBidQuantity : Quote::getAskQuantity;
+        Comparator<BigDecimal> order = bids ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        TreeMap<BigDecimal, TreeMap<String, BigInteger>> levels = new TreeMap<>(order);
+        for (Quote quote : liveQuotes) {
+            levels.computeIfAbsent(price.apply(quote), p -> new TreeMap<>())
+                    .merge(quote.getMarketCenter(), size.apply(quote), BigInteger::add);
+        }
+        List<String> expected = new ArrayList<>();
+        for (Map.Entry<BigDecimal, TreeMap<String, BigInteger>> level : levels.entrySet()) {
+            if (expected.size() == limit) {
+                break;
+            }
+            BigInteger total = level.getValue().values().stream().reduce(BigInteger.ZERO, BigInteger::add);
+            expected.add(level.getKey().stripTrailingZeros() + " " + total + " " + level.getValue());
+        }
+        return expected;
+    }
+
+    private static List<String> describe(List<PriceLevel> levels) {
+        List<String> described = new ArrayList<>();
+        for (PriceLevel level : levels) {
+            described.add(level.getPrice().stripTrailingZeros() + " " + level.getSize() + " "
+                    + new TreeMap<>(level.getMarketCenters()));
+        }
+        return described;
+    }
+
+    private static void assertLevels(OrderBookService service, String symbol, String ts, int limit)
+            throws ParseException {
+        DepthResult depth = service.depth(symbol, ts, limit);
+        List<Quote> liveQuotes = service.getLiveQuotes(symbol, ts);
+        assertEquals(expectedLevels(liveQuotes, true, limit), describe(depth.getBids()), ts);
+        assertEquals(expectedLevels(liveQuotes, false, limit), describe(depth.getAsks()), ts);
+    }
+
+    @Test
+    public void levelsMatchLiveQuotesTest() throws ParseException {
+        PriceLevelCursors cursors = bookService.getPriceLevels();
+        long restarts = cursors.getRestartCount();
+        // forward in small steps advances the sweep
+        for (int millis = 2_000; millis < 4_000; millis += 7) {
+            for (String symbol : SyntheticQuotes.SYMBOLS) {
+                assertLevels(bookService, symbol, SyntheticQuotes.timestamp(millis), 5);
+            }
+        }
+        assertEquals(SyntheticQuotes.SYMBOLS.length, cursors.getRestartCount() - restarts);
+        // going back in time or jumping far ahead starts the sweep over
+        for (int millis : new int[]{30_000, 1_000, 39_000, 20_000, 20_001}) {
+            assertLevels(bookService, "AAPL", SyntheticQuotes.timestamp(millis), 50);
+        }
+        assertTrue(cursors.getAdvanceCount() > 0);
+        assertEquals(0, bookService.depth("AAPL", SyntheticQuotes.timestamp(5_000), 0).getBids().size());
+        assertTrue(bookService.depth("IBM", SyntheticQuotes.timestamp(5_000)).getBids().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.depth("AAPL", SyntheticQuotes.timestamp(5_000), -1));
+    }
+
+    @Test
+    public void levelsCollapseMarketCentersTest() throws IOException, ParseException {
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath("src/test/resources/quotes_subset.csv");
+        context.setResultLimit(2);
+        OrderBookService subset = new OrderBookService(context);
+        subset.buildOrderBook();
+
+        String ts = "2021-02-18T09:58:59.298Z";
+        DepthResult depth = subset.depth("AAPL", ts);
+        PriceLevel best = depth.getBids().get(0);
+        assertEquals(0, new BigDecimal("129.5").compareTo(best.getPrice()));
+        assertEquals(BigInteger.valueOf(600), best.getSize());
+        assertEquals(3, best.getQuoteCount());
+        // the market centers at a price come largest first
+        PriceLevel next = depth.getBids().get(1);
+        assertEquals(List.of("K", "Z", "Q", "P", "U", "X"), new ArrayList<>(next.getMarketCenters().keySet()));
+        assertEquals(BigInteger.valueOf(2_600), next.getMarketCenters().get("K"));
+        assertTrue(subset.pointInTimeLevels("AAPL", ts)
+                .contains("Best Bids: 129.5(600: Q 600); 129.49(3400: K 2600, Z 300, Q 200, P 100, U 100, X 100); "));
+    }
+
+    @Test
+    public void streamedQuotesRestartTheSweepTest() throws Exception {
+        OrderBookContext context = new OrderBookContext();
+        context.setResultLimit(3);
+        OrderBookService streamService = new OrderBookService(context);
+        QueueQuoteSource source = new QueueQuoteSource(16);
+        QuoteStreamIngestor ingestor = streamService.startStreaming(source);
+        List<String> lines = Files.readAllLines(quotesFile);
+        for (int i = 1; i <= 400; i++) {
+            source.publish(lines.get(i));
+            if (i % 50 == 0) {
+                while (ingestor.getQuoteCount() < i) {
+                    Thread.sleep(1);
+                }
+                // the queries keep going forward, so only a new quote can restart the sweep
+                for (int millis = i * 10 - 500; millis < i * 10; millis += 50) {
+                    for (String symbol : SyntheticQuotes.SYMBOLS) {
+                        assertLevels(streamService, symbol, SyntheticQuotes.timestamp(millis), 10);
+                    }
+                }
+            }
+        }
+        source.close();
+        assertTrue(ingestor.awaitCompletion(10, TimeUnit.SECONDS));
+        streamService.stopStreaming();
+    }
+}
@@ -0,0 +1,156 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.ingest.SymbolRanges;
+import com.spotts.orderbook.model.NbboQuery;
+import com.spotts.orderbook.model.NbboResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderBookLazySymbolsTest {
+    private static final int QUOTE_COUNT = 4_000;
+
+    private static Path quotesFile;
+    private static OrderBookService eager;
+
+    @BeforeAll
+    public static void init() throws IOException, ParseException {
+        quotesFile = Files.createTempFile("quotes", ".csv");
+        SyntheticQuotes.write(quotesFile, QUOTE_COUNT, new Random(7));
+        eager = new OrderBookService(context(2));
+        eager.buildOrderBook();
+    }
+
+    @AfterAll
+    public static void cleanUp() throws IOException {
+        Files.delete(quotesFile);
+    }
+
+    private static OrderBookContext context(int maxCachedSymbols) {
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotesFile.toString());
+        context.setResultLimit(3);
+        context.setMaxCachedSymbols(maxCachedSymbols);
+        return context;
+    }
+
+    private static OrderBookService lazy(int maxCachedSymbols) throws IOException, ParseException {
+        OrderBookContext context = context(maxCachedSymbols);
+        context.setLazySymbols(true);
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        return bookService;
+    }
+
+    @Test
+    public void lazyMatchesEagerTest() throws IOException, ParseException {
+        OrderBookService bookService = lazy(2);
+        List<NbboQuery> queries = new ArrayList<>();
+        for (int millis = 0; millis < QUOTE_COUNT * 10; millis += 997) {
+            for (String symbol : SyntheticQuotes.SYMBOLS) {
+                String ts = SyntheticQuotes.timestamp(millis);
+                assertEquals(eager.getLiveQuotes(symbol, ts), bookService.getLiveQuotes(symbol, ts));
+                assertEquals(eager.nbbo(symbol, ts), bookService.nbbo(symbol, ts));
+                queries.add(new NbboQuery(symbol, ts));
+            }
+        }
+        Iterator<NbboResult> results = bookService.nbboBatch(queries);
+        for (NbboQuery query : queries) {
+            assertEquals(eager.nbbo(query.getSymbol(), query.getTs()), results.next());
+        }
+        String from = SyntheticQuotes.timestamp(1_000);
+        String to = SyntheticQuotes.timestamp(9_000);
+        Iterator<NbboResult> series = bookService.nbboSeries("MSFT", from, to);
+        eager.nbboSeries("MSFT", from, to).forEachRemaining(result -> assertEquals(result, series.next()));
+        // an unknown symbol isn't loaded
+        assertTrue(bookService.getLiveQuotes("IBM", from).isEmpty());
+    }
+
+    @Test
+    public void symbolsAreLoadedOnFirstUseAndEvictedTest() throws IOException, ParseException {
+        OrderBookService bookService = lazy(2);
+        OrderBookCache<String> cache = bookService.getSymbolCache();
+        assertEquals(0, cache.getLoadedCount());
+
+        String ts = SyntheticQuotes.timestamp(5_000);
+        bookService.nbbo("AAPL", ts);
+        bookService.nbbo("AAPL", ts);
+        bookService.nbbo("MSFT", ts);
+        bookService.nbbo("AAPL", ts);
+        bookService.nbbo("TSLA", ts);
+        // MSFT was used least recently
+        assertEquals(2, cache.getLoadedCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getEvictionCount());
+        bookService.nbbo("MSFT", ts);
+        assertEquals(4, cache.getLoadCount());
+        assertTrue(cache.getLoadedBytes() > 0);
+    }
+
+    @Test
+    public void rangesOfSortedFileTest() throws IOException, ParseException {
+        SymbolRanges subset = SymbolRanges.scan(Paths.get("src/test/resources/quotes_subset.csv"));
+        assertEquals(List.of("AAPL"), subset.getSymbols());
+        assertEquals(19, subset.load("AAPL").size());
+        assertEquals(0, subset.load("MSFT").size());
+
+        // a file sorted by symbol has one range for each symbol
+        List<String> lines = Files.readAllLines(quotesFile);
+        Path sorted = Files.createTempFile("quotes", ".csv");
+        try {
+            List<String> body = lines.subList(1, lines.size()).stream()
+                    .sorted().collect(Collectors.toList());
+            body.add(0, lines.get(0));
+            Files.write(sorted, body);
+            SymbolRanges ranges = SymbolRanges.scan(sorted);
+            assertEquals(SyntheticQuotes.SYMBOLS.length, ranges.getSymbols().size());
+            for (String symbol : SyntheticQuotes.SYMBOLS) {
+                assertEquals(1, ranges.getRangeCount(symbol));
+                assertEquals(body.stream().filter(line -> line.startsWith(symbol + ",")).count(),
+                        ranges.load(symbol).size());
+            }
+        } finally {
+            Files.delete(sorted);
+        }
+    }
+
+    @Test
+    public void rangesOfTimeOrderedFileTest() throws IOException, ParseException {
+        // the synthetic file is in time order, so most lines are a range of their own
+        SymbolRanges ranges = SymbolRanges.scan(quotesFile);
+        List<String> lines = Files.readAllLines(quotesFile);
+        long rangeCount = 0;
+        for (String symbol : SyntheticQuotes.SYMBOLS) {
+            rangeCount += ranges.getRangeCount(symbol);
+            assertEquals(lines.stream().filter(line -> line.startsWith(symbol + ",")).count(),
+                    ranges.load(symbol).size());
+        }
+        assertTrue(rangeCount > QUOTE_COUNT / 2, "ranges " + rangeCount);
+        // one long per range, beside the dictionary of a few symbols
+        long dictionaryBytes = 16L + 8L * 16 + 128L * SyntheticQuotes.SYMBOLS.length;
+        assertTrue(ranges.estimatedBytes() <= 8 * rangeCount + dictionaryBytes, "bytes " + ranges.estimatedBytes());
+    }
+
+    @Test
+    public void lazyBookCannotStreamTest() throws IOException, ParseException {
+        OrderBookService bookService = lazy(2);
+        assertThrows(IllegalStateException.class, () -> bookService.startStreaming(null));
+    }
+}
@@ -0,0 +1,80 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.ingest.QueueQuoteSource;
+import com.spotts.orderbook.ingest.QuoteStreamIngestor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderBookMetricsTest {
+    private static final String QUOTES = "src/test/resources/quotes_subset.csv";
+    private static final String POINT_IN_TIME = "2021-02-18T09:58:59.298Z";
+
+    @Test
+    public void queryAndBookMetricsTest() throws Exception {
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(QUOTES);
+        context.setResultLimit(2);
+        context.setResultCacheSize(10);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OrderBookService bookService = new OrderBookService(context, registry);
+        OrderBookHealthIndicator health = new OrderBookHealthIndicator(bookService);
+        assertEquals(Status.DOWN, health.health().getStatus());
+
+        bookService.setUp();
+        assertEquals(Status.UP, health.health().getStatus());
+        assertEquals(19, registry.get("orderbook.ingest.rows").counter().count());
+        assertTrue(registry.get("orderbook.ingest.build.rows.per.second").gauge().value() > 0);
+        assertEquals(19, registry.get("orderbook.book.quotes").gauge().value());
+        assertEquals(19, registry.get("orderbook.book.symbol.quotes").tag("symbol", "AAPL").gauge().value());
+
+        int live = bookService.getLiveQuotes("AAPL", POINT_IN_TIME).size();
+        bookService.pointInTimeResults("AAPL", POINT_IN_TIME);
+        bookService.pointInTimeResults("AAPL", POINT_IN_TIME);
+        assertEquals(1, registry.get("orderbook.query.latency").tag("query", "getLiveQuotes").timer().count());
+        assertEquals(2, registry.get("orderbook.query.latency").tag("query", "pointInTimeResults").timer().count());
+        // the second query came from the result cache, so only two live sets were read
+        assertEquals(2, registry.get("orderbook.query.live.quotes").summary().count());
+        assertEquals(2 * live, registry.get("orderbook.query.live.quotes").summary().totalAmount());
+        assertEquals(0.5, registry.get("orderbook.cache.hit.ratio").tag("cache", "results").gauge().value());
+    }
+
+    @Test
+    public void streamParseFailuresTest() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        OrderBookService bookService = new OrderBookService(new OrderBookContext(), registry);
+        QueueQuoteSource source = new QueueQuoteSource(4);
+        QuoteStreamIngestor ingestor = bookService.startStreaming(source);
+        List<String> lines = Files.readAllLines(Paths.get(QUOTES));
+        source.publish(lines.get(1));
+        source.publish(lines.get(2).replace("129.49", "129.x"));
+        source.publish("AAPL,Q,100");
+        source.publish(lines.get(3));
+        source.close();
+        assertTrue(ingestor.awaitCompletion(10, TimeUnit.SECONDS));
+
+        assertEquals(2, registry.get("orderbook.ingest.rows").counter().count());
+        assertEquals(2, registry.get("orderbook.book.symbol.quotes").tag("symbol", "AAPL").gauge().value());
+        assertEquals(1, registry.get("orderbook.ingest.parse.failures").tag("field", "columns").counter().count());
+        assertEquals(1, registry.get("orderbook.ingest.parse.failures").tag("field", "bidPrice").counter().count());
+    }
+
+    @Test
+    public void failedBuildIsNeverReadyTest() {
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath("src/test/resources/missing.csv");
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.setUp();
+        assertEquals(Status.DOWN, new OrderBookHealthIndicator(bookService).health().getStatus());
+        assertTrue(bookService.getBuildFailure() != null);
+    }
+}
@@ -0,0 +1,144 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.NbboQuery;
+import com.spotts.orderbook.model.NbboResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderBookPartitionsTest {
+    private static final String DAY_17 = "2021-02-17T09:58:59.298Z";
+    private static final String DAY_18 = "2021-02-18T09:58:59.298Z";
+    private static final String DAY_19 = "2021-02-19T09:58:59.298Z";
+
+    private Path directory;
+    private OrderBookContext context;
+    private OrderBookService singleDay;
+
+    @BeforeEach
+    public void init() throws IOException, ParseException {
+        // the 17th and 18th hold the same quotes, the 19th only the first three, and the 17th is gzipped
+        List<String> lines = Files.readAllLines(Paths.get("src/test/resources/quotes_subset.csv"));
+        directory = Files.createTempDirectory("quotes");
+        Files.write(directory.resolve("quotes_2021-02-18.csv"), lines);
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(
+                Files.newOutputStream(directory.resolve("quotes_2021-02-17.csv.gz"))), StandardCharsets.UTF_8)) {
+            for (String line : lines) {
+                writer.write(line.replace("2021-02-18", "2021-02-17") + "\n");
+            }
+        }
+        Files.write(directory.resolve("quotes_2021-02-19.csv"), lines.subList(0, 4).stream()
+                .map(line -> line.replace("2021-02-18", "2021-02-19")).collect(Collectors.toList()));
+        Files.write(directory.resolve("notes.txt"), List.of("not a partition"));
+
+        context = new OrderBookContext();
+        context.setResultLimit(5);
+        context.setDirectoryPath(directory.toString());
+        context.setMaxPartitions(2);
+
+        OrderBookContext singleDayContext = new OrderBookContext();
+        singleDayContext.setResultLimit(5);
+        singleDayContext.setFilePath("src/test/resources/quotes_subset.csv");
+        singleDay = new OrderBookService(singleDayContext);
+        singleDay.buildOrderBook();
+    }
+
+    @AfterEach
+    public void cleanUp() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void queriesSelectTheirDayTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.openPartitions();
+        OrderBookCache<Path> partitions = bookService.getPartitions().getBooks();
+        assertEquals(3, bookService.getPartitions().getPartitionCount());
+        // nothing is loaded until a day is queried
+        assertEquals(0, partitions.getLoadedCount());
+
+        assertEquals(singleDay.nbbo("AAPL", DAY_18).getBids(), bookService.nbbo("AAPL", DAY_18).getBids());
+        assertEquals(singleDay.nbbo("AAPL", DAY_18).getAsks(), bookService.nbbo("AAPL", DAY_17).getAsks());
+        assertNotEquals(singleDay.nbbo("AAPL", DAY_18).getBids(), bookService.nbbo("AAPL", DAY_19).getBids());
+        assertEquals(2, bookService.getLiveQuotes("AAPL", DAY_19).size());
+        // a day without a file has no quotes
+        assertTrue(bookService.getLiveQuotes("AAPL", "2021-02-20T09:58:59.298Z").isEmpty());
+    }
+
+    @Test
+    public void leastRecentlyUsedDayIsEvictedTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.openPartitions();
+        OrderBookCache<Path> partitions = bookService.getPartitions().getBooks();
+
+        bookService.nbbo("AAPL", DAY_17);
+        bookService.nbbo("AAPL", DAY_18);
+        bookService.nbbo("AAPL", DAY_17);
+        bookService.nbbo("AAPL", DAY_19);
+        // the 18th was used least recently
+        assertEquals(2, partitions.getLoadedCount());
+        assertEquals(3, partitions.getLoadCount());
+        assertEquals(1, partitions.getEvictionCount());
+        bookService.nbbo("AAPL", DAY_17);
+        assertEquals(3, partitions.getLoadCount());
+        bookService.nbbo("AAPL", DAY_18);
+        assertEquals(4, partitions.getLoadCount());
+        assertEquals(2, partitions.getEvictionCount());
+    }
+
+    @Test
+    public void byteBudgetTest() throws IOException, ParseException {
+        context.setPartitionBudgetBytes(1);
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.openPartitions();
+        bookService.nbbo("AAPL", DAY_17);
+        bookService.nbbo("AAPL", DAY_18);
+        // the most recently used day stays loaded even when it is over the budget
+        assertEquals(1, bookService.getPartitions().getBooks().getLoadedCount());
+        assertTrue(bookService.getPartitions().getBooks().getLoadedBytes() > 1);
+    }
+
+    @Test
+    public void batchAcrossDaysTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.openPartitions();
+        List<NbboQuery> queries = List.of(new NbboQuery("AAPL", DAY_19), new NbboQuery("AAPL", DAY_17),
+                new NbboQuery("AAPL", DAY_18), new NbboQuery("AAPL", DAY_19));
+        Iterator<NbboResult> results = bookService.nbboBatch(queries);
+        for (NbboQuery query : queries) {
+            assertEquals(bookService.nbbo(query.getSymbol(), query.getTs()), results.next());
+        }
+    }
+
+    @Test
+    public void seriesWithinOneDayTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.openPartitions();
+        assertEquals(singleDay.nbbo("AAPL", DAY_18).getBids(),
+                bookService.nbboSeries("AAPL", DAY_18, DAY_18).next().getBids());
+        assertThrows(IllegalArgumentException.class, () -> bookService.nbboSeries("AAPL", DAY_17, DAY_18));
+    }
+}
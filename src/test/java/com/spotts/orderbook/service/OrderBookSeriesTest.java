@@ -0,0 +1,98 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.NbboResult;
+import com.spotts.orderbook.util.OrderBookUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderBookSeriesTest {
+    private static final int QUOTE_COUNT = 4_000;
+
+    private static Path quotesFile;
+    private static OrderBookService bookService;
+
+    @BeforeAll
+    public static void init() throws IOException, ParseException {
+        quotesFile = Files.createTempFile("quotes", ".csv");
+        SyntheticQuotes.write(quotesFile, QUOTE_COUNT, new Random(42));
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotesFile.toString());
+        context.setResultLimit(3);
+        bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+    }
+
+    @AfterAll
+    public static void cleanUp() throws IOException {
+        Files.delete(quotesFile);
+    }
+
+    @Test
+    public void seriesMatchesPointQueriesTest() throws ParseException {
+        String from = SyntheticQuotes.timestamp(5_000);
+        String to = SyntheticQuotes.timestamp(25_000);
+        List<NbboResult> series = new ArrayList<>();
+        bookService.nbboSeries("AAPL", from, to).forEachRemaining(series::add);
+
+        // the series starts at the start of the range and has a result for every change
+        assertTrue(series.size() > 100);
+        assertEquals(from, series.get(0).getPointInTime());
+        for (int i = 0; i < series.size(); i++) {
+            NbboResult result = series.get(i);
+            assertEquals(bookService.nbbo("AAPL", result.getPointInTime()), result);
+            if (i > 0) {
+                assertFalse(series.get(i - 1).getBids().equals(result.getBids())
+                        && series.get(i - 1).getAsks().equals(result.getAsks()));
+            }
+        }
+
+        // between changes the best quotes stay what the last change says they are
+        int last = 0;
+        for (int millis = 5_000; millis <= 25_000; millis++) {
+            long time = OrderBookUtil.parseEpochNanos(SyntheticQuotes.timestamp(millis));
+            while (last + 1 < series.size()
+                    && OrderBookUtil.parseEpochNanos(series.get(last + 1).getPointInTime()) <= time) {
+                last++;
+            }
+            NbboResult expected = bookService.nbbo("AAPL", SyntheticQuotes.timestamp(millis));
+            assertEquals(expected.getBids(), series.get(last).getBids());
+            assertEquals(expected.getAsks(), series.get(last).getAsks());
+        }
+    }
+
+    @Test
+    public void seriesEdgeCasesTest() throws ParseException {
+        String from = SyntheticQuotes.timestamp(5_000);
+        // an unknown symbol has a single empty result
+        Iterator<NbboResult> unknown = bookService.nbboSeries("IBM", from, SyntheticQuotes.timestamp(6_000));
+        NbboResult result = unknown.next();
+        assertTrue(result.getBids().isEmpty() && result.getAsks().isEmpty());
+        assertFalse(unknown.hasNext());
+
+        // a range of a single point in time only has the result at that time
+        Iterator<NbboResult> point = bookService.nbboSeries("AAPL", from, from, 2);
+        assertEquals(bookService.nbbo("AAPL", from, 2), point.next());
+        assertFalse(point.hasNext());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> bookService.nbboSeries("AAPL", SyntheticQuotes.timestamp(6_000), from));
+        assertThrows(IllegalArgumentException.class, () -> bookService.nbboSeries("AAPL", from, from, -1));
+        assertThrows(ParseException.class, () -> bookService.nbboSeries("AAPL", "now", from));
+    }
+}
@@ -1,17 +1,26 @@
 package com.spotts.orderbook.service;
 
 import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.NbboQuote;
+import com.spotts.orderbook.model.NbboResult;
 import com.spotts.orderbook.model.Quote;
+import com.spotts.orderbook.model.QuoteStore;
+import com.spotts.orderbook.util.OrderBookUtil;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
 import java.text.ParseException;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class OrderBookServiceTest {
     public OrderBookContext context;
@@ -27,7 +36,28 @@ public class OrderBookServiceTest {
     public void buildOrderBookTest() throws IOException, ParseException {
         OrderBookService bookService = new OrderBookService(context);
         bookService.buildOrderBook();
-        Assertions.assertNotEquals(20, bookService.orderBook.getFullOrderBook().size());
+        Assertions.assertNotEquals(20, bookService.orderBook.getQuoteStore().size());
+    }
+
+    @Test
+    public void quoteStoreRoundTripTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        QuoteStore quoteStore = bookService.orderBook.getQuoteStore();
+        assertEquals(19, quoteStore.size());
+        assertEquals(1, quoteStore.getSymbols().size());
+
+        Quote quote = quoteStore.toQuote(2);
+        assertEquals("AAPL", quote.getSymbol());
+        assertEquals("J", quote.getMarketCenter());
+        assertEquals(BigInteger.valueOf(100), quote.getBidQuantity());
+        assertEquals(new BigDecimal("128.0"), quote.getBidPrice());
+        assertEquals(new BigDecimal("129.51"), quote.getAskPrice());
+        assertEquals(new OrderBookUtil().formatTimestamp("2021-02-18T09:58:59.266Z"), quote.getStartTime());
+        assertEquals(new OrderBookUtil().formatTimestamp("2021-02-18T09:58:59.267Z"), quote.getEndTime());
+        assertEquals("R", quote.getQuoteConditions());
+        assertEquals("10000144", quote.getSipFeedSeq());
+        assertEquals("UQDF1", quote.getSipFeed());
     }
 
     @Test
@@ -47,12 +77,36 @@ public class OrderBookServiceTest {
         assertEquals(0, live.size());
     }
 
+    @Test
+    public void liveQuotesMatchFullScanTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        OrderBookUtil bookUtil = new OrderBookUtil();
+        String[] pointsInTime = {"2021-02-18T09:58:59.261Z", "2021-02-18T09:58:59.262Z",
+                "2021-02-18T09:58:59.266Z", "2021-02-18T09:58:59.267Z", "2021-02-18T09:58:59.290Z",
+                "2021-02-18T09:58:59.298Z", "2021-02-18T09:58:59.299Z", "2021-02-18T09:58:59.309Z",
+                "2021-02-18T09:59:00.202Z", "2021-02-18T09:59:00.203Z"};
+
+        for (String pointInTime : pointsInTime) {
+            // the live quotes from a scan of the whole book with inclusive start and end times
+            Timestamp ts = bookUtil.formatTimestamp(pointInTime);
+            QuoteStore quoteStore = bookService.orderBook.getQuoteStore();
+            List<Quote> expected = IntStream.range(0, quoteStore.size())
+                    .mapToObj(quoteStore::toQuote)
+                    .filter(q -> "AAPL".equals(q.getSymbol())
+                            && !ts.before(q.getStartTime())
+                            && !ts.after(q.getEndTime()))
+                    .collect(Collectors.toList());
+            assertEquals(expected, bookService.getLiveQuotes("AAPL", pointInTime), pointInTime);
+        }
+        assertEquals(0, bookService.getLiveQuotes("MSFT", "2021-02-18T09:58:59.298Z").size());
+    }
+
     @Test
     public void testCaptureNbbQuotes() throws IOException, ParseException {
         OrderBookService bookService = new OrderBookService(context);
         bookService.buildOrderBook();
-        bookService.captureNbbQuotes("AAPL", "2021-02-18T09:58:59.266Z");
-        List<Quote> nbbQuotes = bookService.orderBook.getNbbQuotes();
+        List<Quote> nbbQuotes = bookService.captureNbbQuotes("AAPL", "2021-02-18T09:58:59.266Z");
         assertEquals(3, nbbQuotes.size());
         assertEquals("10000129", nbbQuotes.get(1).getSipFeedSeq());
     }
@@ -61,8 +115,74 @@ public class OrderBookServiceTest {
     public void testCaptureNboQuotes() throws IOException, ParseException {
         OrderBookService bookService = new OrderBookService(context);
         bookService.buildOrderBook();
-        bookService.captureNboQuotes("AAPL", "2021-02-18T09:58:59.279Z");
-        List<Quote> nboQuotes = bookService.orderBook.getNbbQuotes();
-        assertEquals(0, nboQuotes.size());
+        List<Quote> nboQuotes = bookService.captureNboQuotes("AAPL", "2021-02-18T09:58:59.279Z");
+        assertEquals(4, nboQuotes.size());
+        assertEquals("10000143", nboQuotes.get(0).getSipFeedSeq());
+    }
+
+    @Test
+    public void pointInTimeResultsTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        // price ties go to the earlier quote, then the lower sip feed sequence number
+        assertEquals("$AAPL (2021-02-18T09:58:59.298Z)<br />\n"
+                        + "Best Bids: 129.5(200); 129.5(200); <br />\n"
+                        + "Best Asks: 129.51(400); 129.51(300); ",
+                bookService.pointInTimeResults("AAPL", "2021-02-18T09:58:59.298Z"));
+    }
+
+    @Test
+    public void pointInTimeResultsShortBookTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        // only one quote is live, fewer than the result limit
+        assertEquals("$AAPL (2021-02-18T09:58:59.262Z)<br />\n"
+                        + "Best Bids: 129.46(100); <br />\n"
+                        + "Best Asks: 130.16(100); ",
+                bookService.pointInTimeResults("AAPL", "2021-02-18T09:58:59.262Z"));
+        assertEquals("$MSFT (2021-02-18T09:58:59.262Z)<br />\n"
+                        + "Best Bids: <br />\n"
+                        + "Best Asks: ",
+                bookService.pointInTimeResults("MSFT", "2021-02-18T09:58:59.262Z"));
+    }
+
+    @Test
+    public void nbboTest() throws IOException, ParseException {
+        OrderBookService bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        NbboResult result = bookService.nbbo("AAPL", "2021-02-18T09:58:59.298Z", 3);
+        assertEquals("AAPL", result.getSymbol());
+        assertEquals(3, result.getBids().size());
+        assertEquals(3, result.getAsks().size());
+        assertEquals(new NbboQuote(new BigDecimal("129.5"), BigInteger.valueOf(200), "Q"),
+                result.getBids().get(0));
+        assertEquals(new NbboQuote(new BigDecimal("129.51"), BigInteger.valueOf(400), "Q"),
+                result.getAsks().get(0));
+        // the result can't be changed by its callers
+        assertThrows(UnsupportedOperationException.class, () -> result.getBids().clear());
+        // the default depth is the result limit
+        assertEquals(2, bookService.nbbo("AAPL", "2021-02-18T09:58:59.298Z").getBids().size());
+    }
+
+    @Test
+    public void timelineMatchesIndexTest() throws IOException, ParseException {
+        OrderBookService indexService = new OrderBookService(context);
+        indexService.buildOrderBook();
+        context.setQueryMode(OrderBookContext.QueryMode.TIMELINE);
+        OrderBookService timelineService = new OrderBookService(context);
+        timelineService.buildOrderBook();
+        assertEquals(1, timelineService.orderBook.getTimelines().size());
+
+        // every millisecond around the quotes in the file, including the start and end times
+        for (int millis = 255; millis <= 320; millis++) {
+            String pointInTime = String.format("2021-02-18T09:58:59.%03dZ", millis);
+            assertEquals(indexService.pointInTimeResults("AAPL", pointInTime),
+                    timelineService.pointInTimeResults("AAPL", pointInTime), pointInTime);
+        }
+        for (int millis = 200; millis <= 204; millis++) {
+            String pointInTime = String.format("2021-02-18T09:59:00.%03dZ", millis);
+            assertEquals(indexService.pointInTimeResults("AAPL", pointInTime),
+                    timelineService.pointInTimeResults("AAPL", pointInTime), pointInTime);
+        }
     }
-}
\ No newline at end of file
+}
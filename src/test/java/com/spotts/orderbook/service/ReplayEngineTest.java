@@ -0,0 +1,182 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+import com.spotts.orderbook.model.NbboResult;
+import com.spotts.orderbook.model.ReplayEvent;
+import com.spotts.orderbook.util.OrderBookUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplayEngineTest {
+    private static final int QUOTE_COUNT = 2_000;
+
+    private static Path quotesFile;
+    private static OrderBookService bookService;
+    private static ExecutorService delivery;
+
+    @BeforeAll
+    public static void init() throws IOException, ParseException {
+        quotesFile = Files.createTempFile("quotes", ".csv");
+        SyntheticQuotes.write(quotesFile, QUOTE_COUNT, new Random(3));
+        OrderBookContext context = new OrderBookContext();
+        context.setFilePath(quotesFile.toString());
+        context.setResultLimit(2);
+        bookService = new OrderBookService(context);
+        bookService.buildOrderBook();
+        delivery = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterAll
+    public static void cleanUp() throws IOException {
+        delivery.shutdownNow();
+        Files.delete(quotesFile);
+    }
+
+    private static ReplayEngine engine(double speed) {
+        return new ReplayEngine(bookService.orderBook.getQuoteStore(), bookService.orderBook.getSymbolIndex(),
+                2, speed, delivery, new ReplayEngine.Listener() {
+        });
+    }
+
+    /**
+     * Keeps the events it is sent, taking a while over each one when it is slow.
+     */
+    private static class RecordingSink implements ReplayEngine.Sink {
+        final List<ReplayEvent> events = new ArrayList<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+        final AtomicBoolean disconnected = new AtomicBoolean();
+        final long sendMillis;
+
+        RecordingSink(long sendMillis) {
+            this.sendMillis = sendMillis;
+        }
+
+        @Override
+        public void send(ReplayEvent event) {
+            events.add(event);
+            if (sendMillis > 0) {
+                try {
+                    Thread.sleep(sendMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void close(boolean disconnected) {
+            this.disconnected.set(disconnected);
+            closed.countDown();
+        }
+    }
+
+    @Test
+    public void replayPublishesEverySeriesInTimeOrderTest() throws Exception {
+        ReplayEngine engine = engine(0);
+        RecordingSink all = new RecordingSink(0);
+        RecordingSink msft = new RecordingSink(0);
+        engine.subscribe(all, null, QUOTE_COUNT * 10, ReplayEngine.SlowConsumerPolicy.DISCONNECT);
+        engine.subscribe(msft, "MSFT", QUOTE_COUNT * 10, ReplayEngine.SlowConsumerPolicy.DISCONNECT);
+        engine.run();
+        assertTrue(all.closed.await(10, TimeUnit.SECONDS));
+        assertTrue(msft.closed.await(10, TimeUnit.SECONDS));
+        assertFalse(all.disconnected.get());
+
+        // every event came through, in sequence and in time order
+        assertEquals(engine.getPublishedCount(), all.events.size());
+        long lastTime = Long.MIN_VALUE;
+        for (int i = 0; i < all.events.size(); i++) {
+            ReplayEvent event = all.events.get(i);
+            assertEquals(i, event.getSequence());
+            long time = OrderBookUtil.parseEpochNanos(event.getNbbo().getPointInTime());
+            assertTrue(time >= lastTime);
+            lastTime = time;
+        }
+        // a symbol's events are its series over the whole day
+        String first = msft.events.get(0).getNbbo().getPointInTime();
+        List<NbboResult> series = new ArrayList<>();
+        bookService.nbboSeries("MSFT", first, SyntheticQuotes.timestamp(QUOTE_COUNT * 10 + 1_000), 2)
+                .forEachRemaining(series::add);
+        List<NbboResult> replayed = new ArrayList<>();
+        msft.events.forEach(event -> replayed.add(event.getNbbo()));
+        assertEquals(series, replayed);
+        assertEquals(0, engine.getSubscriberCount());
+        assertEquals(all.events.size() + msft.events.size(), engine.getDeliveredCount());
+    }
+
+    @Test
+    public void slowSubscribersDropOrDisconnectTest() throws Exception {
+        ReplayEngine engine = engine(0);
+        RecordingSink dropping = new RecordingSink(1);
+        RecordingSink disconnected = new RecordingSink(1);
+        RecordingSink fast = new RecordingSink(0);
+        engine.subscribe(dropping, null, 4, ReplayEngine.SlowConsumerPolicy.DROP_OLDEST);
+        engine.subscribe(disconnected, null, 4, ReplayEngine.SlowConsumerPolicy.DISCONNECT);
+        engine.subscribe(fast, null, QUOTE_COUNT * 10, ReplayEngine.SlowConsumerPolicy.DISCONNECT);
+        engine.run();
+        assertTrue(dropping.closed.await(10, TimeUnit.SECONDS));
+        assertTrue(disconnected.closed.await(10, TimeUnit.SECONDS));
+        assertTrue(fast.closed.await(10, TimeUnit.SECONDS));
+
+        // the slow subscribers didn't hold the others back
+        assertEquals(engine.getPublishedCount(), fast.events.size());
+        assertFalse(dropping.disconnected.get());
+        assertTrue(dropping.events.size() < engine.getPublishedCount());
+        // the last event is never dropped
+        assertEquals(engine.getPublishedCount() - 1, dropping.events.get(dropping.events.size() - 1).getSequence());
+        assertTrue(disconnected.disconnected.get());
+        assertTrue(disconnected.events.size() < engine.getPublishedCount());
+        assertEquals(1, engine.getDisconnectedCount());
+        assertEquals(engine.getPublishedCount() - dropping.events.size(), engine.getDroppedCount());
+    }
+
+    @Test
+    public void replayKeepsToItsSpeedTest() throws Exception {
+        // the first two seconds of quotes at 20 times real time take 100 ms
+        OrderBookContext context = new OrderBookContext();
+        List<String> lines = Files.readAllLines(quotesFile);
+        Path head = Files.createTempFile("quotes", ".csv");
+        try {
+            List<String> firstQuotes = new ArrayList<>(lines.subList(0, 1));
+            for (String line : lines.subList(1, lines.size())) {
+                if (line.contains("T09:00:00.") || line.contains("T09:00:01.")) {
+                    firstQuotes.add(line.replaceAll(",2021-02-18T09:00:0[2-9]\\.\\d{3}Z,", ",2021-02-18T09:00:01.999Z,"));
+                }
+            }
+            Files.write(head, firstQuotes);
+            context.setFilePath(head.toString());
+            OrderBookService headService = new OrderBookService(context);
+            headService.buildOrderBook();
+            long started = System.nanoTime();
+            ReplayEngine engine = headService.startReplay(20, 1);
+            assertThrows(IllegalStateException.class, () -> headService.startReplay(20, 1));
+            assertTrue(engine.awaitCompletion(10, TimeUnit.SECONDS));
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            assertTrue(millis >= 90, "took " + millis + " ms");
+            assertFalse(headService.replayStatus().isRunning());
+            assertTrue(headService.replayStatus().getPublished() > 0);
+            headService.tearDown();
+        } finally {
+            Files.delete(head);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.spotts.orderbook.service;
+
+import com.spotts.orderbook.context.OrderBookContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Writes quotes files of random quotes for tests that need a bigger book than
+ * the quotes in the test resources.
+ */
+final class SyntheticQuotes {
+    static final String[] SYMBOLS = {"AAPL", "MSFT", "AMZN", "TSLA"};
+
+    private SyntheticQuotes() {
+    }
+
+    /**
+     * Writes random quotes lasting up to a second, one starting about every 10ms
+     * from 09:00, so the quotes span count / 100 seconds.
+     * @param file the file to write
+     * @param count the number of quotes
+     * @param random the source of the quotes
+     * @throws IOException thrown when the file can't be written
+     */
+    static void write(Path file, int count, Random random) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write(String.join(",", OrderBookContext.HEADERS));
+            writer.newLine();
+            for (int i = 0; i < count; i++) {
+                int start = i * 10 + random.nextInt(10);
+                int bid = 10_000 + random.nextInt(100);
+                writer.write(String.format("%s,%c,%d,%d,%d.%02d,%d.%02d,%s,%s,R,%d,UQDF1",
+                        SYMBOLS[random.nextInt(SYMBOLS.length)], (char) ('A' + random.nextInt(20)),
+                        100 * (1 + random.nextInt(9)), 100 * (1 + random.nextInt(9)),
+                        bid / 100, bid % 100, (bid + 5) / 100, (bid + 5) % 100,
+                        timestamp(start), timestamp(start + random.nextInt(1000)), 10_000_000 + i));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @param millis milliseconds after 09:00
+     * @return the timestamp of that time on the day of the quotes
+     */
+    static String timestamp(int millis) {
+        return String.format("2021-02-18T%02d:%02d:%02d.%03dZ", 9 + millis / 3_600_000,
+                millis / 60_000 % 60, millis / 1000 % 60, millis % 1000);
+    }
+}
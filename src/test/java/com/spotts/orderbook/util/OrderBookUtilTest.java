@@ -0,0 +1,74 @@
+package com.spotts.orderbook.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OrderBookUtilTest {
+
+    @Test
+    public void parseEpochNanosTest() throws ParseException {
+        assertEquals(toNanos("2021-02-18T09:58:59.262Z"), OrderBookUtil.parseEpochNanos("2021-02-18T09:58:59.262Z"));
+        assertEquals(toNanos("2021-02-18T09:58:59.262123Z"), OrderBookUtil.parseEpochNanos("2021-02-18T09:58:59.262123Z"));
+        assertEquals(toNanos("2021-02-18T09:58:59.262123456Z"), OrderBookUtil.parseEpochNanos("2021-02-18T09:58:59.262123456Z"));
+        assertEquals(toNanos("2020-02-29T23:59:59.999Z"), OrderBookUtil.parseEpochNanos("2020-02-29T23:59:59.999Z"));
+        assertEquals(toNanos("1969-12-31T00:00:00.001Z"), OrderBookUtil.parseEpochNanos("1969-12-31T00:00:00.001Z"));
+    }
+
+    @Test
+    public void parseEpochNanosMalformedTest() {
+        String[] malformed = {"", "2021-02-18", "2021-02-18 09:58:59.262Z", "2021-02-18T09:58:59.262",
+                "2021-02-18T09:58:59.2622Z", "2021-13-18T09:58:59.262Z", "2021-02-29T09:58:59.262Z",
+                "2021-02-18T24:58:59.262Z", "2021-02-18T09:60:59.262Z", "2021-02-18T09:58:5x.262Z"};
+        for (String timestampString : malformed) {
+            ParseException e = assertThrows(ParseException.class, () -> OrderBookUtil.parseEpochNanos(timestampString));
+            assertTrue(e.getMessage().contains(timestampString), e.getMessage());
+        }
+    }
+
+    @Test
+    public void toTimestampTest() throws ParseException {
+        String timestampString = "2021-02-18T09:58:59.262Z";
+        assertEquals(new OrderBookUtil().formatTimestamp(timestampString),
+                OrderBookUtil.toTimestamp(OrderBookUtil.parseEpochNanos(timestampString)));
+    }
+
+    @Test
+    public void formatEpochNanosTest() throws ParseException {
+        for (String timestampString : new String[]{"2021-02-18T09:58:59.262Z", "2021-02-18T09:58:59.000Z",
+                "2021-02-18T09:58:59.262000001Z", "1969-12-31T00:00:00.001Z"}) {
+            assertEquals(timestampString,
+                    OrderBookUtil.formatEpochNanos(OrderBookUtil.parseEpochNanos(timestampString)));
+        }
+    }
+
+    @Test
+    public void parsePriceTicksTest() throws ParseException {
+        assertEquals(129_460_000L, OrderBookUtil.parsePriceTicks("129.46"));
+        assertEquals(128_000_000L, OrderBookUtil.parsePriceTicks("128.0"));
+        assertEquals(128_000_000L, OrderBookUtil.parsePriceTicks("128"));
+        assertEquals(1_234L, OrderBookUtil.parsePriceTicks("0.001234"));
+        // zeros past the price scale are accepted, other digits are not
+        assertEquals(130_000_000L, OrderBookUtil.parsePriceTicks("130.0000000"));
+        assertEquals(1_234L, OrderBookUtil.parsePriceTicks("0.00123400"));
+        assertThrows(ParseException.class, () -> OrderBookUtil.parsePriceTicks("0.0012345"));
+        assertThrows(ParseException.class, () -> OrderBookUtil.parsePriceTicks("130.0000001"));
+        assertThrows(ParseException.class, () -> OrderBookUtil.parsePriceTicks("12a.0"));
+        assertThrows(ParseException.class, () -> OrderBookUtil.parsePriceTicks(""));
+        // the largest price a long of ticks holds, and prices past it in the digits or the scaling
+        assertEquals(Long.MAX_VALUE, OrderBookUtil.parsePriceTicks("9223372036854.775807"));
+        assertThrows(ParseException.class, () -> OrderBookUtil.parsePriceTicks("9223372036854.775808"));
+        assertThrows(ParseException.class, () -> OrderBookUtil.parsePriceTicks("9223372036855"));
+        assertThrows(ParseException.class, () -> OrderBookUtil.parsePriceTicks("99999999999999999999"));
+    }
+
+    private static long toNanos(String timestampString) {
+        Instant instant = Instant.parse(timestampString);
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+}